@@ -0,0 +1,185 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Приложение без веб-слоя поверх H2 в памяти, заполненной данными заданного объёма.
+ * Данные генерируются запросами INSERT ... SELECT FROM SYSTEM_RANGE до старта Spring,
+ * поэтому рейтинг, граф дружбы и матрица лайков загружаются уже с ними.
+ * Объёмы задаются параметрами JMH, например {@code -p users=1000000 -p likesPerUser=10}.
+ * При {@code -p storage=memory} те же данные переносятся из базы в хранилища в памяти.
+ */
+@State(Scope.Benchmark)
+public class FilmorateState {
+    @Param("10000")
+    public int users;
+
+    @Param("10000")
+    public int films;
+
+    @Param("10")
+    public int likesPerUser;
+
+    @Param("10")
+    public int friendsPerUser;
+
+    @Param("db")
+    public String storage;
+
+    ConfigurableApplicationContext context;
+    FilmStorage filmStorage;
+    UserStorage userStorage;
+    ObjectMapper objectMapper;
+    List<Film> filmPage;
+    List<User> userPage;
+    private long maxUserId;
+    private long maxFilmId;
+    private Path memoryDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String url = "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        memoryDir = Files.createTempDirectory("bench-memory");
+        seed(new JdbcTemplate(new SimpleDriverDataSource(new org.h2.Driver(), url, "sa", "password")));
+
+        // аргументами командной строки, а не properties(): те ниже по приоритету, чем application.properties
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + url,
+                        "--spring.sql.init.mode=never",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--filmorate.storage.type=" + storage,
+                        "--filmorate.storage.memory.snapshot-path=" + memoryDir.resolve("snapshot.json"),
+                        "--filmorate.storage.memory.log.dir=" + memoryDir.resolve("oplog"),
+                        "--filmorate.storage.memory.snapshot-interval-ms=3600000");
+        if ("memory".equals(storage)) {
+            copyToMemory(context.getBean(JdbcTemplate.class));
+        }
+        filmStorage = context.getBean(FilmStorage.class);
+        userStorage = context.getBean(UserStorage.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        filmPage = List.copyOf(filmStorage.findPage(0, 100));
+        userPage = List.copyOf(userStorage.findPage(0, 100));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.getBean(JdbcTemplate.class).execute("SHUTDOWN");
+        context.close();
+        try (Stream<Path> files = Files.walk(memoryDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException ignored) {
+            // временные файлы удалит система
+        }
+    }
+
+    long randomUserId() {
+        return ThreadLocalRandom.current().nextLong(1, maxUserId + 1);
+    }
+
+    long randomFilmId() {
+        return ThreadLocalRandom.current().nextLong(1, maxFilmId + 1);
+    }
+
+    /**
+     * Переносит засеянные строки в хранилища в памяти. Фильмы получают только id жанров и MPA,
+     * названия хранилище берёт из справочников.
+     */
+    private void copyToMemory(JdbcTemplate jdbc) {
+        Map<Long, Set<Genre>> genres = new HashMap<>();
+        jdbc.query("SELECT film_id, genre_id FROM film_genres", rs -> {
+            Genre genre = new Genre();
+            genre.setId(rs.getLong("genre_id"));
+            genres.computeIfAbsent(rs.getLong("film_id"), id -> new HashSet<>()).add(genre);
+        });
+        List<Film> seededFilms = jdbc.query("SELECT * FROM film", (rs, rowNum) -> {
+            Film film = new Film();
+            film.setId(rs.getLong("id"));
+            film.setName(rs.getString("name"));
+            film.setDescription(rs.getString("description"));
+            film.setReleaseDate(rs.getDate("releaseDate").toLocalDate());
+            film.setDuration(rs.getInt("duration"));
+            Mpa mpa = new Mpa();
+            mpa.setId(rs.getLong("mpa_id"));
+            film.setMpa(mpa);
+            film.setGenres(genres.getOrDefault(film.getId(), Set.of()));
+            return film;
+        });
+        List<User> seededUsers = jdbc.query("SELECT * FROM \"user\"", (rs, rowNum) -> {
+            User user = new User();
+            user.setId(rs.getLong("id"));
+            user.setEmail(rs.getString("email"));
+            user.setLogin(rs.getString("login"));
+            user.setName(rs.getString("name"));
+            user.setBirthday(rs.getDate("birthday").toLocalDate());
+            return user;
+        });
+        List<long[]> likes = jdbc.query("SELECT user_id, film_id FROM film_likes",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        List<long[]> friendships = jdbc.query("SELECT user_id, friend_id FROM user_friendship",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        context.getBean(InMemoryUserStorage.class).restore(seededUsers, friendships);
+        context.getBean(InMemoryFilmStorage.class).restore(seededFilms, likes);
+    }
+
+    private void seed(JdbcTemplate jdbc) {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(jdbc.getDataSource());
+        jdbc.update("INSERT INTO \"user\" (email, login, name, birthday) " +
+                "SELECT 'user' || X || '@bench.ru', 'bench' || X, 'Пользователь ' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", users);
+        jdbc.update("INSERT INTO film (name, description, releaseDate, duration, mpa_id) " +
+                "SELECT 'Фильм ' || X, 'Описание фильма ' || X, DATEADD('DAY', MOD(X, 9000), DATE '2000-01-01'), " +
+                "60 + MOD(X, 120), 1 + MOD(X, 5) FROM SYSTEM_RANGE(1, ?)", films);
+        maxUserId = jdbc.queryForObject("SELECT MAX(id) FROM \"user\"", Long.class);
+        maxFilmId = jdbc.queryForObject("SELECT MAX(id) FROM film", Long.class);
+
+        jdbc.update("MERGE INTO film_genres (film_id, genre_id) " +
+                "SELECT id, 1 + MOD(id, 6) FROM film UNION SELECT id, 1 + MOD(id + 3, 6) FROM film");
+        // популярность неравномерная: квадрат случайного числа смещает лайки к фильмам с меньшим id
+        jdbc.update("MERGE INTO film_likes (film_id, user_id) " +
+                "SELECT 1 + CAST(POWER(RAND(), 2) * ? AS INTEGER), u.id " +
+                "FROM \"user\" u CROSS JOIN SYSTEM_RANGE(1, ?)", maxFilmId - 1, likesPerUser);
+        jdbc.update("MERGE INTO user_friendship (user_id, friend_id, confirmed) " +
+                "SELECT user_id, friend_id, FALSE FROM (" +
+                "SELECT u.id AS user_id, 1 + CAST(RAND() * ? AS INTEGER) AS friend_id " +
+                "FROM \"user\" u CROSS JOIN SYSTEM_RANGE(1, ?)) f " +
+                "WHERE friend_id <> user_id", maxUserId - 1, friendsPerUser);
+    }
+}
@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация страницы из 100 фильмов (с жанрами и MPA) и 100 пользователей
+ * тем же ObjectMapper, что использует веб-слой.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Benchmark
+    public byte[] serializeFilms(FilmorateState state) throws JsonProcessingException {
+        return state.objectMapper.writeValueAsBytes(state.filmPage);
+    }
+
+    @Benchmark
+    public byte[] serializeUsers(FilmorateState state) throws JsonProcessingException {
+        return state.objectMapper.writeValueAsBytes(state.userPage);
+    }
+}
@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.memory.OperationLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Запись в журнал операций без приложения вокруг: лайк - пара id, фильм - JSON. С {@code fsync=true}
+ * каждая запись ждёт сброса на диск, и несколько потоков делят один fsync.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@Threads(4)
+public class OperationLogBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Log {
+        @Param({"false", "true"})
+        public boolean fsync;
+
+        OperationLog log;
+        Film film;
+        private Path dir;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("bench-oplog");
+            log = new OperationLog(new ObjectMapper().registerModule(new JavaTimeModule()), true, dir.toString(),
+                    64, fsync, 10);
+            log.start();
+            film = new Film();
+            film.setId(1L);
+            film.setName("Фильм");
+            film.setDescription("Описание фильма");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(120);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            log.stop();
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public long appendLike(Log state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long position = state.log.appendLike(random.nextLong(1, 10_000), random.nextLong(1, 10_000), true);
+        state.log.await(position);
+        return position;
+    }
+
+    @Benchmark
+    public long appendFilm(Log state) {
+        long position = state.log.appendFilm(state.film);
+        state.log.await(position);
+        return position;
+    }
+}
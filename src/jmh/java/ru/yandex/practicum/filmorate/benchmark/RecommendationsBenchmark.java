@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.index.FilmRecommendations;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Расчёт рекомендаций фильмов на больших объёмах без базы: матрица лайков заполняется напрямую,
+ * так что 1M пользователей и 10M лайков помещаются в несколько сотен мегабайт кучи
+ * (в H2 в памяти тот же объём не влезает). Запрашивается больше рекомендаций, чем кэшируется,
+ * поэтому каждый вызов считает заново - это время ответа для пользователя без кэша.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class RecommendationsBenchmark {
+    private static final int UNCACHED_LIMIT = 101;
+
+    @State(Scope.Benchmark)
+    public static class Matrix {
+        @Param("1000000")
+        public int users;
+
+        @Param("100000")
+        public int films;
+
+        @Param("10")
+        public int likesPerUser;
+
+        FilmRecommendations recommendations;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(42);
+            List<long[]> likes = new ArrayList<>(users * likesPerUser);
+            Set<Integer> liked = new HashSet<>();
+            for (int user = 1; user <= users; user++) {
+                liked.clear();
+                while (liked.size() < Math.min(likesPerUser, films)) {
+                    // популярность неравномерная, как в FilmorateState
+                    double r = random.nextDouble();
+                    if (liked.add(1 + (int) (r * r * films))) {
+                        likes.add(new long[]{user, 1 + (int) (r * r * films)});
+                    }
+                }
+            }
+            LikeMatrix matrix = new LikeMatrix();
+            matrix.load(likes);
+            recommendations = new FilmRecommendations(matrix, 10_000);
+        }
+    }
+
+    @Benchmark
+    public int[] recommend(Matrix matrix) {
+        long userId = ThreadLocalRandom.current().nextLong(1, matrix.users + 1);
+        return matrix.recommendations.recommend(userId, UNCACHED_LIMIT);
+    }
+}
@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.TitleAutocomplete;
+import ru.yandex.practicum.filmorate.model.SearchField;
+import ru.yandex.practicum.filmorate.model.SearchRanking;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полнотекстовый поиск и автодополнение фильмов без базы: индексы заполняются напрямую
+ * сгенерированными названиями и описаниями из случайных русских слов. Частота слов убывает
+ * по закону Ципфа, как в живом тексте, поэтому запросы из двух случайных слов словаря в основном
+ * редкие, а частые слова дают длинные списки. Префиксы для автодополнения - первые
+ * {@code length} символов названий случайных фильмов.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SearchBenchmark {
+    private static final Set<SearchField> ALL_FIELDS = EnumSet.allOf(SearchField.class);
+
+    @State(Scope.Benchmark)
+    public static class Index {
+        @Param("1000000")
+        public int films;
+
+        @Param("50000")
+        public int vocabulary;
+
+        FilmSearchIndex index;
+        TitleAutocomplete autocomplete;
+        String[] words;
+        String[] titles;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(42);
+            words = new String[vocabulary];
+            for (int i = 0; i < vocabulary; i++) {
+                StringBuilder word = new StringBuilder();
+                for (int length = 3 + random.nextInt(8); word.length() < length; ) {
+                    word.append((char) ('а' + random.nextInt(32)));
+                }
+                words[i] = word.toString();
+            }
+            Map<Long, Long> likes = new HashMap<>();
+            for (long film = 1; film <= films; film++) {
+                likes.put(film, (long) random.nextInt(100));
+            }
+            FilmLeaderboard leaderboard = new FilmLeaderboard();
+            leaderboard.load(likes);
+            index = new FilmSearchIndex(leaderboard);
+            titles = new String[films + 1];
+            Map<Long, String> titlesByFilm = new HashMap<>();
+            for (int film = 1; film <= films; film++) {
+                titles[film] = text(random, 3);
+                titlesByFilm.put((long) film, titles[film]);
+                index.index(film, titles[film], text(random, 20));
+            }
+            autocomplete = new TitleAutocomplete(leaderboard);
+            autocomplete.load(titlesByFilm);
+        }
+
+        String text(Random random, int length) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                text.append(word(random)).append(' ');
+            }
+            return text.toString();
+        }
+
+        String word(Random random) {
+            // приближение распределения Ципфа: индекс слова ~ vocabulary^u
+            return words[(int) Math.pow(vocabulary, random.nextDouble()) - 1];
+        }
+    }
+
+    @Benchmark
+    public List<Long> searchTwoWords(Index state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String query = state.words[random.nextInt(state.vocabulary)] + " "
+                + state.words[random.nextInt(state.vocabulary)];
+        return state.index.search(query, ALL_FIELDS, SearchRanking.RELEVANCE, 10);
+    }
+
+    @State(Scope.Thread)
+    public static class Prefix {
+        @Param({"1", "2", "3", "5"})
+        public int length;
+    }
+
+    @Benchmark
+    public List<Long> autocomplete(Index state, Prefix prefix) {
+        String title = state.titles[ThreadLocalRandom.current().nextInt(1, state.films + 1)];
+        return state.autocomplete.complete(title.substring(0, prefix.length), 10);
+    }
+
+    @Benchmark
+    public List<Long> searchOneWord(Index state) {
+        String query = state.words[ThreadLocalRandom.current().nextInt(state.vocabulary)];
+        return state.index.search(query, ALL_FIELDS, SearchRanking.RELEVANCE, 10);
+    }
+}
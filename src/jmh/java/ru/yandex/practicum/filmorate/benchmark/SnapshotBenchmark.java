@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.dao.BinarySnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выгрузка и восстановление двоичного снимка целиком: один вызов - одно измерение. Снимок для
+ * восстановления выгружается из засеянной базы один раз, поэтому каждое восстановление грузит те же данные.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Snapshot {
+        BinarySnapshot snapshot;
+        byte[] bytes;
+
+        @Setup(Level.Trial)
+        public void setUp(FilmorateState state) {
+            snapshot = state.context.getBean(BinarySnapshot.class);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            snapshot.export(Channels.newChannel(out));
+            bytes = out.toByteArray();
+        }
+    }
+
+    /**
+     * Размер выгруженного снимка: JMH выводит его рядом со временем выгрузки как {@code export:bytes}
+     * (в итоговой таблице - сумма по итерациям измерения).
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Size {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Benchmark
+    public int export(Snapshot state, Size size) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(state.bytes.length);
+        state.snapshot.export(Channels.newChannel(out));
+        size.bytes = out.size();
+        return out.size();
+    }
+
+    @Benchmark
+    public Map<String, Long> restore(Snapshot state) {
+        return state.snapshot.restore(Channels.newChannel(new ByteArrayInputStream(state.bytes)));
+    }
+}
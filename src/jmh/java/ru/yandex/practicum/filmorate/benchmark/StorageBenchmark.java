@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути хранилищ: время одного вызова при заданных в {@link FilmorateState} объёмах.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+    @Benchmark
+    public Collection<Film> findAllFilms(FilmorateState state) {
+        return state.filmStorage.findAll();
+    }
+
+    @Benchmark
+    public Film findFilmById(FilmorateState state) {
+        return state.filmStorage.findById(state.randomFilmId());
+    }
+
+    @Benchmark
+    public Collection<Film> popularFilms(FilmorateState state) {
+        return state.filmStorage.popularFilms(10, null, null);
+    }
+
+    /**
+     * Лайк случайной пары: повторный лайк той же пары тоже проходит весь путь записи.
+     */
+    @Benchmark
+    public Film addLike(FilmorateState state) {
+        return state.filmStorage.addLike(state.randomFilmId(), state.randomUserId());
+    }
+
+    @Benchmark
+    public Collection<User> findFriends(FilmorateState state) {
+        return state.userStorage.findFriends(state.randomUserId());
+    }
+
+    @Benchmark
+    public Collection<User> findCommonFriends(FilmorateState state) {
+        return state.userStorage.findCommonFriends(state.randomUserId(), state.randomUserId());
+    }
+
+    @Benchmark
+    public Collection<User> findFriendSuggestions(FilmorateState state) {
+        return state.userStorage.findFriendSuggestions(state.randomUserId(), 10);
+    }
+
+    @Benchmark
+    public Collection<Film> findRecommendations(FilmorateState state) {
+        return state.filmStorage.findRecommendations(state.randomUserId(), 10);
+    }
+}
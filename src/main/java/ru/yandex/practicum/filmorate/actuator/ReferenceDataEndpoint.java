@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.actuator;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.ReferenceDataRegistry;
+
+import java.util.Map;
+
+/**
+ * Actuator-эндпоинт справочников: GET показывает размеры, POST перечитывает их из базы.
+ */
+@Component
+@RequiredArgsConstructor
+@Endpoint(id = "referencedata")
+public class ReferenceDataEndpoint {
+    private final ReferenceDataRegistry registry;
+
+    @ReadOperation
+    public Map<String, Integer> sizes() {
+        return Map.of("genres", registry.genres().size(), "mpa", registry.mpa().size());
+    }
+
+    @WriteOperation
+    public Map<String, Integer> reload() {
+        registry.reload();
+        return sizes();
+    }
+}
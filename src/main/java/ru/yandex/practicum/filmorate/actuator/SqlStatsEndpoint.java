@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.actuator;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.metrics.SqlStatsCollector;
+
+import java.util.List;
+
+/**
+ * Actuator-эндпоинт статистики SQL: GET отдаёт самые тяжёлые запросы
+ * ({@code ?order=TOTAL_TIME|MAX_TIME|EXECUTIONS|ROWS|SLOW|N_PLUS_ONE&limit=20}), DELETE сбрасывает статистику.
+ */
+@Component
+@RequiredArgsConstructor
+@Endpoint(id = "sqlstats")
+public class SqlStatsEndpoint {
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final SqlStatsCollector collector;
+
+    @ReadOperation
+    public List<SqlStatsCollector.FingerprintStats> top(@Nullable SqlStatsCollector.Order order,
+                                                        @Nullable Integer limit) {
+        return collector.top(order == null ? SqlStatsCollector.Order.TOTAL_TIME : order,
+                limit == null ? DEFAULT_LIMIT : limit);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        collector.reset();
+    }
+}
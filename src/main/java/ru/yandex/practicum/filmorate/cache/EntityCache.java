@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Ограниченный по размеру кэш сущностей по id поверх Caffeine (вытеснение W-TinyLFU).
+ * Счётчики попаданий, промахов и вытеснений публикуются в Micrometer как метрики
+ * {@code cache.gets}, {@code cache.evictions} и т.д. с тегом {@code cache=<name>}.
+ * Модели изменяемы, поэтому вызывающий код получает копии закэшированных объектов, а не их самих.
+ * <p>
+ * Внутри асинхронный кэш: под блокировкой Caffeine в него кладётся только незавершённый
+ * {@link CompletableFuture}, а сам запрос к базе выполняется вне блокировки. Синхронный
+ * {@code Cache.get} держал бы монитор ConcurrentHashMap на всё время загрузки и закреплял бы
+ * виртуальный поток за потоком-носителем. Конкурентные запросы того же id ждут уже начатую загрузку,
+ * а инвалидация во время загрузки выбрасывает её результат, а не оставляет в кэше устаревшее значение.
+ */
+public abstract class EntityCache<V> {
+    private final AsyncCache<Long, V> cache;
+    private final UnaryOperator<V> copy;
+
+    protected EntityCache(String name, long maximumSize, MeterRegistry meterRegistry, UnaryOperator<V> copy) {
+        this.copy = copy;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+    }
+
+    /**
+     * Возвращает сущность из кэша или загружает её. Исключение загрузчика (например,
+     * NotFoundException) пробрасывается, а в кэш ничего не попадает.
+     */
+    public V get(Long id, Function<Long, V> loader) {
+        CompletableFuture<V> loading = new CompletableFuture<>();
+        CompletableFuture<V> value = cache.get(id, (key, executor) -> loading);
+        if (value == loading) {
+            try {
+                loading.complete(loader.apply(id));
+            } catch (RuntimeException e) {
+                loading.completeExceptionally(e);
+            }
+        }
+        return copy.apply(join(value));
+    }
+
+    /**
+     * Возвращает сущности в порядке переданных id, недостающие загружает одним вызовом
+     * {@code loader}. Id, которых загрузчик не нашёл, пропускаются.
+     */
+    public List<V> getAll(List<Long> ids, Function<Set<? extends Long>, Map<Long, V>> loader) {
+        Map<Long, V> found = join(cache.getAll(ids, (missing, executor) -> {
+            try {
+                return CompletableFuture.completedFuture(loader.apply(missing));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }));
+        return ids.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .map(copy)
+                .toList();
+    }
+
+    public void invalidate(Long id) {
+        cache.synchronous().invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+import ru.yandex.practicum.filmorate.event.FilmSavedEvent;
+import ru.yandex.practicum.filmorate.event.FriendshipEvent;
+import ru.yandex.practicum.filmorate.event.UserSavedEvent;
+import ru.yandex.practicum.filmorate.index.FriendshipGraph;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Версии представлений для условных GET-запросов (ETag и Last-Modified).
+ * Версии живут в памяти и меняются по тем же событиям, что сбрасывают кэши, поэтому проверка
+ * If-None-Match - одно чтение из map, без обращения к базе и без сериализации ответа.
+ * <p>
+ * Для сущностей, которые не менялись с момента запуска, версия общая - момент запуска:
+ * номера версий растут от текущего времени, и ETag от прошлого процесса не совпадёт с новым.
+ * Версия выдаётся и для несуществующего id, поэтому до ответа 304 контроллер проверяет
+ * сущность по кэшу - иначе на неизвестный id пришёл бы 304 вместо 404.
+ * Обработчик выполняется после индексов и кэшей, чтобы новая версия не появилась раньше новых данных.
+ */
+@Component
+public class EntityVersions {
+    private final FriendshipGraph friendshipGraph;
+    private final AtomicLong sequence;
+    private volatile Version initial;
+    private final Map<Long, Version> films = new ConcurrentHashMap<>();
+    private final Map<Long, Version> users = new ConcurrentHashMap<>();
+    private final Map<Long, Version> friends = new ConcurrentHashMap<>();
+    private volatile Version popularFilms;
+
+    public EntityVersions(FriendshipGraph friendshipGraph) {
+        this.friendshipGraph = friendshipGraph;
+        long now = System.currentTimeMillis();
+        this.sequence = new AtomicLong(now);
+        this.initial = new Version(Long.toString(now), now);
+        this.popularFilms = initial;
+    }
+
+    public Version film(long filmId) {
+        return films.getOrDefault(filmId, initial);
+    }
+
+    public Version popularFilms() {
+        return popularFilms;
+    }
+
+    public Version user(long userId) {
+        return users.getOrDefault(userId, initial);
+    }
+
+    /**
+     * Версия списка друзей: меняется и при изменении дружбы, и при обновлении любого из друзей.
+     */
+    public Version friends(long userId) {
+        return friends.getOrDefault(userId, initial);
+    }
+
+    @Order(2)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmSaved(FilmSavedEvent event) {
+        films.put(event.film().getId(), next());
+        popularFilms = next();
+    }
+
+    @Order(2)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmLike(FilmLikeEvent event) {
+        popularFilms = next();
+    }
+
+    @Order(2)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserSaved(UserSavedEvent event) {
+        Long userId = event.user().getId();
+        users.put(userId, next());
+        if (!event.created()) {
+            for (int follower : friendshipGraph.followers(userId)) {
+                friends.put((long) follower, next());
+            }
+        }
+    }
+
+    @Order(2)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendship(FriendshipEvent event) {
+        friends.put(event.userId(), next());
+    }
+
+    /**
+     * Считает изменёнными все представления - после того как данные заменены целиком.
+     */
+    public void resetAll() {
+        initial = next();
+        films.clear();
+        users.clear();
+        friends.clear();
+        popularFilms = initial;
+    }
+
+    private Version next() {
+        return new Version(Long.toString(sequence.incrementAndGet()), System.currentTimeMillis());
+    }
+
+    /**
+     * Версия представления: значение ETag и время последнего изменения в миллисекундах.
+     */
+    public record Version(String etag, long lastModified) {
+
+        /**
+         * Версия ответа, собранного из двух представлений.
+         */
+        public Version and(Version other) {
+            return new Version(etag + "-" + other.etag, Math.max(lastModified, other.lastModified));
+        }
+
+        /**
+         * Выставляет ETag и Last-Modified и проверяет заголовки If-None-Match / If-Modified-Since.
+         *
+         * @return true, если клиенту уже отправлен ответ 304 и тело формировать не нужно
+         */
+        public boolean checkNotModified(WebRequest request) {
+            return request.checkNotModified(etag, lastModified);
+        }
+    }
+}
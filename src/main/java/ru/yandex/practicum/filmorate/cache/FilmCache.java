@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.FilmSavedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+
+/**
+ * Кэш фильмов (с жанрами и MPA) перед FilmDbStorage. Лайки не входят в представление
+ * фильма, поэтому сбрасывается запись только при обновлении самого фильма - раньше, чем
+ * {@link EntityVersions} выдаст новую версию: иначе новый ETag ушёл бы со старым телом.
+ */
+@Component
+public class FilmCache extends EntityCache<Film> {
+
+    public FilmCache(@Value("${filmorate.cache.films.maximum-size:10000}") long maximumSize,
+                     MeterRegistry meterRegistry) {
+        super("films", maximumSize, meterRegistry, Film::copy);
+    }
+
+    @Order(1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmSaved(FilmSavedEvent event) {
+        if (!event.created()) {
+            invalidate(event.film().getId());
+        }
+    }
+}
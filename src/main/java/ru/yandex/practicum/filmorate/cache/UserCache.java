@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.UserSavedEvent;
+import ru.yandex.practicum.filmorate.model.User;
+
+/**
+ * Кэш пользователей перед UserDbStorage. Дружба не входит в представление пользователя,
+ * поэтому сбрасывается запись только при обновлении самого пользователя - раньше, чем
+ * {@link EntityVersions} выдаст новую версию.
+ */
+@Component
+public class UserCache extends EntityCache<User> {
+
+    public UserCache(@Value("${filmorate.cache.users.maximum-size:10000}") long maximumSize,
+                     MeterRegistry meterRegistry) {
+        super("users", maximumSize, meterRegistry, User::copy);
+    }
+
+    @Order(1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserSaved(UserSavedEvent event) {
+        if (!event.created()) {
+            invalidate(event.user().getId());
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -14,11 +19,19 @@ import ru.yandex.practicum.filmorate.model.ErrorResponse;
 @Slf4j
 @RestControllerAdvice
 public class ErrorHandler {
+    private final Counter validationErrors;
+    private final Counter notFoundErrors;
+
+    public ErrorHandler(MeterRegistry meterRegistry) {
+        this.validationErrors = errorCounter(meterRegistry, "validation");
+        this.notFoundErrors = errorCounter(meterRegistry, "not_found");
+    }
 
     @ExceptionHandler
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ErrorResponse handleValidation(final ValidationException e) {
         log.warn("Ошибка валидации: {}", e.getMessage());
+        validationErrors.increment();
         return new ErrorResponse(e.getMessage());
     }
 
@@ -26,6 +39,15 @@ public class ErrorHandler {
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ErrorResponse handleMethodArgumentNotValid(final MethodArgumentNotValidException e) {
         log.warn("Некорректные аргументы метода: {}", e.getMessage());
+        validationErrors.increment();
+        return new ErrorResponse(e.getMessage());
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorResponse handleConstraintViolation(final ConstraintViolationException e) {
+        log.warn("Нарушены ограничения параметров: {}", e.getMessage());
+        validationErrors.increment();
         return new ErrorResponse(e.getMessage());
     }
 
@@ -33,9 +55,17 @@ public class ErrorHandler {
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public ErrorResponse handleNotFound(final NotFoundException e) {
         log.warn("Не найден ресурс: {}", e.getMessage());
+        notFoundErrors.increment();
         return new ErrorResponse(e.getMessage());
     }
 
+    @ExceptionHandler({CannotGetJdbcConnectionException.class, CannotCreateTransactionException.class})
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorResponse handleNoConnection(final RuntimeException e) {
+        log.warn("Нет свободного соединения с базой: {}", e.getMessage());
+        return new ErrorResponse("Сервис перегружен, повторите запрос позже.");
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ErrorResponse handleException(final Exception e) {
@@ -49,4 +79,11 @@ public class ErrorHandler {
         log.error("Внутренняя ошибка сервера: {}", e.getMessage());
         return new ErrorResponse(e.getMessage());
     }
+
+    private static Counter errorCounter(MeterRegistry meterRegistry, String type) {
+        return Counter.builder("filmorate.errors")
+                .description("Ошибки запросов, обработанные ErrorHandler")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
 }
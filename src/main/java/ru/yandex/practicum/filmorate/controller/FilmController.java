@@ -1,14 +1,20 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.cache.EntityVersions;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Контроллер для работы с фильмами.
@@ -19,10 +25,51 @@ import java.util.Collection;
 @RequestMapping("/films")
 public class FilmController {
     private final FilmService filmService;
+    private final NdjsonWriter ndjsonWriter;
+    private final EntityVersions versions;
 
+    /**
+     * Без параметров возвращает все фильмы, иначе одну страницу - см. {@link KeysetPage}.
+     */
     @GetMapping
-    public Collection<Film> findAll() {
-        return filmService.findAll();
+    public ResponseEntity<Collection<Film>> findAll(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit
+    ) {
+        return KeysetPage.respond(after, limit, filmService::findAll, filmService::findPage, Film::getId);
+    }
+
+    /**
+     * Потоковая выгрузка всех фильмов с жанрами и MPA в формате NDJSON.
+     */
+    @GetMapping(value = "/export", produces = NdjsonWriter.MEDIA_TYPE)
+    public void export(HttpServletResponse response) throws IOException {
+        ndjsonWriter.write(response, filmService::exportAll);
+    }
+
+    /**
+     * Полнотекстовый поиск по названию и/или описанию ({@code by}), результаты упорядочены
+     * по релевантности или по числу лайков ({@code sortBy}).
+     */
+    @GetMapping("/search")
+    public Collection<Film> search(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "title,description") String by,
+            @RequestParam(defaultValue = "relevance") String sortBy,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        return filmService.search(query, by, sortBy, limit);
+    }
+
+    /**
+     * Подсказки для строки поиска: фильмы, название которых начинается с {@code prefix}, популярные первыми.
+     */
+    @GetMapping("/autocomplete")
+    public Collection<Film> autocomplete(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        return filmService.autocomplete(prefix, limit);
     }
 
     @PostMapping
@@ -30,14 +77,29 @@ public class FilmController {
         return filmService.create(film);
     }
 
+    @PostMapping("/batch")
+    public List<Film> createAll(@RequestBody List<@Valid Film> films) {
+        return filmService.createAll(films);
+    }
+
     @PutMapping
     public Film update(@Valid @RequestBody Film newFilm) {
         return filmService.update(newFilm);
     }
 
+    /**
+     * Поддерживает условный запрос: при совпадении If-None-Match отвечает 304, не сериализуя фильм.
+     * Версия у всех неменявшихся фильмов общая, поэтому сначала фильм берётся из кэша: на
+     * несуществующий id приходит 404, а не 304.
+     */
     @GetMapping("/{id}")
-    public Film findById(@PathVariable @Positive Long id) {  // <-- Добавлено: @Positive
-        return filmService.findById(id);
+    public Film findById(@PathVariable @Positive Long id, WebRequest request) {  // <-- Добавлено: @Positive
+        EntityVersions.Version version = versions.film(id);
+        Film film = filmService.findById(id);
+        if (version.checkNotModified(request)) {
+            return null;
+        }
+        return film;
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -56,8 +118,20 @@ public class FilmController {
         return filmService.deleteLike(id, userId);
     }
 
+    /**
+     * Рейтинг можно ограничить жанром ({@code genreId}) и годом выпуска ({@code year}).
+     * Поддерживает условный запрос: версия рейтинга меняется при любом лайке и сохранении фильма.
+     */
     @GetMapping("/popular")
-    public Collection<Film> popularFilms(@RequestParam(defaultValue = "10") int count) {
-        return filmService.popularFilms(count);
+    public Collection<Film> popularFilms(
+            @RequestParam(defaultValue = "10") int count,
+            @RequestParam(required = false) Long genreId,
+            @RequestParam(required = false) Integer year,
+            WebRequest request
+    ) {
+        if (versions.popularFilms().checkNotModified(request)) {
+            return null;
+        }
+        return filmService.popularFilms(count, genreId, year);
     }
 }
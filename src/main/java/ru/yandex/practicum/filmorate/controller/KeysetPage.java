@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.Collection;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Постраничная выдача списков по id. Без {@code after} и {@code limit} отдаётся весь список.
+ * С ними - одна страница: не больше {@code limit} записей с id больше {@code after}. Если страница
+ * полная, id её последней записи кладётся в заголовок {@value #NEXT_CURSOR_HEADER} - это
+ * {@code after} для следующей страницы. На неполной странице заголовка нет.
+ */
+final class KeysetPage {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int DEFAULT_PAGE_SIZE = 100;
+
+    private KeysetPage() {
+    }
+
+    static <T> ResponseEntity<Collection<T>> respond(
+            Long after,
+            Integer limit,
+            Supplier<Collection<T>> all,
+            BiFunction<Long, Integer, Collection<T>> page,
+            Function<T, Long> idOf
+    ) {
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(all.get());
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        Collection<T> found = page.apply(after, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (found.size() == pageSize) {
+            T last = found.stream().reduce((first, second) -> second).orElseThrow();
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(idOf.apply(last)));
+        }
+        return response.body(found);
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.dao.BinarySnapshot;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Map;
+
+/**
+ * Двоичный снимок всей базы для восстановления стендов: {@code GET} выгружает, {@code PUT} заменяет
+ * все данные присланным снимком и возвращает число загруженных строк по таблицам.
+ * <p>
+ * Своей аутентификации у эндпоинта нет, поэтому он выключен по умолчанию и включается только на
+ * стендах свойством {@code filmorate.admin.snapshot.enabled=true}.
+ */
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/admin/snapshot")
+@ConditionalOnExpression("${filmorate.admin.snapshot.enabled:false} and '${filmorate.storage.type:db}' == 'db'")
+public class SnapshotController {
+    private final BinarySnapshot snapshot;
+
+    @GetMapping(produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void export(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"filmorate.snapshot\"");
+        snapshot.export(Channels.newChannel(response.getOutputStream()));
+        response.flushBuffer();
+    }
+
+    @PutMapping(consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Map<String, Long> restore(HttpServletRequest request) throws IOException {
+        return snapshot.restore(Channels.newChannel(request.getInputStream()));
+    }
+}
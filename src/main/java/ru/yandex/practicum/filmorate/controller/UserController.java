@@ -1,25 +1,52 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Контроллер для работы с пользователями.
  */
+@Validated
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/users")
 public class UserController {
     private final UserService userService;
+    private final FilmService filmService;
+    private final NdjsonWriter ndjsonWriter;
+    private final EntityVersions versions;
 
+    /**
+     * Без параметров возвращает всех пользователей, иначе одну страницу - см. {@link KeysetPage}.
+     */
     @GetMapping
-    public Collection<User> findAll() {
-        return userService.findAll();
+    public ResponseEntity<Collection<User>> findAll(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit
+    ) {
+        return KeysetPage.respond(after, limit, userService::findAll, userService::findPage, User::getId);
+    }
+
+    /**
+     * Потоковая выгрузка всех пользователей в формате NDJSON.
+     */
+    @GetMapping(value = "/export", produces = NdjsonWriter.MEDIA_TYPE)
+    public void export(HttpServletResponse response) throws IOException {
+        ndjsonWriter.write(response, userService::exportAll);
     }
 
     @PostMapping
@@ -27,14 +54,29 @@ public class UserController {
         return userService.create(user);
     }
 
+    @PostMapping("/batch")
+    public List<User> createAll(@RequestBody List<@Valid User> users) {
+        return userService.createAll(users);
+    }
+
     @PutMapping
     public User update(@Valid @RequestBody User newUser) {
         return userService.update(newUser);
     }
 
+    /**
+     * Поддерживает условный запрос: при совпадении If-None-Match отвечает 304, не сериализуя пользователя.
+     * Версия у всех неменявшихся пользователей общая, поэтому сначала пользователь берётся из кэша:
+     * на несуществующий id приходит 404, а не 304.
+     */
     @GetMapping("/{id}")
-    public User findById(@PathVariable Long id) {
-        return userService.findById(id);
+    public User findById(@PathVariable Long id, WebRequest request) {
+        EntityVersions.Version version = versions.user(id);
+        User user = userService.findById(id);
+        if (version.checkNotModified(request)) {
+            return null;
+        }
+        return user;
     }
 
     @PutMapping("/{id}/friends/{friendId}")
@@ -47,13 +89,44 @@ public class UserController {
         return userService.deleteFriend(id, friendId);
     }
 
+    /**
+     * Условный запрос: 304 только для существующего пользователя.
+     */
     @GetMapping("/{id}/friends")
-    public Collection<User> findFriends(@PathVariable Long id) {
+    public Collection<User> findFriends(@PathVariable Long id, WebRequest request) {
+        EntityVersions.Version version = versions.friends(id);
+        userService.findById(id);
+        if (version.checkNotModified(request)) {
+            return null;
+        }
         return userService.findFriends(id);
     }
 
+    @GetMapping("/{id}/recommendations")
+    public Collection<Film> findRecommendations(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        return filmService.findRecommendations(id, limit);
+    }
+
+    @GetMapping("/{id}/friends/suggestions")
+    public Collection<User> findFriendSuggestions(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        return userService.findFriendSuggestions(id, limit);
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
-    public Collection<User> findCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
+    public Collection<User> findCommonFriends(@PathVariable Long id, @PathVariable Long otherId,
+                                              WebRequest request) {
+        EntityVersions.Version version = versions.friends(id).and(versions.friends(otherId));
+        userService.findById(id);
+        userService.findById(otherId);
+        if (version.checkNotModified(request)) {
+            return null;
+        }
         return userService.findCommonFriends(id, otherId);
     }
 }
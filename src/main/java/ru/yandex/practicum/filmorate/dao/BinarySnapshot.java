@@ -0,0 +1,627 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
+import ru.yandex.practicum.filmorate.cache.UserCache;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.FilmRecommendations;
+import ru.yandex.practicum.filmorate.index.FriendSuggestions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Выгрузка всех таблиц в компактный колоночный двоичный снимок и загрузка из него - для
+ * восстановления стендов и тёплого старта вместо data.sql или копирования файла базы.
+ * <p>
+ * Снимок - {@code [MAGIC][версия]}, затем по секции на таблицу: {@code [таблица][строк][колонок]}
+ * и колонки целиком, каждая {@code [длина][байты]} (см. {@link ColumnWriter}). Строки идут по
+ * первичному ключу, и id хранятся разностью с предыдущей строкой: у лайков и дружбы повторяющийся
+ * первый id даёт 0, второй - небольшую разность внутри группы, так что пара занимает 2-4 байта.
+ * Выгрузка идёт в одной транзакции REPEATABLE READ, так что таблицы согласованы между собой.
+ * <p>
+ * Загрузка заменяет все данные и идёт в два шага. Сначала снимок читается целиком и проверяется:
+ * известные и неповторяющиеся таблицы, все таблицы на месте, число колонок, каждая колонка
+ * разбирается до конца без остатка, а строки проходят то, на чём споткнулась бы вставка: ключи строго
+ * возрастают, числа помещаются в INTEGER, строки - в длину колонки, а ссылки ведут на строки снимка.
+ * Повреждённый, оборванный или противоречивый снимок отклоняется, не тронув базу.
+ * <p>
+ * Затем под монопольным {@link StorageWriteGate} таблицы очищаются TRUNCATE и заполняются пачками,
+ * каждая одним {@code INSERT ... SELECT FROM UNNEST} с колонками-массивами и своей фиксацией.
+ * Одна транзакция на весь снимок в H2 обходится дороже самих вставок: удалённые и вставленные строки
+ * копятся в журнале отмены. В SnapshotBenchmark (30 тыс. пользователей и фильмов, 300 тыс. лайков,
+ * 300 тыс. связей дружбы) загрузка в одной транзакции занимала около 260 с, пачками - около 14 с.
+ * Проверка внешних ключей на время загрузки снята (снимок уже проверен), а счётчик like_count
+ * берётся из самого снимка. Цена - атомарность:
+ * чтения во время загрузки видят таблицы частично заполненными, а если загрузка оборвётся на ошибке
+ * базы, в таблицах останется часть снимка, и восстановление нужно повторить. После загрузки
+ * восстанавливаются счётчики id, а справочники, индексы в памяти и кэши перечитываются в любом случае.
+ * <p>
+ * Дальше скорость ограничена самой H2: вставка строки связующей таблицы с первичным ключом и
+ * обратным индексом стоит порядка 20-30 мкс, так что снимок с 10 млн лайков грузится минуты, а не секунды.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
+public class BinarySnapshot {
+    static final int MAGIC = 0x464C4D53;
+    static final int VERSION = 1;
+    private static final int EXPORT_FETCH_SIZE = 10_000;
+    private static final int BATCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate exportTransaction;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final ReferenceDataRegistry registry;
+    private final LikeWriteBehindQueue likeQueue;
+    private final StorageWriteGate writeGate;
+    private final FilmCache filmCache;
+    private final UserCache userCache;
+    private final FilmRecommendations recommendations;
+    private final FriendSuggestions friendSuggestions;
+    private final EntityVersions versions;
+
+    /**
+     * Таблицы снимка в порядке записи. Номер - метка секции в файле, менять его нельзя.
+     */
+    enum Table {
+        GENRES(1, "genres", "id INTEGER", "name VARCHAR"),
+        MPA(2, "mpa", "id INTEGER", "name VARCHAR"),
+        USERS(3, "\"user\"", "id INTEGER", "email VARCHAR", "login VARCHAR", "name VARCHAR", "birthday DATE"),
+        FILMS(4, "film", "id INTEGER", "name VARCHAR", "description VARCHAR", "releaseDate DATE",
+                "duration INTEGER", "mpa_id INTEGER", "like_count INTEGER"),
+        FILM_GENRES(5, "film_genres", "film_id INTEGER", "genre_id INTEGER"),
+        FILM_LIKES(6, "film_likes", "film_id INTEGER", "user_id INTEGER"),
+        USER_FRIENDSHIP(7, "user_friendship", "user_id INTEGER", "friend_id INTEGER", "confirmed BOOLEAN");
+
+        private final int tag;
+        private final String sqlName;
+        private final String[] columns;
+
+        Table(int tag, String sqlName, String... columns) {
+            this.tag = tag;
+            this.sqlName = sqlName;
+            this.columns = columns;
+        }
+
+        /**
+         * Ключ строки - id у справочников и сущностей, пара первых колонок у связующих таблиц.
+         */
+        boolean hasId() {
+            return columns[0].startsWith("id ");
+        }
+
+        /**
+         * Таблица, на id которой ссылается колонка, или {@code null}.
+         */
+        Table referenced(int column) {
+            return switch (this) {
+                case FILMS -> column == 5 ? MPA : null;
+                case FILM_GENRES -> column == 0 ? FILMS : GENRES;
+                case FILM_LIKES -> column == 0 ? FILMS : USERS;
+                case USER_FRIENDSHIP -> column < 2 ? USERS : null;
+                default -> null;
+            };
+        }
+
+        /**
+         * Имя колонки в нижнем регистре с именем таблицы без кавычек, как ключ длин колонок.
+         */
+        String columnKey(int column) {
+            return (sqlName.replace("\"", "") + "." + columns[column].split(" ")[0]).toLowerCase();
+        }
+
+        /**
+         * Вставка пачки строк одним запросом: каждая колонка передаётся массивом и разворачивается UNNEST.
+         */
+        String insert() {
+            StringJoiner names = new StringJoiner(", ");
+            StringJoiner arrays = new StringJoiner(", ");
+            for (String column : columns) {
+                String[] nameAndType = column.split(" ");
+                names.add(nameAndType[0]);
+                arrays.add("CAST(? AS " + nameAndType[1] + " ARRAY)");
+            }
+            return "INSERT INTO " + sqlName + " (" + names + ") SELECT * FROM UNNEST(" + arrays + ")";
+        }
+    }
+
+    /**
+     * Прочитанная и проверенная секция снимка: колонки лежат в памяти, строки разбираются при вставке.
+     */
+    private record Section(Table table, long rows, List<ColumnReader> columns) {
+    }
+
+    public BinarySnapshot(JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                          FilmDbStorage filmStorage, UserDbStorage userStorage, ReferenceDataRegistry registry,
+                          LikeWriteBehindQueue likeQueue, StorageWriteGate writeGate,
+                          FilmCache filmCache, UserCache userCache,
+                          FilmRecommendations recommendations, FriendSuggestions friendSuggestions,
+                          EntityVersions versions) {
+        this.jdbc = jdbc;
+        this.exportTransaction = new TransactionTemplate(transactionManager);
+        this.exportTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.exportTransaction.setReadOnly(true);
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.registry = registry;
+        this.likeQueue = likeQueue;
+        this.writeGate = writeGate;
+        this.filmCache = filmCache;
+        this.userCache = userCache;
+        this.recommendations = recommendations;
+        this.friendSuggestions = friendSuggestions;
+        this.versions = versions;
+    }
+
+    /**
+     * Пишет снимок всех таблиц в канал.
+     *
+     * @return число строк по таблицам
+     */
+    public Map<String, Long> export(WritableByteChannel channel) {
+        if (likeQueue.isEnabled()) {
+            likeQueue.flush();
+        }
+        Map<String, Long> rows = new LinkedHashMap<>();
+        try {
+            ColumnWriter header = new ColumnWriter();
+            header.putVarLong(MAGIC);
+            header.putVarLong(VERSION);
+            header.writeRawTo(channel);
+            exportTransaction.executeWithoutResult(status -> {
+                for (Table table : Table.values()) {
+                    rows.put(table.name().toLowerCase(), exportTable(table, channel));
+                }
+            });
+            ColumnWriter end = new ColumnWriter();
+            end.putVarLong(0);
+            end.writeRawTo(channel);
+        } catch (IOException e) {
+            throw new InternalServerException("Не удалось записать снимок: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            throw new InternalServerException("Не удалось записать снимок: " + e.getCause().getMessage());
+        }
+        log.info("Выгружен двоичный снимок: {}", rows);
+        return rows;
+    }
+
+    /**
+     * Заменяет все данные снимком из канала. Снимок сначала читается и проверяется целиком,
+     * некорректный отклоняется {@link ValidationException} без изменений в базе.
+     *
+     * @return число строк по таблицам
+     */
+    public Map<String, Long> restore(ReadableByteChannel channel) {
+        List<Section> sections = read(channel, maxLengths());
+        return writeGate.exclusive(() -> {
+            long startedAt = System.nanoTime();
+            // отложенные лайки записываются до загрузки, а не поверх неё
+            if (likeQueue.isEnabled()) {
+                likeQueue.flush();
+            }
+            Map<String, Long> rows;
+            try {
+                rows = jdbc.execute((ConnectionCallback<Map<String, Long>>) connection -> load(connection, sections));
+            } finally {
+                reloadIndexes();
+            }
+            log.info("Загружен двоичный снимок за {} мс: {}", (System.nanoTime() - startedAt) / 1_000_000, rows);
+            return rows;
+        });
+    }
+
+    private long exportTable(Table table, WritableByteChannel channel) {
+        List<ColumnWriter> columns = new ArrayList<>();
+        long[] count = new long[1];
+        switch (table) {
+            case GENRES, MPA -> {
+                ColumnWriter ids = add(columns);
+                ColumnWriter names = add(columns);
+                long[] previous = new long[1];
+                stream("SELECT id, name FROM " + table.sqlName + " ORDER BY id", rs -> {
+                    long id = rs.getLong(1);
+                    ids.putVarLong(id - previous[0]);
+                    previous[0] = id;
+                    names.putString(rs.getString(2));
+                    count[0]++;
+                });
+            }
+            case USERS -> {
+                ColumnWriter ids = add(columns);
+                ColumnWriter emails = add(columns);
+                ColumnWriter logins = add(columns);
+                ColumnWriter names = add(columns);
+                ColumnWriter birthdays = add(columns);
+                long[] previous = new long[1];
+                stream("SELECT id, email, login, name, birthday FROM \"user\" ORDER BY id", rs -> {
+                    long id = rs.getLong(1);
+                    ids.putVarLong(id - previous[0]);
+                    previous[0] = id;
+                    emails.putString(rs.getString(2));
+                    logins.putString(rs.getString(3));
+                    names.putNullableString(rs.getString(4));
+                    birthdays.putNullableZigZag(epochDay(rs.getDate(5)));
+                    count[0]++;
+                });
+            }
+            case FILMS -> {
+                ColumnWriter ids = add(columns);
+                ColumnWriter names = add(columns);
+                ColumnWriter descriptions = add(columns);
+                ColumnWriter releaseDates = add(columns);
+                ColumnWriter durations = add(columns);
+                ColumnWriter mpaIds = add(columns);
+                ColumnWriter likeCounts = add(columns);
+                long[] previous = new long[1];
+                stream("SELECT id, name, description, releaseDate, duration, mpa_id, like_count " +
+                        "FROM film ORDER BY id", rs -> {
+                    long id = rs.getLong(1);
+                    ids.putVarLong(id - previous[0]);
+                    previous[0] = id;
+                    names.putString(rs.getString(2));
+                    descriptions.putNullableString(rs.getString(3));
+                    releaseDates.putNullableZigZag(epochDay(rs.getDate(4)));
+                    durations.putNullableZigZag(nullableLong(rs, 5));
+                    mpaIds.putNullableVarLong(nullableLong(rs, 6));
+                    likeCounts.putVarLong(rs.getLong(7));
+                    count[0]++;
+                });
+            }
+            case FILM_GENRES, FILM_LIKES, USER_FRIENDSHIP -> {
+                ColumnWriter firstIds = add(columns);
+                ColumnWriter secondIds = add(columns);
+                ColumnWriter confirmed = table == Table.USER_FRIENDSHIP ? add(columns) : null;
+                String query = switch (table) {
+                    case FILM_GENRES -> "SELECT film_id, genre_id FROM film_genres ORDER BY film_id, genre_id";
+                    case FILM_LIKES -> "SELECT film_id, user_id FROM film_likes ORDER BY film_id, user_id";
+                    default -> "SELECT user_id, friend_id, confirmed FROM user_friendship ORDER BY user_id, friend_id";
+                };
+                long[] previous = new long[2];
+                stream(query, rs -> {
+                    long first = rs.getLong(1);
+                    long second = rs.getLong(2);
+                    firstIds.putVarLong(first - previous[0]);
+                    // внутри группы с тем же первым id второй растёт, разность с ним мала
+                    secondIds.putZigZag(first == previous[0] ? second - previous[1] : second);
+                    previous[0] = first;
+                    previous[1] = second;
+                    if (confirmed != null) {
+                        boolean value = rs.getBoolean(3);
+                        confirmed.putVarLong(rs.wasNull() ? 0 : value ? 2 : 1);
+                    }
+                    count[0]++;
+                });
+            }
+            default -> throw new IllegalStateException("Неизвестная таблица снимка: " + table);
+        }
+        try {
+            ColumnWriter header = new ColumnWriter();
+            header.putVarLong(table.tag);
+            header.putVarLong(count[0]);
+            header.putVarLong(columns.size());
+            header.writeRawTo(channel);
+            for (ColumnWriter column : columns) {
+                column.writeTo(channel);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count[0];
+    }
+
+    private static List<Section> read(ReadableByteChannel channel, Map<String, Integer> maxLengths) {
+        try {
+            if (ColumnReader.readVarLong(channel) != MAGIC) {
+                throw new ValidationException("Это не снимок Filmorate");
+            }
+            long version = ColumnReader.readVarLong(channel);
+            if (version != VERSION) {
+                throw new ValidationException("Неподдерживаемая версия снимка: " + version);
+            }
+            Map<Table, Section> sections = new EnumMap<>(Table.class);
+            long tag;
+            while ((tag = ColumnReader.readVarLong(channel)) != 0) {
+                Table table = table(tag);
+                if (sections.containsKey(table)) {
+                    throw new ValidationException("Таблица " + table.sqlName + " встречается в снимке дважды");
+                }
+                long count = ColumnReader.readVarLong(channel);
+                long columnCount = ColumnReader.readVarLong(channel);
+                if (columnCount != table.columns.length) {
+                    throw new ValidationException("Неверное число колонок в таблице снимка " + table.sqlName
+                            + ": " + columnCount);
+                }
+                List<ColumnReader> columns = new ArrayList<>(table.columns.length);
+                for (int i = 0; i < table.columns.length; i++) {
+                    columns.add(ColumnReader.read(channel));
+                }
+                sections.put(table, new Section(table, count, columns));
+            }
+            for (Table table : Table.values()) {
+                if (!sections.containsKey(table)) {
+                    throw new ValidationException("В снимке нет таблицы " + table.sqlName);
+                }
+            }
+            // в порядке Table: таблицы, на которые ссылаются, проверяются раньше ссылающихся
+            Map<Table, int[]> ids = new EnumMap<>(Table.class);
+            for (Section section : sections.values()) {
+                validate(section, ids, maxLengths);
+            }
+            return new ArrayList<>(sections.values());
+        } catch (IOException e) {
+            throw new ValidationException("Не удалось прочитать снимок: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Разбирает все строки секции вхолостую: колонки должны закончиться ровно на последней строке,
+     * а каждая строка - пройти {@link #checkRow}. Id таблицы складываются в {@code ids} для проверки
+     * ссылок на неё.
+     */
+    private static void validate(Section section, Map<Table, int[]> ids, Map<String, Integer> maxLengths) {
+        Table table = section.table();
+        List<ColumnReader> columns = section.columns();
+        // каждая строка занимает в первой колонке хотя бы байт
+        if (section.rows() < 0 || section.rows() > columns.get(0).remaining()) {
+            throw new ValidationException("Неверное число строк в таблице снимка " + table.sqlName
+                    + ": " + section.rows());
+        }
+        int[] keys = table.hasId() ? new int[(int) section.rows()] : null;
+        Object[][] row = new Object[table.columns.length][1];
+        long[] previous = new long[2];
+        long[] previousKey = {Long.MIN_VALUE, Long.MIN_VALUE};
+        try {
+            for (long index = 0; index < section.rows(); index++) {
+                decodeRow(table, columns, previous, index, row, 0);
+                checkRow(table, row, previousKey, ids, maxLengths);
+                if (keys != null) {
+                    keys[(int) index] = ((Long) row[0][0]).intValue();
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | DateTimeException e) {
+            throw new ValidationException("Повреждённая таблица снимка " + table.sqlName);
+        }
+        for (ColumnReader column : columns) {
+            if (!column.isConsumed()) {
+                throw new ValidationException("Лишние данные в таблице снимка " + table.sqlName);
+            }
+            column.rewind();
+        }
+        if (keys != null) {
+            ids.put(table, keys);
+        }
+    }
+
+    /**
+     * Проверяет строку на всё, на чём споткнулась бы вставка: ключ больше ключа предыдущей строки
+     * (значит, без повторов), числа в диапазоне INTEGER, строки не длиннее колонки, ссылки на
+     * существующие id. Ключи строго возрастают, поэтому id в {@code ids} отсортированы.
+     */
+    private static void checkRow(Table table, Object[][] row, long[] previousKey, Map<Table, int[]> ids,
+                                 Map<String, Integer> maxLengths) {
+        long first = (Long) row[0][0];
+        long second = table.hasId() ? 0 : (Long) row[1][0];
+        if (first < previousKey[0] || first == previousKey[0] && second <= previousKey[1]) {
+            throw new ValidationException("Ключи таблицы снимка " + table.sqlName
+                    + " повторяются или идут не по возрастанию");
+        }
+        previousKey[0] = first;
+        previousKey[1] = second;
+        for (int column = 0; column < table.columns.length; column++) {
+            Object value = row[column][0];
+            if (value instanceof Long number && (number < Integer.MIN_VALUE || number > Integer.MAX_VALUE)) {
+                throw new ValidationException("Число вне диапазона INTEGER в колонке снимка "
+                        + table.columnKey(column) + ": " + number);
+            }
+            if (value instanceof String text
+                    && text.length() > maxLengths.getOrDefault(table.columnKey(column), Integer.MAX_VALUE)) {
+                throw new ValidationException("Строка длиннее колонки " + table.columnKey(column)
+                        + " в снимке: " + text.length());
+            }
+            Table referenced = table.referenced(column);
+            if (referenced != null && value != null
+                    && Arrays.binarySearch(ids.get(referenced), ((Long) value).intValue()) < 0) {
+                throw new ValidationException("Колонка снимка " + table.columnKey(column)
+                        + " ссылается на отсутствующую строку " + referenced.sqlName + ": " + value);
+            }
+        }
+    }
+
+    private Map<String, Long> load(Connection connection, List<Section> sections) throws SQLException {
+        Map<String, Long> rows = new LinkedHashMap<>();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            // TRUNCATE таблицы, на которую ссылаются, H2 разрешает только без проверки внешних ключей
+            for (Section section : sections) {
+                statement.execute("ALTER TABLE " + section.table().sqlName + " SET REFERENTIAL_INTEGRITY FALSE");
+            }
+            try {
+                for (Section section : sections) {
+                    statement.execute("TRUNCATE TABLE " + section.table().sqlName);
+                }
+                for (Section section : sections) {
+                    loadTable(connection, section);
+                    rows.put(section.table().name().toLowerCase(), section.rows());
+                }
+            } catch (SQLException | RuntimeException e) {
+                log.error("Загрузка снимка прервана, таблицы заполнены частично - восстановление нужно повторить", e);
+                throw e;
+            } finally {
+                for (Section section : sections) {
+                    statement.execute("ALTER TABLE " + section.table().sqlName + " SET REFERENTIAL_INTEGRITY TRUE");
+                }
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (Table table : List.of(Table.GENRES, Table.MPA, Table.USERS, Table.FILMS)) {
+                long next;
+                try (ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table.sqlName)) {
+                    rs.next();
+                    next = rs.getLong(1);
+                }
+                statement.execute("ALTER TABLE " + table.sqlName + " ALTER COLUMN id RESTART WITH " + next);
+            }
+        }
+        return rows;
+    }
+
+    private void loadTable(Connection connection, Section section) throws SQLException {
+        Table table = section.table();
+        try (PreparedStatement ps = connection.prepareStatement(table.insert())) {
+            long[] previous = new long[2];
+            long loaded = 0;
+            while (loaded < section.rows()) {
+                Object[][] batch = new Object[table.columns.length][(int) Math.min(BATCH_SIZE, section.rows() - loaded)];
+                for (int row = 0; row < batch[0].length; row++, loaded++) {
+                    decodeRow(table, section.columns(), previous, loaded, batch, row);
+                }
+                for (int column = 0; column < batch.length; column++) {
+                    ps.setObject(column + 1, batch[column]);
+                }
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Разбирает строку с номером {@code index} в позицию {@code row} колонок-массивов {@code batch}.
+     * {@code previous} - id предыдущей строки, от которых считаются разности.
+     */
+    private static void decodeRow(Table table, List<ColumnReader> columns, long[] previous, long index,
+                                  Object[][] batch, int row) {
+        switch (table) {
+            case GENRES, MPA -> {
+                previous[0] += columns.get(0).getVarLong();
+                batch[0][row] = previous[0];
+                batch[1][row] = columns.get(1).getString();
+            }
+            case USERS -> {
+                previous[0] += columns.get(0).getVarLong();
+                batch[0][row] = previous[0];
+                batch[1][row] = columns.get(1).getString();
+                batch[2][row] = columns.get(2).getString();
+                batch[3][row] = columns.get(3).getNullableString();
+                batch[4][row] = date(columns.get(4).getNullableZigZag());
+            }
+            case FILMS -> {
+                previous[0] += columns.get(0).getVarLong();
+                batch[0][row] = previous[0];
+                batch[1][row] = columns.get(1).getString();
+                batch[2][row] = columns.get(2).getNullableString();
+                batch[3][row] = date(columns.get(3).getNullableZigZag());
+                batch[4][row] = columns.get(4).getNullableZigZag();
+                batch[5][row] = columns.get(5).getNullableVarLong();
+                batch[6][row] = columns.get(6).getVarLong();
+            }
+            case FILM_GENRES, FILM_LIKES, USER_FRIENDSHIP -> {
+                long firstDelta = columns.get(0).getVarLong();
+                long secondValue = columns.get(1).getZigZag();
+                previous[1] = firstDelta == 0 && index > 0 ? previous[1] + secondValue : secondValue;
+                previous[0] += firstDelta;
+                batch[0][row] = previous[0];
+                batch[1][row] = previous[1];
+                if (table == Table.USER_FRIENDSHIP) {
+                    long confirmed = columns.get(2).getVarLong();
+                    batch[2][row] = confirmed == 0 ? null : confirmed == 2;
+                }
+            }
+        }
+    }
+
+    /**
+     * Наибольшая длина строковых колонок схемы по ключу {@link Table#columnKey}.
+     */
+    private Map<String, Integer> maxLengths() {
+        Map<String, Integer> lengths = new HashMap<>();
+        jdbc.query("SELECT table_name, column_name, character_maximum_length FROM information_schema.columns " +
+                "WHERE table_schema = CURRENT_SCHEMA AND character_maximum_length IS NOT NULL", rs -> {
+            lengths.put((rs.getString(1) + "." + rs.getString(2)).toLowerCase(), rs.getInt(3));
+        });
+        return lengths;
+    }
+
+    /**
+     * Перечитывает всё, что построено поверх таблиц, - и после загрузки, и после её ошибки.
+     */
+    private void reloadIndexes() {
+        registry.reload();
+        filmStorage.loadIndexes();
+        userStorage.loadFriendshipGraph();
+        filmCache.invalidateAll();
+        userCache.invalidateAll();
+        recommendations.invalidateAll();
+        friendSuggestions.invalidateAll();
+        versions.resetAll();
+    }
+
+    private void stream(String query, RowCallbackHandler handler) {
+        jdbc.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(query,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            return ps;
+        }, handler);
+    }
+
+    private static ColumnWriter add(List<ColumnWriter> columns) {
+        ColumnWriter column = new ColumnWriter();
+        columns.add(column);
+        return column;
+    }
+
+    private static Table table(long tag) {
+        for (Table table : Table.values()) {
+            if (table.tag == tag) {
+                return table;
+            }
+        }
+        throw new ValidationException("Неизвестная таблица в снимке: " + tag);
+    }
+
+    private static Long epochDay(Date date) {
+        return date == null ? null : date.toLocalDate().toEpochDay();
+    }
+
+    private static LocalDate date(Long epochDay) {
+        return epochDay == null ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static Long nullableLong(ResultSet rs, int column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+}
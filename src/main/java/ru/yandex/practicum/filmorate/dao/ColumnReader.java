@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Чтение колонки, записанной {@link ColumnWriter}. Колонка целиком читается из канала в память,
+ * значения разбираются по порядку строк.
+ */
+final class ColumnReader {
+    private final ByteBuffer buffer;
+
+    private ColumnReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Читает длину колонки и её байты.
+     */
+    static ColumnReader read(ReadableByteChannel channel) throws IOException {
+        long length = readVarLong(channel);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Слишком длинная колонка снимка: " + length + " байт");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        readFully(channel, buffer);
+        return new ColumnReader(buffer.flip());
+    }
+
+    /**
+     * Varint прямо из канала, по байту: так читаются только короткие заголовки.
+     */
+    static long readVarLong(ReadableByteChannel channel) throws IOException {
+        ByteBuffer single = ByteBuffer.allocate(1);
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            single.clear();
+            readFully(channel, single);
+            byte b = single.get(0);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Повреждённый varint в снимке");
+    }
+
+    static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Снимок обрывается");
+            }
+        }
+    }
+
+    /**
+     * Все ли значения колонки прочитаны: у целого снимка после последней строки байтов не остаётся.
+     */
+    boolean isConsumed() {
+        return !buffer.hasRemaining();
+    }
+
+    int remaining() {
+        return buffer.remaining();
+    }
+
+    /**
+     * Возвращает чтение к первой строке - для второго прохода после проверки.
+     */
+    void rewind() {
+        buffer.rewind();
+    }
+
+    long getVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Повреждённый varint в снимке");
+    }
+
+    long getZigZag() {
+        long value = getVarLong();
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    Long getNullableVarLong() {
+        long value = getVarLong();
+        return value == 0 ? null : value - 1;
+    }
+
+    Long getNullableZigZag() {
+        long value = getVarLong();
+        if (value == 0) {
+            return null;
+        }
+        value--;
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    String getString() {
+        return utf8(getVarLong());
+    }
+
+    String getNullableString() {
+        long length = getVarLong();
+        return length == 0 ? null : utf8(length - 1);
+    }
+
+    private String utf8(long length) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), (int) length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + (int) length);
+        return value;
+    }
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Одна колонка снимка, которая копится в памяти, пока идут строки таблицы, и целиком пишется в канал.
+ * Числа - varint (7 бит на байт), знаковые - через zigzag, строки - длина и UTF-8.
+ * Для nullable-значений 0 означает null, а само значение сдвигается на единицу.
+ */
+final class ColumnWriter {
+    private byte[] bytes = new byte[1024];
+    private int size;
+
+    void putVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    void putZigZag(long value) {
+        putVarLong(value << 1 ^ value >> 63);
+    }
+
+    void putNullableVarLong(Long value) {
+        putVarLong(value == null ? 0 : value + 1);
+    }
+
+    void putNullableZigZag(Long value) {
+        putVarLong(value == null ? 0 : (value << 1 ^ value >> 63) + 1);
+    }
+
+    void putString(String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        putVarLong(utf8.length);
+        ensure(utf8.length);
+        System.arraycopy(utf8, 0, bytes, size, utf8.length);
+        size += utf8.length;
+    }
+
+    void putNullableString(String value) {
+        if (value == null) {
+            putVarLong(0);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        putVarLong(utf8.length + 1L);
+        ensure(utf8.length);
+        System.arraycopy(utf8, 0, bytes, size, utf8.length);
+        size += utf8.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Пишет байты как есть, без длины - для заголовков секций.
+     */
+    void writeRawTo(WritableByteChannel channel) throws IOException {
+        writeFully(channel, ByteBuffer.wrap(bytes, 0, size));
+    }
+
+    /**
+     * Пишет длину колонки и её байты.
+     */
+    void writeTo(WritableByteChannel channel) throws IOException {
+        ColumnWriter length = new ColumnWriter();
+        length.putVarLong(size);
+        writeFully(channel, ByteBuffer.wrap(length.bytes, 0, length.size));
+        writeFully(channel, ByteBuffer.wrap(bytes, 0, size));
+    }
+
+    static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+}
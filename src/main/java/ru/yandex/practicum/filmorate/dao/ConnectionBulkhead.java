@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ограничитель одновременных обращений к базе (bulkhead), включается свойством
+ * {@code filmorate.bulkhead.enabled}. Оборачивает DataSource: соединение выдаётся только
+ * по разрешению семафора и возвращает его при закрытии, разрешений столько же, сколько соединений в пуле.
+ * <p>
+ * На виртуальных потоках запросов может быть сколько угодно, и без ограничителя все они выстраиваются
+ * в очередь пула Hikari на {@code connection-timeout}. Здесь ждать разрешения может не больше
+ * {@code max-waiting} потоков и не дольше {@code timeout-ms}, остальные сразу получают
+ * {@link SQLTransientConnectionException}, которую обработчик ошибок превращает в 503.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.bulkhead.enabled", havingValue = "true")
+public class ConnectionBulkhead implements BeanPostProcessor {
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final int maxWaiting;
+    private final long timeoutMs;
+
+    public ConnectionBulkhead(
+            @Value("${filmorate.bulkhead.max-concurrent:${spring.datasource.hikari.maximum-pool-size:10}}")
+            int maxConcurrent,
+            @Value("${filmorate.bulkhead.max-waiting:1000}") int maxWaiting,
+            @Value("${filmorate.bulkhead.timeout-ms:1000}") long timeoutMs) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxWaiting = maxWaiting;
+        this.timeoutMs = timeoutMs;
+        log.info("Включён ограничитель обращений к базе: {} соединений, очередь {}, ожидание {} мс",
+                maxConcurrent, maxWaiting, timeoutMs);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource) || bean instanceof BulkheadDataSource) {
+            return bean;
+        }
+        return new BulkheadDataSource(dataSource);
+    }
+
+    /**
+     * Число свободных разрешений.
+     */
+    public int available() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * Число потоков, ожидающих разрешения.
+     */
+    public int waiting() {
+        return waiting.get();
+    }
+
+    private void acquire() throws SQLException {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            throw new SQLTransientConnectionException("Очередь к базе переполнена: ждут " + maxWaiting + " запросов");
+        }
+        try {
+            if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("Нет свободного соединения с базой за " + timeoutMs + " мс");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Ожидание соединения с базой прервано", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private Connection guarded(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                        try {
+                            return invoke(connection, method, args);
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                    return invoke(connection, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class BulkheadDataSource extends DelegatingDataSource {
+
+        BulkheadDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            acquire();
+            try {
+                return guarded(super.getConnection());
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            acquire();
+            try {
+                return guarded(super.getConnection(username, password));
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+}
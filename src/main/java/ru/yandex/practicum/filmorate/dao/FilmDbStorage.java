@@ -1,154 +1,321 @@
 package ru.yandex.practicum.filmorate.dao;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Primary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Component;
-import ru.yandex.practicum.filmorate.dao.mappers.FilmRowMapper;
-import ru.yandex.practicum.filmorate.dao.mappers.GenreRowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
+import ru.yandex.practicum.filmorate.dao.mappers.FilmGraphCallbackHandler;
+import ru.yandex.practicum.filmorate.dao.mappers.FilmGraphExtractor;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+import ru.yandex.practicum.filmorate.event.FilmSavedEvent;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.index.FilmRecommendations;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.TitleAutocomplete;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.SearchField;
+import ru.yandex.practicum.filmorate.model.SearchRanking;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Types;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import static ru.yandex.practicum.filmorate.storage.StorageValidator.validateFilm;
+import static ru.yandex.practicum.filmorate.storage.StorageValidator.validateReferences;
+
+@Timed(value = "filmorate.storage", histogram = true)
 @Component
-@Primary
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
 @Slf4j
 public class FilmDbStorage implements FilmStorage {
 
-    private final JdbcTemplate jdbc;
-    private final FilmRowMapper mapper;
+    /**
+     * Фильм и его жанры читаются одним запросом: на каждый жанр фильма приходится
+     * по строке, которые {@link FilmGraphExtractor} сворачивает обратно в один объект.
+     * Названия жанров и MPA берутся из справочников в памяти, поэтому их таблицы не джойнятся.
+     */
+    private static final String FILM_GRAPH_SELECT = "SELECT f.id, f.name, f.description, f.releaseDate, " +
+            "f.duration, f.mpa_id, fg.genre_id ";
+    private static final String FILM_GRAPH_JOINS = "LEFT JOIN film_genres fg ON f.id = fg.film_id ";
+
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final int BATCH_CHUNK_SIZE = 500;
+    private static final String INSERT_FILM = "INSERT INTO film(name, description, releaseDate, duration, mpa_id)" +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * Лайк и счётчик like_count одним запросом с параметрами {@code film, film, user, film, user}:
+     * фильм обновляется, только если вложенный INSERT вставил строку, поэтому обновлённых строк 1 для
+     * нового лайка и 0 для повторного или для отсутствующего фильма.
+     */
+    static final String LIKE_QUERY = "UPDATE film SET like_count = like_count + 1 WHERE id = ? AND EXISTS " +
+            "(SELECT 1 FROM FINAL TABLE (INSERT INTO film_likes(film_id, user_id) SELECT ?, ? WHERE NOT EXISTS " +
+            "(SELECT 1 FROM film_likes WHERE film_id = ? AND user_id = ?)))";
+    /**
+     * Снятие лайка вместе со счётчиком, параметры {@code film, film, user}; 0 строк - лайка не было.
+     */
+    static final String UNLIKE_QUERY = "UPDATE film SET like_count = like_count - 1 WHERE id = ? AND EXISTS " +
+            "(SELECT 1 FROM OLD TABLE (DELETE FROM film_likes WHERE film_id = ? AND user_id = ?))";
 
-    public FilmDbStorage(JdbcTemplate jdbc, FilmRowMapper mapper) {
+    private final JdbcTemplate jdbc;
+    private final FilmGraphExtractor extractor;
+    private final FilmLeaderboard leaderboard;
+    private final LikeMatrix likeMatrix;
+    private final FilmRecommendations recommendations;
+    private final FilmSearchIndex searchIndex;
+    private final TitleAutocomplete autocomplete;
+    private final FilmCache cache;
+    private final ReferenceDataRegistry registry;
+    private final LikeWriteBehindQueue likeQueue;
+    private final StorageWriteGate writeGate;
+    private final UserStorage userStorage;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate transactionTemplate;
+    private final PairLocks likeLocks = new PairLocks();
+    private final boolean leaderboardEnabled;
+
+    public FilmDbStorage(JdbcTemplate jdbc, FilmGraphExtractor extractor, FilmLeaderboard leaderboard,
+                         LikeMatrix likeMatrix, FilmRecommendations recommendations, FilmSearchIndex searchIndex,
+                         TitleAutocomplete autocomplete, FilmCache cache, ReferenceDataRegistry registry,
+                         LikeWriteBehindQueue likeQueue, StorageWriteGate writeGate, UserStorage userStorage,
+                         ApplicationEventPublisher events, PlatformTransactionManager transactionManager,
+                         @Value("${filmorate.popular.leaderboard.enabled:true}") boolean leaderboardEnabled) {
         this.jdbc = jdbc;
-        this.mapper = mapper;
+        this.extractor = extractor;
+        this.leaderboard = leaderboard;
+        this.likeMatrix = likeMatrix;
+        this.recommendations = recommendations;
+        this.searchIndex = searchIndex;
+        this.autocomplete = autocomplete;
+        this.cache = cache;
+        this.registry = registry;
+        this.likeQueue = likeQueue;
+        this.writeGate = writeGate;
+        this.userStorage = userStorage;
+        this.events = events;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.leaderboardEnabled = leaderboardEnabled;
     }
 
-    @Override
-    public Collection<Film> findAll() {
-        String query = "SELECT f.*, m.id AS mpa_id, m.name AS mpa_name " +
-                "FROM film f " +
-                "LEFT JOIN mpa m ON f.mpa_id = m.id";
-
-        List<Film> films = jdbc.query(query, (rs, rowNum) -> {
-            Film film = new Film();
-            film.setId(rs.getLong("id"));
-            film.setName(rs.getString("name"));
-            film.setDescription(rs.getString("description"));
-            film.setReleaseDate(rs.getDate("releaseDate").toLocalDate());
-            film.setDuration(rs.getInt("duration"));
-
-            // Обработка MPA
-            Long mpaId = rs.getLong("mpa_id");
-            if (!rs.wasNull()) {
-                Mpa mpa = new Mpa();
-                mpa.setId(mpaId);
-                mpa.setName(rs.getString("mpa_name"));
-                film.setMpa(mpa);
+    @PostConstruct
+    void loadIndexes() {
+        // по возрастанию id поисковый индекс только дописывает в конец своих списков
+        String query = "SELECT id, like_count, releaseDate, name, description FROM film ORDER BY id";
+        Map<Long, Long> likesByFilm = new HashMap<>();
+        Map<Long, Integer> yearByFilm = new HashMap<>();
+        Map<Long, String> titlesByFilm = new HashMap<>();
+        searchIndex.clear();
+        jdbc.query(query, rs -> {
+            long filmId = rs.getLong("id");
+            searchIndex.index(filmId, rs.getString("name"), rs.getString("description"));
+            titlesByFilm.put(filmId, rs.getString("name"));
+            likesByFilm.put(filmId, rs.getLong("like_count"));
+            Date releaseDate = rs.getDate("releaseDate");
+            if (releaseDate != null) {
+                yearByFilm.put(filmId, releaseDate.toLocalDate().getYear());
             }
-
-            return film;
         });
+        Map<Long, Set<Long>> genresByFilm = new HashMap<>();
+        jdbc.query("SELECT film_id, genre_id FROM film_genres", rs -> {
+            genresByFilm.computeIfAbsent(rs.getLong("film_id"), id -> new HashSet<>()).add(rs.getLong("genre_id"));
+        });
+        leaderboard.load(likesByFilm, yearByFilm, genresByFilm);
+        autocomplete.load(titlesByFilm);
 
-        // Загрузка жанров отдельным запросом
-        for (Film film : films) {
-            Set<Genre> genres = getGenresByFilmId(film.getId());
-            film.setGenres(genres);
-        }
-
-        return films;
+        List<long[]> likes = new ArrayList<>();
+        jdbc.query("SELECT user_id, film_id FROM film_likes", rs -> {
+            likes.add(new long[]{rs.getLong("user_id"), rs.getLong("film_id")});
+        });
+        likeMatrix.load(likes);
     }
 
     @Override
-    public Film findById(Long id) {
-        String query = "SELECT f.*, m.id AS mpa_id, m.name AS mpa_name " +
+    public Collection<Film> findAll() {
+        String query = FILM_GRAPH_SELECT +
                 "FROM film f " +
-                "LEFT JOIN mpa m ON f.mpa_id = m.id " +
-                "WHERE f.id = ?";
+                FILM_GRAPH_JOINS +
+                "ORDER BY f.id, fg.genre_id";
+        return jdbc.query(query, extractor);
+    }
 
-        Film film;
-        try {
-            film = jdbc.queryForObject(query, (rs, rowNum) -> {
-                Film result = new Film();
-                result.setId(rs.getLong("id"));
-                result.setName(rs.getString("name"));
-                result.setDescription(rs.getString("description"));
-                result.setReleaseDate(rs.getDate("releaseDate").toLocalDate());
-                result.setDuration(rs.getInt("duration"));
-
-                // Обработка MPA
-                Long mpaId = rs.getLong("mpa_id");
-                if (!rs.wasNull()) {
-                    Mpa mpa = new Mpa();
-                    mpa.setId(mpaId);
-                    mpa.setName(rs.getString("mpa_name"));
-                    result.setMpa(mpa);
-                }
+    @Override
+    public Collection<Film> findPage(long after, int limit) {
+        String query = FILM_GRAPH_SELECT +
+                "FROM (SELECT * FROM film WHERE id > ? ORDER BY id LIMIT ?) f " +
+                FILM_GRAPH_JOINS +
+                "ORDER BY f.id, fg.genre_id";
+        return jdbc.query(query, extractor, after, limit);
+    }
 
-                return result;
-            }, id);
+    @Override
+    public void exportAll(Consumer<Film> action) {
+        String query = FILM_GRAPH_SELECT +
+                "FROM film f " +
+                FILM_GRAPH_JOINS +
+                "ORDER BY f.id";
+        FilmGraphCallbackHandler handler = new FilmGraphCallbackHandler(extractor, action);
+        jdbc.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(query,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            return ps;
+        }, handler);
+        handler.finish();
+    }
 
-            // Загрузка жанров
-            Set<Genre> genres = getGenresByFilmId(id);
-            film.setGenres(genres);
+    @Override
+    public Film findById(Long id) {
+        return cache.get(id, this::loadById);
+    }
 
-            return film;
-        } catch (EmptyResultDataAccessException ignored) {
+    private Film loadById(Long id) {
+        String query = FILM_GRAPH_SELECT +
+                "FROM film f " +
+                FILM_GRAPH_JOINS +
+                "WHERE f.id = ? " +
+                "ORDER BY fg.genre_id";
+        List<Film> films = jdbc.query(query, extractor, id);
+        if (films == null || films.isEmpty()) {
             throw new NotFoundException("Фильм с id = " + id + " не найден");
         }
+        return films.getFirst();
     }
 
     @Override
+    @Transactional
     public Film create(Film film) {
-        log.info("Валидация входящего запроса");
-        validateFilm(film);
-        String query = "INSERT INTO film(name, description, releaseDate, duration, mpa_id)" +
-                "VALUES (?, ?, ?, ?, ?)";
-        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        return writeGate.write(() -> {
+            log.info("Валидация входящего запроса");
+            validateFilm(film);
+            GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+
+            try {
+                jdbc.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(INSERT_FILM, new String[]{"id"});
+                    setFilmParameters(ps, film);
+                    return ps;
+                }, keyHolder);
+            } catch (DataIntegrityViolationException e) {
+                throw new NotFoundException("Указанный MPA рейтинг не найден");
+            }
 
-        try {
-            jdbc.update(connection -> {
-                PreparedStatement ps = connection.prepareStatement(query, new String[]{"id"});
-                ps.setString(1, film.getName());
-                ps.setString(2, film.getDescription());
-                ps.setDate(3, Date.valueOf(film.getReleaseDate()));
-                ps.setInt(4, film.getDuration());
-                if (film.getMpa() != null && film.getMpa().getId() != null) {
-                    ps.setInt(5, film.getMpa().getId().intValue());
-                } else {
-                    ps.setNull(5, Types.INTEGER);
-                }
-                return ps;
-            }, keyHolder);
-        } catch (DataIntegrityViolationException e) {
-            throw new NotFoundException("Указанный MPA рейтинг не найден");
+            Long id = keyHolder.getKey() != null ? keyHolder.getKey().longValue() : null;
+            if (id == null) {
+                throw new InternalServerException("Не удалось сохранить данные");
+            }
+            log.info("Добавлен фильм с идентификатором: {}", id);
+            film.setId(id);
+
+            if (film.getGenres() != null && !film.getGenres().isEmpty()) {
+                addGenresToFilm(id, film.getGenres());
+            }
+            events.publishEvent(new FilmSavedEvent(film, true));
+
+            return film;
+        });
+    }
+
+    /**
+     * Все фильмы сначала проверяются теми же правилами, что и в {@link #create(Film)}, и при
+     * любой ошибке ничего не сохраняется, а в ответе перечислены номера и причины. Затем фильмы
+     * вставляются пачками по {@value #BATCH_CHUNK_SIZE}: каждая пачка - одна транзакция,
+     * один JDBC batch для film с получением всех ключей и один batch для film_genres.
+     */
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            try {
+                validateFilm(film);
+                validateReferences(film, registry);
+            } catch (ValidationException | NotFoundException e) {
+                errors.add("Фильм #" + i + ": " + e.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            log.warn("Пакет фильмов не прошёл проверку: {}", errors);
+            throw new ValidationException(String.join("; ", errors));
         }
 
-        Long id = keyHolder.getKey() != null ? keyHolder.getKey().longValue() : null;
-        if (id == null) {
+        writeGate.write(() -> {
+            for (int from = 0; from < films.size(); from += BATCH_CHUNK_SIZE) {
+                List<Film> chunk = films.subList(from, Math.min(from + BATCH_CHUNK_SIZE, films.size()));
+                transactionTemplate.executeWithoutResult(status -> insertChunk(chunk));
+            }
+        });
+        log.info("Пакетно добавлено фильмов: {}", films.size());
+        return films;
+    }
+
+    private void insertChunk(List<Film> chunk) {
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(connection -> connection.prepareStatement(INSERT_FILM, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setFilmParameters(ps, chunk.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return chunk.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != chunk.size()) {
             throw new InternalServerException("Не удалось сохранить данные");
         }
-        log.info("Добавлен фильм с идентификатором: {}", id);
-        film.setId(id);
-
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            addGenresToFilm(id, film.getGenres());
+        List<Object[]> genreLinks = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Film film = chunk.get(i);
+            film.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            if (film.getGenres() != null) {
+                film.getGenres().forEach(genre -> genreLinks.add(new Object[]{film.getId(), genre.getId()}));
+            }
+        }
+        if (!genreLinks.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO film_genres(film_id, genre_id) VALUES (?, ?)", genreLinks);
         }
+        chunk.forEach(film -> events.publishEvent(new FilmSavedEvent(film, true)));
+    }
 
-        return film;
+    private static void setFilmParameters(PreparedStatement ps, Film film) throws SQLException {
+        ps.setString(1, film.getName());
+        ps.setString(2, film.getDescription());
+        ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+        ps.setInt(4, film.getDuration());
+        if (film.getMpa() != null && film.getMpa().getId() != null) {
+            ps.setInt(5, film.getMpa().getId().intValue());
+        } else {
+            ps.setNull(5, Types.INTEGER);
+        }
     }
 
     private void addGenresToFilm(Long film_id, Set<Genre> genres) {
@@ -163,12 +330,16 @@ public class FilmDbStorage implements FilmStorage {
         }
     }
 
+    /**
+     * Существование фильма проверяется по числу обновлённых строк, без предварительного чтения.
+     */
     @Override
+    @Transactional
     public Film update(Film newFilm) {
-        if (newFilm.getId() == null) {
-            throw new ValidationException("Id должен быть указан");
-        }
-        if (findById(newFilm.getId()) != null) {
+        return writeGate.write(() -> {
+            if (newFilm.getId() == null) {
+                throw new ValidationException("Id должен быть указан");
+            }
             log.info("Валидация входящего запроса");
             validateFilm(newFilm);
             log.info("Обновление параметров фильма");
@@ -183,7 +354,7 @@ public class FilmDbStorage implements FilmStorage {
                     newFilm.getId()
             );
             if (rowsUpdated == 0) {
-                throw new InternalServerException("Не удалось обновить данные");
+                throw new NotFoundException("Фильм с id = " + newFilm.getId() + " не найден");
             }
             log.info("Фильма успешно обновлен");
 
@@ -192,85 +363,138 @@ public class FilmDbStorage implements FilmStorage {
                 jdbc.update(deleteQuery, newFilm.getId());
                 addGenresToFilm(newFilm.getId(), newFilm.getGenres());
             }
+            events.publishEvent(new FilmSavedEvent(newFilm, false));
 
             return newFilm;
-        }
-        throw new NotFoundException("Фильм с id = " + newFilm.getId() + " не найден");
-    }
-
-    private void validateFilm(Film film) {
-        if (film.getDescription().length() > 200) {
-            log.warn("Описание фильма: {}", film.getDescription());
-            throw new ValidationException("Максимальная длина описания - 200 символов");
-        }
-        if (film.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28))) {
-            log.warn("Дата релиза: {}", film.getReleaseDate());
-            throw new ValidationException("Дата релиза должна быть не раньше 28 декабря 1895 года");
-        }
+        });
     }
 
+    /**
+     * Лайк ставится одним запросом {@link #LIKE_QUERY} вместе со счётчиком film.like_count.
+     * Отсутствие пользователя видно по нарушению внешнего ключа, и только тогда выясняется, чего
+     * именно нет; отсутствующий фильм запрос просто не находит, и 404 даёт загрузка фильма для ответа.
+     * Повторный лайк ничего не меняет. Фильм для ответа берётся из кэша.
+     * В режиме отложенной записи лайк только проверяется и ставится в {@link LikeWriteBehindQueue}.
+     * Запись и событие о ней идут под {@link PairLocks}: индексы видят лайки пары в порядке записи.
+     */
     @Override
     public Film addLike(Long filmId, Long userId) {
-        Film film = findById(filmId);
-        String query = "INSERT INTO film_likes(film_id, user_id)" +
-                "VALUES (?, ?)";
-        jdbc.update(query, filmId, userId);
-        return film;
+        return writeGate.write(() -> {
+            if (likeQueue.isEnabled()) {
+                Film film = findById(filmId);
+                userStorage.findById(userId);
+                likeQueue.like(filmId, userId);
+                return film;
+            }
+            likeLocks.locked(filmId, userId, () -> {
+                int inserted;
+                try {
+                    inserted = jdbc.update(LIKE_QUERY, filmId, filmId, userId, filmId, userId);
+                } catch (DuplicateKeyException ignored) {
+                    // Такой же лайк успел вставить параллельный запрос
+                    inserted = 0;
+                } catch (DataIntegrityViolationException e) {
+                    findById(filmId);
+                    userStorage.findById(userId);
+                    throw e;
+                }
+                if (inserted > 0) {
+                    events.publishEvent(new FilmLikeEvent(filmId, userId, true));
+                }
+            });
+            return findById(filmId);
+        });
     }
 
     @Override
     public Film deleteLike(Long filmId, Long userId) {
-        Film film = findById(filmId);
-        String query = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
-        jdbc.update(query, filmId, userId);
-        return film;
+        return writeGate.write(() -> {
+            if (likeQueue.isEnabled()) {
+                Film film = findById(filmId);
+                userStorage.findById(userId);
+                likeQueue.unlike(filmId, userId);
+                return film;
+            }
+            likeLocks.locked(filmId, userId, () -> {
+                if (jdbc.update(UNLIKE_QUERY, filmId, filmId, userId) > 0) {
+                    events.publishEvent(new FilmLikeEvent(filmId, userId, false));
+                }
+            });
+            // если ничего не удалено, фильма может не быть - это проверит загрузка для ответа
+            return findById(filmId);
+        });
     }
 
+    /**
+     * Без рейтинга в памяти фильтры применяются до сортировки по like_count: жанр через индекс
+     * film_genres(genre_id, film_id), год - диапазоном по индексу film(releaseDate).
+     */
     @Override
-    public Collection<Film> popularFilms(int count) {
-        String query = "SELECT f.*, m.id AS mpa_id, m.name AS mpa_name " +
-                "FROM film f " +
-                "LEFT JOIN mpa m ON f.mpa_id = m.id " +
-                "LEFT JOIN film_likes fl ON f.id = fl.film_id " +
-                "GROUP BY f.id, m.id " +
-                "ORDER BY COALESCE(COUNT(fl.user_id), 0) DESC " +
-                "LIMIT ?";
-
-        List<Film> films = jdbc.query(query, (rs, rowNum) -> {
-            Film film = new Film();
-            film.setId(rs.getLong("id"));
-            film.setName(rs.getString("name"));
-            film.setDescription(rs.getString("description"));
-            film.setReleaseDate(rs.getDate("releaseDate").toLocalDate());
-            film.setDuration(rs.getInt("duration"));
-
-            // Обработка MPA
-            Long mpaId = rs.getLong("mpa_id");
-            if (!rs.wasNull()) {
-                Mpa mpa = new Mpa();
-                mpa.setId(mpaId);
-                mpa.setName(rs.getString("mpa_name"));
-                film.setMpa(mpa);
-            }
+    public Collection<Film> popularFilms(int count, Long genreId, Integer year) {
+        if (leaderboardEnabled) {
+            return findByIds(leaderboard.top(count, genreId, year));
+        }
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        if (genreId != null) {
+            conditions.add("id IN (SELECT film_id FROM film_genres WHERE genre_id = ?)");
+            params.add(genreId);
+        }
+        if (year != null) {
+            conditions.add("releaseDate >= ? AND releaseDate < ?");
+            params.add(LocalDate.of(year, 1, 1));
+            params.add(LocalDate.of(year + 1, 1, 1));
+        }
+        params.add(count);
+        String where = conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions) + " ";
+        String query = FILM_GRAPH_SELECT +
+                "FROM (SELECT id, like_count FROM film " + where + "ORDER BY like_count DESC, id LIMIT ?) top " +
+                "JOIN film f ON f.id = top.id " +
+                FILM_GRAPH_JOINS +
+                "ORDER BY top.like_count DESC, f.id, fg.genre_id";
+        return jdbc.query(query, extractor, params.toArray());
+    }
 
-            return film;
-        }, count);
+    @Override
+    public Collection<Film> search(String query, Set<SearchField> fields, SearchRanking ranking,
+                                   int limit) {
+        return findByIds(searchIndex.search(query, fields, ranking, limit));
+    }
 
-        // Загрузка жанров отдельным запросом
-        for (Film film : films) {
-            Set<Genre> genres = getGenresByFilmId(film.getId());
-            film.setGenres(genres);
-        }
+    @Override
+    public Collection<Film> autocomplete(String prefix, int limit) {
+        return findByIds(autocomplete.complete(prefix, limit));
+    }
 
-        return films;
+    @Override
+    public Collection<Film> findRecommendations(Long userId, int limit) {
+        userStorage.findById(userId);
+        return findByIds(Arrays.stream(recommendations.recommend(userId, limit))
+                .mapToObj(Long::valueOf)
+                .toList());
     }
 
-    private Set<Genre> getGenresByFilmId(Long filmId) {
-        String query = "SELECT g.* " +
-                "FROM film_genres fg " +
-                "JOIN genres g ON fg.genre_id = g.id " +
-                "WHERE fg.film_id = ?";
+    /**
+     * Возвращает фильмы в порядке переданных id. Отсутствующие в кэше загружаются одним запросом.
+     */
+    private List<Film> findByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return cache.getAll(ids, this::loadByIds);
+    }
 
-        return new HashSet<>(jdbc.query(query, new GenreRowMapper(), filmId));
+    private Map<Long, Film> loadByIds(Set<? extends Long> ids) {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        String query = FILM_GRAPH_SELECT +
+                "FROM film f " +
+                FILM_GRAPH_JOINS +
+                "WHERE f.id IN (" + placeholders + ") " +
+                "ORDER BY f.id, fg.genre_id";
+        Map<Long, Film> films = new HashMap<>();
+        for (Film film : jdbc.query(query, extractor, ids.toArray())) {
+            films.put(film.getId(), film);
+        }
+        return films;
     }
 }
@@ -1,48 +1,36 @@
 package ru.yandex.practicum.filmorate.dao;
 
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.JdbcTemplate;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Component;
-import ru.yandex.practicum.filmorate.dao.mappers.GenreRowMapper;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
 
 import java.util.Collection;
 
+/**
+ * Жанры отдаются из {@link ReferenceDataRegistry} без обращения к базе.
+ */
+@Timed(value = "filmorate.storage", histogram = true)
 @Component
 public class GenreDbStorage implements GenreStorage {
-    private final JdbcTemplate jdbc;
-    private final GenreRowMapper mapper;
+    private final ReferenceDataRegistry registry;
 
-    public GenreDbStorage(JdbcTemplate jdbc, GenreRowMapper mapper) {
-        this.jdbc = jdbc;
-        this.mapper = mapper;
+    public GenreDbStorage(ReferenceDataRegistry registry) {
+        this.registry = registry;
     }
 
     @Override
     public Collection<Genre> findAll() {
-        String query = "SELECT * FROM genres";
-        return jdbc.query(query, mapper);
+        return registry.genres();
     }
 
     @Override
     public Genre findById(Long id) {
-        String query = "SELECT * FROM genres WHERE id = ?";
-        Genre genre;
-        try {
-            genre = jdbc.queryForObject(query, mapper, id);
-            return genre;
-        } catch (EmptyResultDataAccessException ignored) {
+        Genre genre = registry.genre(id);
+        if (genre == null) {
             throw new NotFoundException("Жанр с id = " + id + " не найден");
         }
+        return genre;
     }
-
-    public Collection<Genre> getGenresByFilmId(Long filmId) {
-        String query = "SELECT g.* " +
-                "FROM FILM_GENRES fg " +
-                "JOIN GENRES g ON g.ID = fg.GENRE_ID " +
-                "WHERE fg.FILM_ID = ?";
-        return jdbc.query(query, mapper, filmId);
-    }
-}
\ No newline at end of file
+}
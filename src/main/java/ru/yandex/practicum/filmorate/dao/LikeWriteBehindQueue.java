@@ -0,0 +1,235 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Отложенная запись лайков (write-behind), включается свойством
+ * {@code filmorate.likes.write-behind.enabled}. Лайк подтверждается сразу после проверки,
+ * попадает в ограниченный буфер и записывается в базу пачкой по таймеру или при накоплении
+ * {@code flush-size} операций.
+ * <p>
+ * Буфер хранит последнюю операцию для каждой пары (фильм, пользователь), так что лайк и снятие
+ * лайка до сброса схлопываются в одну запись. Место под новую пару резервируется в счётчике
+ * {@code reserved} до вставки, поэтому параллельные потоки не переполняют буфер: поток, которому
+ * места не хватило, сам сбрасывает буфер - это и есть обратное давление. Только неудачный сброс
+ * возвращает свои операции сверх границы, иначе они бы потерялись. При остановке приложения буфер
+ * сбрасывается синхронно. Сбросы идут по одному, и события пачки публикуются до начала следующей,
+ * поэтому индексы видят изменения одной пары в порядке записи.
+ * <p>
+ * Чтение своей записи не гарантируется: пока лайк в буфере, его нет ни в film_likes, ни в
+ * like_count, ни в рейтинге и рекомендациях. Ответ на лайк и следующие GET показывают прежнее
+ * число лайков до ближайшего сброса - обычно не дольше {@code flush-interval-ms}.
+ */
+@Slf4j
+@Component
+public class LikeWriteBehindQueue {
+    private final JdbcTemplate jdbc;
+    private final ApplicationEventPublisher events;
+    private final StorageWriteGate writeGate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int capacity;
+    private final int flushSize;
+    private final long flushIntervalMs;
+    private final boolean virtualThreads;
+
+    private final Map<LikeKey, Boolean> pending = new ConcurrentHashMap<>();
+    // пары в буфере плюс места, занятые потоками, которые ещё не вставили свою пару
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private ScheduledExecutorService executor;
+
+    public LikeWriteBehindQueue(JdbcTemplate jdbc, ApplicationEventPublisher events, StorageWriteGate writeGate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                                @Value("${filmorate.likes.write-behind.capacity:100000}") int capacity,
+                                @Value("${filmorate.likes.write-behind.flush-size:1000}") int flushSize,
+                                @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.jdbc = jdbc;
+        this.events = events;
+        this.writeGate = writeGate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.flushSize = flushSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.virtualThreads = virtualThreads;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        ThreadFactory threads = virtualThreads
+                ? Thread.ofVirtual().name("like-write-behind").factory()
+                : Thread.ofPlatform().name("like-write-behind").daemon().factory();
+        executor = Executors.newSingleThreadScheduledExecutor(threads);
+        executor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Включена отложенная запись лайков: буфер {}, пачка {}, интервал {} мс",
+                capacity, flushSize, flushIntervalMs);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.info("Буфер лайков сброшен при остановке");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void like(Long filmId, Long userId) {
+        enqueue(new LikeKey(filmId, userId), true);
+    }
+
+    public void unlike(Long filmId, Long userId) {
+        enqueue(new LikeKey(filmId, userId), false);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    private void enqueue(LikeKey key, boolean liked) {
+        // пара уже в буфере: замена места не занимает
+        if (pending.replace(key, liked) == null) {
+            while (!reserve()) {
+                flush();
+            }
+            if (pending.put(key, liked) != null) {
+                // ту же пару успел вставить параллельный поток, второе место не нужно
+                reserved.decrementAndGet();
+            }
+        }
+        if (reserved.get() >= flushSize && executor != null && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flushQuietly);
+        }
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = reserved.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!reserved.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void flushQuietly() {
+        flushScheduled.set(false);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать пачку лайков: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Синхронно записывает в базу всё, что накопилось в буфере. Если запись не удалась,
+     * операции возвращаются в буфер, если их не успела заменить более новая. Сброс - такая же
+     * запись, как остальные, и проходит через {@link StorageWriteGate}.
+     */
+    public void flush() {
+        writeGate.write(this::flushPending);
+    }
+
+    private void flushPending() {
+        flushLock.lock();
+        try {
+            Map<LikeKey, Boolean> batch = new HashMap<>();
+            for (Map.Entry<LikeKey, Boolean> entry : pending.entrySet()) {
+                if (pending.remove(entry.getKey(), entry.getValue())) {
+                    reserved.decrementAndGet();
+                    batch.put(entry.getKey(), entry.getValue());
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(batch));
+            } catch (RuntimeException e) {
+                batch.forEach((key, liked) -> {
+                    if (pending.putIfAbsent(key, liked) == null) {
+                        reserved.incrementAndGet();
+                    }
+                });
+                throw e;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void write(Map<LikeKey, Boolean> batch) {
+        List<LikeKey> likes = new ArrayList<>();
+        List<LikeKey> unlikes = new ArrayList<>();
+        batch.forEach((key, liked) -> (liked ? likes : unlikes).add(key));
+
+        // like_count обновляется теми же запросами, что и строки film_likes
+        int[] inserted = jdbc.batchUpdate(FilmDbStorage.LIKE_QUERY,
+                likes.stream()
+                        .map(key -> new Object[]{key.filmId(), key.filmId(), key.userId(), key.filmId(), key.userId()})
+                        .toList());
+        int[] deleted = jdbc.batchUpdate(FilmDbStorage.UNLIKE_QUERY,
+                unlikes.stream()
+                        .map(key -> new Object[]{key.filmId(), key.filmId(), key.userId()})
+                        .toList());
+
+        applied(likes, inserted).forEach(key ->
+                events.publishEvent(new FilmLikeEvent(key.filmId(), key.userId(), true)));
+        applied(unlikes, deleted).forEach(key ->
+                events.publishEvent(new FilmLikeEvent(key.filmId(), key.userId(), false)));
+        log.debug("Записана пачка лайков: {} лайков, {} снятий", likes.size(), unlikes.size());
+    }
+
+    private static List<LikeKey> applied(List<LikeKey> keys, int[] counts) {
+        List<LikeKey> result = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (counts[i] > 0) {
+                result.add(keys.get(i));
+            }
+        }
+        return result;
+    }
+
+    private record LikeKey(Long filmId, Long userId) {
+    }
+}
@@ -1,40 +1,36 @@
 package ru.yandex.practicum.filmorate.dao;
 
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.JdbcTemplate;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Component;
-import ru.yandex.practicum.filmorate.dao.mappers.MpaRowMapper;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.MpaStorage;
 
 import java.util.Collection;
 
+/**
+ * Рейтинги MPA отдаются из {@link ReferenceDataRegistry} без обращения к базе.
+ */
+@Timed(value = "filmorate.storage", histogram = true)
 @Component
 public class MpaDbStorage implements MpaStorage {
-    private final JdbcTemplate jdbc;
-    private final MpaRowMapper mapper;
+    private final ReferenceDataRegistry registry;
 
-    public MpaDbStorage(JdbcTemplate jdbc, MpaRowMapper mapper) {
-        this.jdbc = jdbc;
-        this.mapper = mapper;
+    public MpaDbStorage(ReferenceDataRegistry registry) {
+        this.registry = registry;
     }
 
     @Override
     public Collection<Mpa> findAll() {
-        String query = "SELECT * FROM mpa";
-        return jdbc.query(query, mapper);
+        return registry.mpa();
     }
 
     @Override
     public Mpa findById(Long id) {
-        String query = "SELECT * FROM mpa WHERE id = ?";
-        Mpa mpa;
-        try {
-            mpa = jdbc.queryForObject(query, mapper, id);
-            return mpa;
-        } catch (EmptyResultDataAccessException ignored) {
+        Mpa mpa = registry.mpa(id);
+        if (mpa == null) {
             throw new NotFoundException("Рейтинг с id = " + id + " не найден");
         }
+        return mpa;
     }
-}
\ No newline at end of file
+}
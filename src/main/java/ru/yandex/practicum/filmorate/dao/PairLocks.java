@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Блокировки по паре id (фильм и пользователь, пользователь и друг), разложенные по
+ * фиксированному числу полос. Запись пары в базу и публикация события о ней идут под блокировкой
+ * пары, поэтому индексы получают изменения одной пары в том же порядке, в каком они
+ * зафиксированы: снятие лайка не может опередить сам лайк. Записи разных пар одной полосы
+ * просто ждут друг друга.
+ */
+final class PairLocks {
+    private static final int STRIPES = 256;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    PairLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    void locked(long first, long second, Runnable action) {
+        int hash = Long.hashCode(first * 31 + second);
+        ReentrantLock lock = locks[(hash ^ hash >>> 16) & (STRIPES - 1)];
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
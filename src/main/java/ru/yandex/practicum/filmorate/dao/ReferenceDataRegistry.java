@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.dao.mappers.MpaRowMapper;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Справочники жанров и рейтингов MPA, загруженные в память при старте.
+ * Записи хранятся в массивах, индексированных по id. Наружу отдаются копии: {@link Genre} и
+ * {@link Mpa} - изменяемые модели, и правка общего экземпляра испортила бы справочник для всех.
+ * После изменения справочников в базе (например, в data.sql) нужно вызвать {@link #reload()}.
+ */
+@Slf4j
+@Component
+public class ReferenceDataRegistry {
+    private final JdbcTemplate jdbc;
+    private final GenreRowMapper genreMapper;
+    private final MpaRowMapper mpaMapper;
+    // не synchronized: монитор на время запросов к базе закрепил бы виртуальный поток за носителем
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private volatile Snapshot snapshot = new Snapshot(List.of(), new Genre[0], List.of(), new Mpa[0]);
+
+    public ReferenceDataRegistry(JdbcTemplate jdbc, GenreRowMapper genreMapper, MpaRowMapper mpaMapper) {
+        this.jdbc = jdbc;
+        this.genreMapper = genreMapper;
+        this.mpaMapper = mpaMapper;
+    }
+
+    @PostConstruct
+    public void reload() {
+        reloadLock.lock();
+        try {
+            List<Genre> genres = List.copyOf(jdbc.query("SELECT * FROM genres ORDER BY id", genreMapper));
+            List<Mpa> mpa = List.copyOf(jdbc.query("SELECT * FROM mpa ORDER BY id", mpaMapper));
+
+            Genre[] genresById = new Genre[maxId(genres.stream().map(Genre::getId).toList()) + 1];
+            genres.forEach(genre -> genresById[genre.getId().intValue()] = genre);
+            Mpa[] mpaById = new Mpa[maxId(mpa.stream().map(Mpa::getId).toList()) + 1];
+            mpa.forEach(rating -> mpaById[rating.getId().intValue()] = rating);
+
+            snapshot = new Snapshot(genres, genresById, mpa, mpaById);
+            log.info("Загружены справочники: {} жанров, {} рейтингов MPA", genres.size(), mpa.size());
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    public List<Genre> genres() {
+        return snapshot.genres().stream().map(Genre::copy).toList();
+    }
+
+    /**
+     * @return жанр или {@code null}, если жанра с таким id нет
+     */
+    public Genre genre(long id) {
+        Genre[] byId = snapshot.genresById();
+        return id > 0 && id < byId.length && byId[(int) id] != null ? byId[(int) id].copy() : null;
+    }
+
+    public List<Mpa> mpa() {
+        return snapshot.mpa().stream().map(Mpa::copy).toList();
+    }
+
+    /**
+     * @return рейтинг или {@code null}, если рейтинга с таким id нет
+     */
+    public Mpa mpa(long id) {
+        Mpa[] byId = snapshot.mpaById();
+        return id > 0 && id < byId.length && byId[(int) id] != null ? byId[(int) id].copy() : null;
+    }
+
+    private static int maxId(List<Long> ids) {
+        return ids.stream().mapToInt(Long::intValue).max().orElse(0);
+    }
+
+    private record Snapshot(List<Genre> genres, Genre[] genresById, List<Mpa> mpa, Mpa[] mpaById) {
+    }
+}
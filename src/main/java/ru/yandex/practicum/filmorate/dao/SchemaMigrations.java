@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Применяет версионные миграции из {@code db/migration/V<номер>__<описание>.sql} после schema.sql
+ * и до любого другого обращения к базе (см. {@link SchemaMigrationsDetector}). Применённые версии
+ * записываются в schema_version, поэтому каждая миграция выполняется один раз.
+ * <p>
+ * DDL в H2 фиксируется сразу, и упавшая на середине миграция не откатывается. Поэтому операторы
+ * миграций пишутся идемпотентными ({@code IF NOT EXISTS}): повторный запуск доводит схему до конца.
+ */
+@Slf4j
+@Component
+public class SchemaMigrations {
+    private static final String LOCATION = "classpath*:db/migration/V*__*.sql";
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+    private final JdbcTemplate jdbc;
+
+    /**
+     * Общий {@link JdbcTemplate} сам ждёт миграций, поэтому здесь свой поверх того же DataSource.
+     */
+    public SchemaMigrations(DataSource dataSource) {
+        this.jdbc = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Применяет ещё не применённые миграции по возрастанию версии.
+     *
+     * @return количество применённых миграций
+     */
+    @PostConstruct
+    public int migrate() {
+        Set<Integer> applied = new HashSet<>(jdbc.queryForList("SELECT version FROM schema_version", Integer.class));
+        int count = 0;
+        for (Migration migration : migrations()) {
+            if (applied.contains(migration.version())) {
+                continue;
+            }
+            log.info("Применяется миграция схемы V{}: {}", migration.version(), migration.description());
+            jdbc.execute((ConnectionCallback<Void>) connection -> {
+                ScriptUtils.executeSqlScript(connection,
+                        new EncodedResource(migration.script(), StandardCharsets.UTF_8));
+                return null;
+            });
+            jdbc.update("INSERT INTO schema_version(version, description) VALUES (?, ?)",
+                    migration.version(), migration.description());
+            count++;
+        }
+        log.info("Схема базы в актуальной версии, применено миграций: {}", count);
+        return count;
+    }
+
+    private List<Migration> migrations() {
+        Resource[] resources;
+        try {
+            resources = new PathMatchingResourcePatternResolver(getClass().getClassLoader()).getResources(LOCATION);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать миграции схемы", e);
+        }
+        List<Migration> migrations = new ArrayList<>();
+        for (Resource resource : resources) {
+            Matcher matcher = FILE_NAME.matcher(String.valueOf(resource.getFilename()));
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Некорректное имя миграции: " + resource.getFilename());
+            }
+            migrations.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '),
+                    resource));
+        }
+        migrations.sort(Comparator.comparingInt(Migration::version));
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).version() == migrations.get(i - 1).version()) {
+                throw new IllegalStateException("Две миграции с версией " + migrations.get(i).version());
+            }
+        }
+        return migrations;
+    }
+
+    private record Migration(int version, String description, Resource script) {
+    }
+}
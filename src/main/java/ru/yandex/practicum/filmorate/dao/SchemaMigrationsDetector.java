@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.springframework.boot.sql.init.dependency.AbstractBeansOfTypeDatabaseInitializerDetector;
+import org.springframework.core.Ordered;
+
+import java.util.Set;
+
+/**
+ * Объявляет {@link SchemaMigrations} инициализатором базы: Spring Boot запускает его после schema.sql
+ * и data.sql, а JdbcTemplate и всё, что от него зависит, - только после миграций.
+ * Регистрируется в META-INF/spring.factories.
+ */
+public class SchemaMigrationsDetector extends AbstractBeansOfTypeDatabaseInitializerDetector {
+
+    @Override
+    protected Set<Class<?>> getDatabaseInitializerBeanTypes() {
+        return Set.of(SchemaMigrations.class);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+}
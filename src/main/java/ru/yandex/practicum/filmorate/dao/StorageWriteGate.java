@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Шлюз записей в базу. Обычные записи - фильмы, пользователи, лайки, дружба и сброс буфера лайков -
+ * проходят его совместно и друг другу не мешают. Загрузка снимка проходит монопольно: дожидается
+ * уже начатых записей и не пускает новые, пока не загрузит данные и не перестроит индексы.
+ * <p>
+ * Внутри транзакции совместный проход держится до её завершения, а не до выхода из метода: иначе
+ * незафиксированная запись могла бы попасть в базу уже поверх загруженного снимка.
+ */
+@Component
+public class StorageWriteGate {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+
+    public <T> T write(Supplier<T> action) {
+        Lock shared = lock.readLock();
+        shared.lock();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    shared.unlock();
+                }
+            });
+            return action.get();
+        }
+        try {
+            return action.get();
+        } finally {
+            shared.unlock();
+        }
+    }
+
+    public void write(Runnable action) {
+        write(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Выполняет действие, когда других записей нет. Записи, вызванные из самого действия, проходят.
+     */
+    public <T> T exclusive(Supplier<T> action) {
+        Lock exclusive = lock.writeLock();
+        exclusive.lock();
+        try {
+            return action.get();
+        } finally {
+            exclusive.unlock();
+        }
+    }
+}
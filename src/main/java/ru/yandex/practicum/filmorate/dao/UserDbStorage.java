@@ -1,36 +1,87 @@
 package ru.yandex.practicum.filmorate.dao;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.context.annotation.Primary;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.cache.UserCache;
 import ru.yandex.practicum.filmorate.dao.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.event.FriendshipEvent;
+import ru.yandex.practicum.filmorate.event.UserSavedEvent;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.FriendSuggestions;
+import ru.yandex.practicum.filmorate.index.FriendshipGraph;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
-import java.time.LocalDate;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import static ru.yandex.practicum.filmorate.storage.StorageValidator.validateUser;
+
+@Timed(value = "filmorate.storage", histogram = true)
 @Slf4j
 @Component
-@Qualifier("userDbStorage")
-@Primary
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
 public class UserDbStorage implements UserStorage {
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final int BATCH_CHUNK_SIZE = 500;
+    private static final String INSERT_USER = "INSERT INTO \"user\"(email, login, name, birthday)" +
+            "VALUES (?, ?, ?, ?)";
+
     private final JdbcTemplate jdbc;
     private final UserRowMapper mapper;
+    private final UserCache cache;
+    private final FriendshipGraph friendshipGraph;
+    private final FriendSuggestions friendSuggestions;
+    private final StorageWriteGate writeGate;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate transactionTemplate;
+    private final PairLocks friendshipLocks = new PairLocks();
 
-    public UserDbStorage(JdbcTemplate jdbc, UserRowMapper mapper) {
+    public UserDbStorage(JdbcTemplate jdbc, UserRowMapper mapper, UserCache cache, FriendshipGraph friendshipGraph,
+                         FriendSuggestions friendSuggestions, StorageWriteGate writeGate,
+                         ApplicationEventPublisher events, PlatformTransactionManager transactionManager) {
         this.jdbc = jdbc;
         this.mapper = mapper;
+        this.cache = cache;
+        this.friendshipGraph = friendshipGraph;
+        this.friendSuggestions = friendSuggestions;
+        this.writeGate = writeGate;
+        this.events = events;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    void loadFriendshipGraph() {
+        List<long[]> edges = new ArrayList<>();
+        jdbc.query("SELECT user_id, friend_id FROM user_friendship", rs -> {
+            edges.add(new long[]{rs.getLong("user_id"), rs.getLong("friend_id")});
+        });
+        friendshipGraph.load(edges);
     }
 
     @Override
@@ -39,8 +90,31 @@ public class UserDbStorage implements UserStorage {
         return jdbc.query(query, mapper);
     }
 
+    @Override
+    public Collection<User> findPage(long after, int limit) {
+        String query = "SELECT * FROM \"user\" WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbc.query(query, mapper, after, limit);
+    }
+
+    @Override
+    public void exportAll(Consumer<User> action) {
+        String query = "SELECT * FROM \"user\" ORDER BY id";
+        jdbc.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(query,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            return ps;
+        }, rs -> {
+            action.accept(mapper.mapRow(rs, rs.getRow()));
+        });
+    }
+
     @Override
     public User findById(Long id) {
+        return cache.get(id, this::loadById);
+    }
+
+    private User loadById(Long id) {
         String query = "SELECT * FROM \"user\" WHERE id = ?";
         User user;
         try {
@@ -54,44 +128,112 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public User create(User user) {
-        log.info("Валидация входящего запроса");
-        validateUser(user);
-        if (user.getName() == null || user.getName().isBlank()) {
-            log.info("Имя не заполнено, поэтому присваиваем ему значение логина: {}", user.getLogin());
-            user.setName(user.getLogin());
+        return writeGate.write(() -> {
+            log.info("Валидация входящего запроса");
+            validateUser(user);
+            if (user.getName() == null || user.getName().isBlank()) {
+                log.info("Имя не заполнено, поэтому присваиваем ему значение логина: {}", user.getLogin());
+                user.setName(user.getLogin());
+            }
+            GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbc.update(connection -> {
+                PreparedStatement ps = connection
+                        .prepareStatement(INSERT_USER, new String[]{"id"});
+                setUserParameters(ps, user);
+                return ps;
+            }, keyHolder);
+
+            Long id = keyHolder.getKey() != null ? keyHolder.getKey().longValue() : null;
+            if (id != null) {
+                log.info("Создан пользователь с идентификатором: {}", id);
+                user.setId(id);
+                events.publishEvent(new UserSavedEvent(user, true));
+                return user;
+            } else {
+                throw new InternalServerException("Не удалось сохранить данные");
+            }
+        });
+    }
+
+    /**
+     * Все пользователи сначала проверяются теми же правилами, что и в {@link #create(User)}, и при
+     * любой ошибке ничего не сохраняется, а в ответе перечислены номера и причины. Затем
+     * пользователи вставляются пачками по {@value #BATCH_CHUNK_SIZE}: каждая пачка - одна транзакция
+     * и один JDBC batch с получением всех ключей.
+     */
+    @Override
+    public List<User> createAll(List<User> users) {
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            try {
+                validateUser(users.get(i));
+            } catch (ValidationException e) {
+                errors.add("Пользователь #" + i + ": " + e.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            log.warn("Пакет пользователей не прошёл проверку: {}", errors);
+            throw new ValidationException(String.join("; ", errors));
         }
-        String query = "INSERT INTO \"user\"(email, login, name, birthday)" +
-                "VALUES (?, ?, ?, ?)";
+        users.stream()
+                .filter(user -> user.getName() == null || user.getName().isBlank())
+                .forEach(user -> user.setName(user.getLogin()));
+
+        writeGate.write(() -> {
+            for (int from = 0; from < users.size(); from += BATCH_CHUNK_SIZE) {
+                List<User> chunk = users.subList(from, Math.min(from + BATCH_CHUNK_SIZE, users.size()));
+                transactionTemplate.executeWithoutResult(status -> insertChunk(chunk));
+            }
+        });
+        log.info("Пакетно создано пользователей: {}", users.size());
+        return users;
+    }
+
+    private void insertChunk(List<User> chunk) {
         GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbc.update(connection -> {
-            PreparedStatement ps = connection
-                    .prepareStatement(query, new String[]{"id"});
-            ps.setString(1, user.getEmail());
-            ps.setString(2, user.getLogin());
-            ps.setString(3, user.getName());
-            ps.setDate(4, Date.valueOf(user.getBirthday()));
-            return ps;
-        }, keyHolder);
+        jdbc.batchUpdate(connection -> connection.prepareStatement(INSERT_USER, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setUserParameters(ps, chunk.get(i));
+                    }
 
-        Long id = keyHolder.getKey() != null ? keyHolder.getKey().longValue() : null;
-        if (id != null) {
-            log.info("Создан пользователь с идентификатором: {}", id);
-            user.setId(id);
-            return user;
-        } else {
+                    @Override
+                    public int getBatchSize() {
+                        return chunk.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != chunk.size()) {
             throw new InternalServerException("Не удалось сохранить данные");
         }
+        for (int i = 0; i < chunk.size(); i++) {
+            User user = chunk.get(i);
+            user.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            events.publishEvent(new UserSavedEvent(user, true));
+        }
+    }
+
+    private static void setUserParameters(PreparedStatement ps, User user) throws SQLException {
+        ps.setString(1, user.getEmail());
+        ps.setString(2, user.getLogin());
+        ps.setString(3, user.getName());
+        ps.setDate(4, Date.valueOf(user.getBirthday()));
     }
 
+    /**
+     * Существование пользователя проверяется по числу обновлённых строк, без предварительного чтения.
+     */
     @Override
     public User update(User newUser) {
-        if (newUser.getId() == null) {
-            throw new ValidationException("Id должен быть указан");
-        }
-        log.info("Валидация входящего запроса");
-        validateUser(newUser);
+        return writeGate.write(() -> {
+            if (newUser.getId() == null) {
+                throw new ValidationException("Id должен быть указан");
+            }
+            log.info("Валидация входящего запроса");
+            validateUser(newUser);
 
-        if (findById(newUser.getId()) != null) {
             String query = "UPDATE \"user\" SET email = ?, login = ?, name = ?, birthday = ? WHERE id = ?";
             int rowsUpdated = jdbc.update(
                     query,
@@ -102,91 +244,109 @@ public class UserDbStorage implements UserStorage {
                     newUser.getId()
             );
             if (rowsUpdated == 0) {
-                throw new InternalServerException("Не удалось обновить данные");
+                throw new NotFoundException("Пользователь с id = " + newUser.getId() + " не найден");
             }
+            events.publishEvent(new UserSavedEvent(newUser, false));
             return newUser;
-        } else {
-            throw new NotFoundException("Пользователь с id = " + newUser.getId() + " не найден");
-        }
+        });
     }
 
+    /**
+     * Дружба вставляется одним запросом: отсутствие пользователя видно по нарушению внешнего ключа,
+     * и только тогда выясняется, кого именно нет. Повторное добавление ничего не меняет.
+     * Запись и событие о ней идут под {@link PairLocks}: индексы видят изменения пары в порядке записи.
+     */
     @Override
     public Collection<User> addFriend(Long userId, Long friendId) {
-        User user = findById(userId);
-        User friend = findById(friendId);
-        if (user == null) {
-            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
-        }
-        if (friend == null) {
-            throw new NotFoundException("Пользователь с id = " + friendId + " не найден");
-        }
-        String query = "INSERT INTO user_friendship (user_id, friend_id, confirmed) VALUES (?,?,?)";
-        jdbc.update(query, userId, friendId, true);
-
-        return List.of(user, friend);
+        return writeGate.write(() -> {
+            friendshipLocks.locked(userId, friendId, () -> {
+                String query = "INSERT INTO user_friendship (user_id, friend_id, confirmed) " +
+                        "SELECT ?, ?, ? WHERE NOT EXISTS " +
+                        "(SELECT 1 FROM user_friendship WHERE user_id = ? AND friend_id = ?)";
+                int inserted;
+                try {
+                    inserted = jdbc.update(query, userId, friendId, true, userId, friendId);
+                } catch (DuplicateKeyException ignored) {
+                    // Такую же дружбу успел вставить параллельный запрос
+                    inserted = 0;
+                } catch (DataIntegrityViolationException e) {
+                    findPair(userId, friendId);
+                    throw e;
+                }
+                if (inserted > 0) {
+                    events.publishEvent(new FriendshipEvent(userId, friendId, true));
+                }
+            });
+            return findPair(userId, friendId);
+        });
     }
 
     @Override
     public Collection<User> deleteFriend(Long userId, Long friendId) {
-        User user = findById(userId);
-        User friend = findById(friendId);
-
-        if (user == null) {
-            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
-        }
-        if (friend == null) {
-            throw new NotFoundException("Пользователь с id = " + friendId + " не найден");
-        }
-
-        String query = "DELETE FROM user_friendship WHERE user_id = ? AND friend_id = ?";
-        jdbc.update(query, userId, friendId);
-
-        return List.of(user, friend);
+        return writeGate.write(() -> {
+            friendshipLocks.locked(userId, friendId, () -> {
+                String query = "DELETE FROM user_friendship WHERE user_id = ? AND friend_id = ?";
+                if (jdbc.update(query, userId, friendId) > 0) {
+                    events.publishEvent(new FriendshipEvent(userId, friendId, false));
+                }
+            });
+            // если ничего не удалено, пользователей может не быть - это проверит загрузка для ответа
+            return findPair(userId, friendId);
+        });
     }
 
+    /**
+     * Id друзей берутся из {@link FriendshipGraph}, из базы (или кэша) загружаются только сами пользователи.
+     */
     @Override
     public Collection<User> findFriends(Long userId) {
-        User user = findById(userId);
-        if (user == null) {
-            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
-        }
-
-        String query = "SELECT * FROM \"user\" u " +
-                "JOIN user_friendship f ON f.friend_id = u.id WHERE f.user_id = ?";
-        return jdbc.query(query, mapper, userId);
+        return findRequiring(new long[]{userId}, friendshipGraph.friends(userId));
     }
 
     @Override
     public Collection<User> findCommonFriends(Long userId, Long otherId) {
-        User user = findById(userId);
-        User other = findById(otherId);
+        return findRequiring(new long[]{userId, otherId}, friendshipGraph.common(userId, otherId));
+    }
 
-        if (user == null) {
-            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
-        }
-        if (other == null) {
-            throw new NotFoundException("Пользователь с id = " + otherId + " не найден");
-        }
+    @Override
+    public Collection<User> findFriendSuggestions(Long userId, int limit) {
+        return findRequiring(new long[]{userId}, friendSuggestions.suggest(userId, limit));
+    }
 
-        String query = "SELECT * FROM user_friendship f1 " +
-                "JOIN user_friendship f2 ON f1.friend_id = f2.friend_id " +
-                "JOIN \"user\" u on f1.friend_id = u.id WHERE f1.user_id = ? AND f2.user_id = ?";
-        return jdbc.query(query, mapper, userId, otherId);
+    private List<User> findPair(Long userId, Long otherId) {
+        return loadRequiring(new long[]{userId, otherId}, new int[0]);
     }
 
-    private void validateUser(User user) {
-        if (!user.getEmail().contains("@")) {
-            log.warn("Email пользователя: {}", user.getEmail());
-            throw new ValidationException("Электронная почта не может быть пустой и должна содержать символ @");
-        }
-        if (user.getLogin().contains(" ")) {
-            log.warn("Логин пользователя: {}", user.getLogin());
-            throw new ValidationException("Логин не может быть пустым и содержать пробелы");
+    private List<User> findRequiring(long[] required, int[] ids) {
+        List<User> users = loadRequiring(required, ids);
+        return users.subList(required.length, users.size());
+    }
+
+    /**
+     * Загружает пользователей {@code required}, а за ними {@code ids} одним обращением к кэшу, то есть
+     * не больше чем одним запросом к базе. Если кого-то из {@code required} нет, бросает NotFoundException.
+     */
+    private List<User> loadRequiring(long[] required, int[] ids) {
+        List<Long> all = new ArrayList<>(required.length + ids.length);
+        Arrays.stream(required).forEach(all::add);
+        Arrays.stream(ids).forEach(id -> all.add((long) id));
+        List<User> users = cache.getAll(all, this::loadByIds);
+        // отсутствующие пропускаются, поэтому первый недостающий обязательный id сдвигает позиции
+        for (int i = 0; i < required.length; i++) {
+            if (i >= users.size() || users.get(i).getId() != required[i]) {
+                throw new NotFoundException("Пользователь с id = " + required[i] + " не найден");
+            }
         }
-        if (user.getBirthday().isAfter(LocalDate.now())) {
-            log.warn("Дата рождения пользователя: {}", user.getBirthday());
-            throw new ValidationException("Дата рождения не может быть в будущем");
+        return users;
+    }
+
+    private Map<Long, User> loadByIds(Set<? extends Long> ids) {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        String query = "SELECT * FROM \"user\" WHERE id IN (" + placeholders + ")";
+        Map<Long, User> users = new HashMap<>();
+        for (User user : jdbc.query(query, mapper, ids.toArray())) {
+            users.put(user.getId(), user);
         }
-        log.info("Валидация прошла успешно");
+        return users;
     }
 }
\ No newline at end of file
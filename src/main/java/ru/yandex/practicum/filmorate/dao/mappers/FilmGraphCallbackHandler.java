@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.dao.mappers;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый вариант {@link FilmGraphExtractor}: отдаёт каждый фильм, как только прочитаны
+ * все его строки, и не держит в памяти больше одного фильма. Запрос должен быть упорядочен
+ * по id фильма, а после обхода нужно вызвать {@link #finish()}, чтобы отдать последний фильм.
+ */
+public class FilmGraphCallbackHandler implements RowCallbackHandler {
+    private final FilmGraphExtractor extractor;
+    private final Consumer<Film> action;
+    private Film current;
+
+    public FilmGraphCallbackHandler(FilmGraphExtractor extractor, Consumer<Film> action) {
+        this.extractor = extractor;
+        this.action = action;
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        long id = rs.getLong("id");
+        if (current == null || current.getId() != id) {
+            finish();
+            current = extractor.mapFilm(rs);
+        }
+        extractor.addGenre(rs, current);
+    }
+
+    public void finish() {
+        if (current != null) {
+            action.accept(current);
+            current = null;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.dao.mappers;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Собирает фильмы вместе с MPA и жанрами из одного запроса с JOIN на film_genres.
+ * Строки одного фильма группируются по его id, порядок фильмов сохраняется таким,
+ * в каком их вернул запрос. Жанры и MPA берутся из {@link ReferenceDataRegistry} по id.
+ */
+@Component
+public class FilmGraphExtractor implements ResultSetExtractor<List<Film>> {
+    private final ReferenceDataRegistry registry;
+
+    public FilmGraphExtractor(ReferenceDataRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public List<Film> extractData(ResultSet rs) throws SQLException {
+        Map<Long, Film> films = new LinkedHashMap<>();
+        while (rs.next()) {
+            Long id = rs.getLong("id");
+            Film film = films.get(id);
+            if (film == null) {
+                film = mapFilm(rs);
+                films.put(id, film);
+            }
+            addGenre(rs, film);
+        }
+        return new ArrayList<>(films.values());
+    }
+
+    void addGenre(ResultSet rs, Film film) throws SQLException {
+        long genreId = rs.getLong("genre_id");
+        if (!rs.wasNull()) {
+            Genre genre = registry.genre(genreId);
+            if (genre == null) {
+                genre = new Genre();
+                genre.setId(genreId);
+            }
+            film.getGenres().add(genre);
+        }
+    }
+
+    Film mapFilm(ResultSet rs) throws SQLException {
+        Film film = new Film();
+        film.setId(rs.getLong("id"));
+        film.setName(rs.getString("name"));
+        film.setDescription(rs.getString("description"));
+        film.setReleaseDate(rs.getDate("releaseDate").toLocalDate());
+        film.setDuration(rs.getInt("duration"));
+        film.setGenres(new LinkedHashSet<>());
+
+        long mpaId = rs.getLong("mpa_id");
+        if (!rs.wasNull()) {
+            Mpa mpa = registry.mpa(mpaId);
+            if (mpa == null) {
+                mpa = new Mpa();
+                mpa.setId(mpaId);
+            }
+            film.setMpa(mpa);
+        }
+        return film;
+    }
+}
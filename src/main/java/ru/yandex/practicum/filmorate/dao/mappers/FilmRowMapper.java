@@ -1,26 +0,0 @@
-package ru.yandex.practicum.filmorate.dao.mappers;
-
-import org.springframework.jdbc.core.RowMapper;
-import org.springframework.stereotype.Component;
-import ru.yandex.practicum.filmorate.model.Film;
-
-import java.sql.ResultSet;
-import java.sql.SQLException;
-
-
-@Component
-public class FilmRowMapper implements RowMapper<Film> {
-
-    @Override
-    public Film mapRow(ResultSet resultSet, int rowNum) throws SQLException {
-        Film film = new Film();
-
-        film.setId(resultSet.getLong("id"));
-        film.setName(resultSet.getString("name"));
-        film.setDescription(resultSet.getString("description"));
-        film.setReleaseDate(resultSet.getDate("releaseDate").toLocalDate());
-        film.setDuration(resultSet.getInt("duration"));
-
-        return film;
-    }
-}
\ No newline at end of file
@@ -0,0 +1,8 @@
+package ru.yandex.practicum.filmorate.event;
+
+/**
+ * Лайк фильму поставлен ({@code liked = true}) или снят. Публикуется только тогда,
+ * когда запись в film_likes действительно добавлена или удалена.
+ */
+public record FilmLikeEvent(Long filmId, Long userId, boolean liked) {
+}
@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.event;
+
+import ru.yandex.practicum.filmorate.model.Film;
+
+/**
+ * Фильм создан ({@code created = true}) или обновлён.
+ */
+public record FilmSavedEvent(Film film, boolean created) {
+}
@@ -0,0 +1,8 @@
+package ru.yandex.practicum.filmorate.event;
+
+/**
+ * Пользователь {@code userId} добавил ({@code added = true}) или удалил друга {@code friendId}.
+ * Публикуется только тогда, когда запись в user_friendship действительно изменилась.
+ */
+public record FriendshipEvent(Long userId, Long friendId, boolean added) {
+}
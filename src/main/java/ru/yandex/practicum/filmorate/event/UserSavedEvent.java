@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.event;
+
+import ru.yandex.practicum.filmorate.model.User;
+
+/**
+ * Пользователь создан ({@code created = true}) или обновлён.
+ */
+public record UserSavedEvent(User user, boolean created) {
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Номера последних изменений по id - для проверки закэшированных результатов при чтении, а не
+ * обходом кэша при записи. Результат помнит номер, на котором начался его расчёт, и годен, пока
+ * ни один id, от которого он зависит, не изменился позже. Номера выдаёт владелец из одного
+ * счётчика, так что номера нескольких экземпляров сравнимы между собой.
+ */
+final class ChangeStamps {
+    private final Map<Long, Long> stamps = new ConcurrentHashMap<>();
+    private volatile long clearedAt;
+
+    /**
+     * Отмечает изменение {@code id}. Номер не уменьшается, даже если параллельные изменения
+     * отмечаются не в порядке номеров.
+     */
+    void touch(long id, long stamp) {
+        stamps.merge(id, stamp, Math::max);
+    }
+
+    /**
+     * Считает изменёнными все id. Более старые номера больше не нужны и удаляются.
+     */
+    void touchAll(long stamp) {
+        clearedAt = stamp;
+        stamps.values().removeIf(value -> value < stamp);
+    }
+
+    boolean changedAfter(long id, long stamp) {
+        return clearedAt > stamp || stamps.getOrDefault(id, 0L) > stamp;
+    }
+}
@@ -0,0 +1,240 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+import ru.yandex.practicum.filmorate.event.FilmSavedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Рейтинг фильмов по количеству лайков, который держится в памяти.
+ * Порядок совпадает с SQL-вариантом: больше лайков выше, при равенстве меньший id выше.
+ * Кроме общего рейтинга ведутся отдельные рейтинги по каждому жанру и году выпуска, поэтому
+ * отфильтрованный топ не просматривает чужие фильмы. При фильтре и по жанру, и по году обходится
+ * рейтинг года, а жанр проверяется у каждого фильма.
+ * Читатели обходят упорядоченные множества без блокировок, изменения одного фильма
+ * сериализуются через {@link ConcurrentHashMap#compute}.
+ */
+@Slf4j
+@Component
+public class FilmLeaderboard {
+    private static final Comparator<Rank> ORDER = Comparator.comparingLong(Rank::likes).reversed()
+            .thenComparingLong(Rank::filmId);
+    private static final ConcurrentSkipListSet<Rank> EMPTY = new ConcurrentSkipListSet<>(ORDER);
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Rank> ranking = new ConcurrentSkipListSet<>(ORDER);
+    private final Map<Long, ConcurrentSkipListSet<Rank>> byGenre = new ConcurrentHashMap<>();
+    private final Map<Integer, ConcurrentSkipListSet<Rank>> byYear = new ConcurrentHashMap<>();
+
+    /**
+     * Заменяет содержимое рейтинга количеством лайков по каждому фильму, без жанров и годов.
+     */
+    public void load(Map<Long, Long> likesByFilm) {
+        load(likesByFilm, Map.of(), Map.of());
+    }
+
+    /**
+     * Заменяет содержимое рейтингов количеством лайков, годом выпуска и жанрами каждого фильма.
+     */
+    public void load(Map<Long, Long> likesByFilm, Map<Long, Integer> yearByFilm, Map<Long, Set<Long>> genresByFilm) {
+        entries.clear();
+        ranking.clear();
+        byGenre.clear();
+        byYear.clear();
+        likesByFilm.forEach((filmId, likes) -> {
+            Entry entry = new Entry(filmId, likes, yearByFilm.get(filmId),
+                    genresByFilm.getOrDefault(filmId, Set.of()));
+            entries.put(filmId, entry);
+            rankingsOf(entry).forEach(set -> set.add(entry.rank()));
+        });
+        log.info("Рейтинг фильмов загружен: {} фильмов, {} жанров, {} лет", entries.size(), byGenre.size(),
+                byYear.size());
+    }
+
+    public void addFilm(Long filmId) {
+        addFilm(filmId, null, Set.of());
+    }
+
+    /**
+     * Добавляет фильм в рейтинги его года и жанров. Лайк может прийти раньше события о создании
+     * фильма - тогда запись уже есть, без года и жанров: лайки сохраняются, год и жанры дописываются.
+     */
+    public void addFilm(Long filmId, Integer year, Set<Long> genreIds) {
+        place(filmId, year, genreIds);
+    }
+
+    /**
+     * Переносит фильм в рейтинги нового года и жанров, количество лайков сохраняется.
+     */
+    public void moveFilm(Long filmId, Integer year, Set<Long> genreIds) {
+        place(filmId, year, genreIds);
+    }
+
+    /**
+     * Меняет число лайков на {@code delta}. Хранилища публикуют изменения одной пары (фильм, пользователь)
+     * в порядке записи, поэтому снятие лайка не приходит раньше самого лайка, а изменения разных
+     * пар перестановочны: итог не зависит от того, в каком порядке их применили потоки.
+     */
+    public void changeLikes(Long filmId, long delta) {
+        entries.compute(filmId, (id, old) -> {
+            if (old == null) {
+                return replace(null, new Entry(id, delta, null, Set.of()));
+            }
+            return replace(old, new Entry(id, old.likes() + delta, old.year(), old.genreIds()));
+        });
+    }
+
+    public long likes(Long filmId) {
+        Entry entry = entries.get(filmId);
+        return entry == null ? 0 : entry.likes();
+    }
+
+    /**
+     * Возвращает id первых {@code count} фильмов рейтинга.
+     */
+    public List<Long> top(int count) {
+        return top(count, null, null);
+    }
+
+    /**
+     * Возвращает id первых {@code count} фильмов рейтинга жанра и/или года; {@code null} - без фильтра.
+     */
+    public List<Long> top(int count, Long genreId, Integer year) {
+        Iterable<Rank> source;
+        Predicate<Rank> filter = rank -> true;
+        if (year != null) {
+            source = byYear.getOrDefault(year, EMPTY);
+            if (genreId != null) {
+                filter = rank -> {
+                    Entry entry = entries.get(rank.filmId());
+                    return entry != null && entry.genreIds().contains(genreId);
+                };
+            }
+        } else if (genreId != null) {
+            source = byGenre.getOrDefault(genreId, EMPTY);
+        } else {
+            source = ranking;
+        }
+        List<Long> result = new ArrayList<>(Math.max(0, Math.min(count, entries.size())));
+        Set<Long> seen = new HashSet<>();
+        for (Rank rank : source) {
+            if (result.size() >= count) {
+                break;
+            }
+            if (filter.test(rank) && seen.add(rank.filmId())) {
+                result.add(rank.filmId());
+            }
+        }
+        return result;
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmSaved(FilmSavedEvent event) {
+        Film film = event.film();
+        Integer year = film.getReleaseDate() == null ? null : film.getReleaseDate().getYear();
+        Set<Long> genreIds = film.getGenres() == null ? Set.of() : film.getGenres().stream()
+                .map(Genre::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (event.created()) {
+            addFilm(film.getId(), year, genreIds);
+        } else {
+            // обновление без жанров оставляет в базе прежние жанры
+            place(film.getId(), year, genreIds.isEmpty() ? null : genreIds);
+        }
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmLike(FilmLikeEvent event) {
+        changeLikes(event.filmId(), event.liked() ? 1 : -1);
+    }
+
+    /**
+     * Ставит фильм в рейтинги года и жанров, сохраняя число лайков, одним {@link ConcurrentHashMap#compute}.
+     *
+     * @param genreIds жанры фильма или {@code null}, чтобы оставить прежние
+     */
+    private void place(Long filmId, Integer year, Set<Long> genreIds) {
+        entries.compute(filmId, (id, old) -> {
+            Set<Long> genres = genreIds != null ? Set.copyOf(genreIds) : old == null ? Set.of() : old.genreIds();
+            return replace(old, new Entry(id, old == null ? 0 : old.likes(), year, genres));
+        });
+    }
+
+    /**
+     * Сначала добавляет новую позицию во все рейтинги, потом убирает старую: читатель может на мгновение
+     * увидеть фильм дважды (дубль отбрасывается в top), но никогда не потеряет его. Если число лайков
+     * не изменилось, позиция та же, и меняется только набор рейтингов жанров и года.
+     */
+    private Entry replace(Entry old, Entry updated) {
+        List<ConcurrentSkipListSet<Rank>> updatedSets = rankingsOf(updated);
+        if (old == null) {
+            updatedSets.forEach(set -> set.add(updated.rank()));
+            return updated;
+        }
+        List<ConcurrentSkipListSet<Rank>> oldSets = rankingsOf(old);
+        boolean sameRank = old.likes() == updated.likes();
+        for (ConcurrentSkipListSet<Rank> set : updatedSets) {
+            if (!sameRank || !containsSame(oldSets, set)) {
+                set.add(updated.rank());
+            }
+        }
+        for (ConcurrentSkipListSet<Rank> set : oldSets) {
+            if (!sameRank || !containsSame(updatedSets, set)) {
+                set.remove(old.rank());
+            }
+        }
+        return updated;
+    }
+
+    private static boolean containsSame(List<ConcurrentSkipListSet<Rank>> sets, ConcurrentSkipListSet<Rank> set) {
+        for (ConcurrentSkipListSet<Rank> candidate : sets) {
+            if (candidate == set) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<ConcurrentSkipListSet<Rank>> rankingsOf(Entry entry) {
+        List<ConcurrentSkipListSet<Rank>> sets = new ArrayList<>(entry.genreIds().size() + 2);
+        sets.add(ranking);
+        if (entry.year() != null) {
+            sets.add(byYear.computeIfAbsent(entry.year(), year -> new ConcurrentSkipListSet<>(ORDER)));
+        }
+        for (Long genreId : entry.genreIds()) {
+            sets.add(byGenre.computeIfAbsent(genreId, genre -> new ConcurrentSkipListSet<>(ORDER)));
+        }
+        return sets;
+    }
+
+    /**
+     * Позиция фильма в рейтингах. Год и жанры хранятся отдельно, в {@link Entry}.
+     */
+    private record Rank(long filmId, long likes) {
+    }
+
+    private record Entry(long filmId, long likes, Integer year, Set<Long> genreIds) {
+        Rank rank() {
+            return new Rank(filmId, likes);
+        }
+    }
+}
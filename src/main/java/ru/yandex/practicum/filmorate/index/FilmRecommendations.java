@@ -0,0 +1,179 @@
+package ru.yandex.practicum.filmorate.index;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Рекомендации фильмов по {@link LikeMatrix} (коллаборативная фильтрация по пользователям).
+ * Похожие пользователи - те, у кого больше всего общих лайков с данным (при равенстве меньший id выше);
+ * рекомендуются фильмы, которые они лайкнули, а данный пользователь ещё нет, с весом, равным
+ * числу общих лайков с лайкнувшим.
+ * <p>
+ * Общие лайки и веса фильмов считаются в разреженном {@link IntCounter} по строкам матрицы,
+ * а при большом числе строк - параллельно по остатку id пользователя, как в {@link FriendSuggestions}.
+ * Первые {@value #CACHED_LIMIT} рекомендаций кэшируются в кэше Caffeine, ограниченном по размеру. Лайк влияет на рекомендации самого
+ * пользователя, всех лайкнувших тот же фильм (у них изменилось число общих лайков) и тех, у кого он
+ * среди похожих (у него изменился набор фильмов). Обходить их при лайке не нужно: лайк только
+ * отмечает номер изменения у пользователя и у фильма в {@link ChangeStamps}, а закэшированный
+ * результат при чтении сверяет эти номера у себя, своих похожих пользователей и своих фильмов.
+ * Мера сходства - именно число общих лайков, а не коэффициент Жаккара: она не зависит от остальных
+ * лайков пользователя, поэтому этих зависимостей достаточно.
+ */
+@Component
+public class FilmRecommendations {
+    static final int CACHED_LIMIT = 100;
+    static final int SIMILAR_USERS = 50;
+    private static final int MIN_ENTRIES_PER_TASK = 65_536;
+
+    private final LikeMatrix matrix;
+    private final Cache<Long, Entry> cache;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ChangeStamps userChanges = new ChangeStamps();
+    private final ChangeStamps filmChanges = new ChangeStamps();
+
+    /**
+     * Рекомендации, похожие пользователи, по которым они посчитаны, и номер изменения,
+     * на котором начался расчёт.
+     */
+    private record Entry(int[] films, long[] similar, long computedAt) {
+    }
+
+    public FilmRecommendations(LikeMatrix matrix,
+                               @Value("${filmorate.recommendations.cache.maximum-size:10000}") long cacheSize) {
+        this.matrix = matrix;
+        this.cache = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * Id рекомендованных фильмов, не больше {@code limit}.
+     */
+    public int[] recommend(long userId, int limit) {
+        if (limit > CACHED_LIMIT) {
+            return compute(userId, limit, 0).films();
+        }
+        Entry cached = cache.getIfPresent(userId);
+        if (cached == null || !isFresh(userId, cached)) {
+            cached = compute(userId, CACHED_LIMIT, sequence.get());
+            cache.put(userId, cached);
+        }
+        int[] films = cached.films();
+        return films.length <= limit ? films : Arrays.copyOf(films, limit);
+    }
+
+    @Order(1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLike(FilmLikeEvent event) {
+        long stamp = sequence.incrementAndGet();
+        userChanges.touch(event.userId(), stamp);
+        filmChanges.touch(event.filmId(), stamp);
+        cache.invalidate(event.userId());
+    }
+
+    /**
+     * Сбрасывает все рекомендации - после того как матрица лайков загружена заново.
+     */
+    public void invalidateAll() {
+        long stamp = sequence.incrementAndGet();
+        userChanges.touchAll(stamp);
+        filmChanges.touchAll(stamp);
+        cache.invalidateAll();
+    }
+
+    /**
+     * Результат годен, если после начала расчёта не лайкали ни сам пользователь, ни его похожие,
+     * и не менялись лайки его фильмов.
+     */
+    private boolean isFresh(long userId, Entry entry) {
+        long computedAt = entry.computedAt();
+        if (userChanges.changedAfter(userId, computedAt)) {
+            return false;
+        }
+        for (long similar : entry.similar()) {
+            if (userChanges.changedAfter(similar, computedAt)) {
+                return false;
+            }
+        }
+        for (int film : matrix.films(userId)) {
+            if (filmChanges.changedAfter(film, computedAt)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Entry compute(long userId, int limit, long computedAt) {
+        int[] films = matrix.films(userId);
+        if (films.length == 0 || limit <= 0) {
+            return new Entry(new int[0], new long[0], computedAt);
+        }
+        long[][] similar = similarUsers(userId, films);
+        long entries = 0;
+        for (long[] user : similar) {
+            entries += matrix.films(user[0]).length;
+        }
+        IntCounter scores = new IntCounter(entries);
+        long[] similarIds = new long[similar.length];
+        for (int i = 0; i < similar.length; i++) {
+            similarIds[i] = similar[i][0];
+            for (int film : matrix.films(similar[i][0])) {
+                scores.add(film, (int) similar[i][1]);
+            }
+        }
+        long[][] recommended = scores.top(limit, film -> Arrays.binarySearch(films, film) >= 0);
+        int[] ids = new int[recommended.length];
+        for (int i = 0; i < recommended.length; i++) {
+            ids[i] = (int) recommended[i][0];
+        }
+        return new Entry(ids, similarIds, computedAt);
+    }
+
+    /**
+     * Самые похожие пользователи парами {@code {id, общих лайков}}, упорядоченные по убыванию сходства.
+     */
+    private long[][] similarUsers(long userId, int[] films) {
+        long entries = 0;
+        for (int film : films) {
+            entries += matrix.likers(film).length;
+        }
+        int tasks = (int) Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), entries / MIN_ENTRIES_PER_TASK));
+        long perTask = entries / tasks;
+
+        return IntStream.range(0, tasks)
+                .parallel()
+                .mapToObj(task -> countPart(userId, films, task, tasks, perTask))
+                .reduce(FilmRecommendations::merge)
+                .orElse(new long[0][]);
+    }
+
+    /**
+     * Считает общие лайки с пользователями с {@code id % parts == part} и возвращает самых похожих из них.
+     */
+    private long[][] countPart(long userId, int[] films, int part, int parts, long expected) {
+        IntCounter counts = new IntCounter(expected);
+        for (int film : films) {
+            for (int liker : matrix.likers(film)) {
+                if (liker % parts == part) {
+                    counts.add(liker, 1);
+                }
+            }
+        }
+        return counts.top(SIMILAR_USERS, liker -> liker == userId);
+    }
+
+    private static long[][] merge(long[][] first, long[][] second) {
+        long[][] all = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        Arrays.sort(all, IntCounter::compare);
+        return Arrays.copyOf(all, Math.min(SIMILAR_USERS, all.length));
+    }
+}
@@ -0,0 +1,294 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.FilmSavedEvent;
+import ru.yandex.practicum.filmorate.model.SearchField;
+import ru.yandex.practicum.filmorate.model.SearchRanking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Инвертированный индекс по названиям и описаниям фильмов для полнотекстового поиска.
+ * Текст разбивается на слова из букв и цифр (любого алфавита), регистр и «ё» приводятся к одному виду.
+ * Для каждого слова хранится отсортированный массив id фильмов. Фильм находится, если каждое слово
+ * запроса есть хотя бы в одном из выбранных полей.
+ * <p>
+ * Релевантность - сумма по словам запроса IDF слова в поле, слово в названии весит вдвое больше.
+ * Читатели работают без блокировок: списки не меняются на месте, а публикуются заново.
+ * Запись одна за раз.
+ */
+@Component
+public class FilmSearchIndex {
+    private static final double TITLE_WEIGHT = 2.0;
+    private static final double DESCRIPTION_WEIGHT = 1.0;
+    private static final String[] NO_TOKENS = new String[0];
+
+    private final FilmLeaderboard leaderboard;
+    private final Map<String, Postings> titles = new ConcurrentHashMap<>();
+    private final Map<String, Postings> descriptions = new ConcurrentHashMap<>();
+    private final Map<Long, Document> documents = new ConcurrentHashMap<>();
+    // одна копия строки на слово: документы хранят ссылки на неё, а не свои экземпляры
+    private final Map<String, String> vocabulary = new ConcurrentHashMap<>();
+
+    public FilmSearchIndex(FilmLeaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    public synchronized void clear() {
+        titles.clear();
+        descriptions.clear();
+        documents.clear();
+        vocabulary.clear();
+    }
+
+    /**
+     * Добавляет фильм в индекс или заменяет его прежний текст. Загрузка в порядке возрастания id
+     * только дописывает в конец списков, без копирования.
+     */
+    public synchronized void index(long filmId, String title, String description) {
+        Document old = documents.getOrDefault(filmId, Document.EMPTY);
+        Document updated = new Document(intern(distinctTokens(title)), intern(distinctTokens(description)));
+        replace(titles, filmId, old.title(), updated.title());
+        replace(descriptions, filmId, old.description(), updated.description());
+        documents.put(filmId, updated);
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Ищет фильмы, в выбранных полях которых есть все слова запроса.
+     *
+     * @return id не больше {@code limit} фильмов, лучшие первыми; при равенстве выше фильм
+     * с большим числом лайков (или с большей релевантностью при сортировке по лайкам), затем с меньшим id
+     */
+    public List<Long> search(String query, Set<SearchField> fields, SearchRanking ranking, int limit) {
+        String[] terms = distinctTokens(query);
+        if (terms.length == 0 || fields.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Postings candidates = null;
+        Postings[] matches = new Postings[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            matches[i] = matching(terms[i], fields);
+        }
+        Arrays.sort(matches, Comparator.comparingInt(Postings::size));
+        for (Postings ids : matches) {
+            candidates = candidates == null ? ids : intersect(candidates, ids);
+            if (candidates.size() == 0) {
+                return List.of();
+            }
+        }
+
+        int total = Math.max(1, documents.size());
+        Comparator<Hit> order = ranking == SearchRanking.LIKES
+                ? Comparator.comparingLong(Hit::likes).thenComparingDouble(Hit::score)
+                : Comparator.comparingDouble(Hit::score).thenComparingLong(Hit::likes);
+        order = order.thenComparing(Comparator.comparingLong(Hit::filmId).reversed());
+        // в куче лежат лучшие найденные, в вершине - худший из них
+        PriorityQueue<Hit> best = new PriorityQueue<>(Math.min(limit, candidates.size()) + 1, order);
+        for (int c = 0; c < candidates.size(); c++) {
+            int filmId = candidates.ids()[c];
+            double score = 0;
+            for (String term : terms) {
+                score += weight(titles, fields.contains(SearchField.TITLE), term, filmId, total) * TITLE_WEIGHT;
+                score += weight(descriptions, fields.contains(SearchField.DESCRIPTION), term, filmId, total)
+                        * DESCRIPTION_WEIGHT;
+            }
+            best.add(new Hit(filmId, score, leaderboard.likes((long) filmId)));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Long> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll().filmId());
+        }
+        return result.reversed();
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmSaved(FilmSavedEvent event) {
+        index(event.film().getId(), event.film().getName(), event.film().getDescription());
+    }
+
+    /**
+     * Разбивает текст на слова в нижнем регистре, «ё» заменяется на «е».
+     */
+    public static List<String> tokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                char lower = Character.toLowerCase(c);
+                token.append(lower == 'ё' ? 'е' : lower);
+            } else if (!token.isEmpty()) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (!token.isEmpty()) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    private static String[] distinctTokens(String text) {
+        List<String> tokens = tokens(text);
+        return tokens.isEmpty() ? NO_TOKENS : new LinkedHashSet<>(tokens).toArray(NO_TOKENS);
+    }
+
+    private String[] intern(String[] tokens) {
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = vocabulary.computeIfAbsent(tokens[i], token -> token);
+        }
+        return tokens;
+    }
+
+    private static void replace(Map<String, Postings> postings, long filmId, String[] old, String[] updated) {
+        int id = (int) filmId;
+        Set<String> kept = Set.of(updated);
+        for (String token : old) {
+            if (!kept.contains(token)) {
+                postings.computeIfPresent(token, (key, list) -> list.without(id));
+            }
+        }
+        for (String token : updated) {
+            postings.compute(token, (key, list) -> (list == null ? Postings.EMPTY : list).with(id));
+        }
+    }
+
+    /**
+     * Фильмы, где слово есть хотя бы в одном из полей. Если поле одно, возвращается сам список
+     * индекса без копирования: он не меняется, пока на него есть ссылка.
+     */
+    private Postings matching(String term, Set<SearchField> fields) {
+        Postings title = fields.contains(SearchField.TITLE) ? titles.get(term) : null;
+        Postings description = fields.contains(SearchField.DESCRIPTION) ? descriptions.get(term) : null;
+        if (title == null) {
+            return description == null ? Postings.EMPTY : description;
+        }
+        return description == null ? title : union(title, description);
+    }
+
+    private static double weight(Map<String, Postings> postings, boolean selected, String term, int filmId,
+                                 int total) {
+        if (!selected) {
+            return 0;
+        }
+        Postings list = postings.get(term);
+        if (list == null || Arrays.binarySearch(list.ids(), 0, list.size(), filmId) < 0) {
+            return 0;
+        }
+        return Math.log(1 + (double) total / list.size());
+    }
+
+    private static Postings union(Postings a, Postings b) {
+        int[] result = new int[a.size() + b.size()];
+        int[] left = a.ids();
+        int[] right = b.ids();
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.size() && j < b.size()) {
+            if (left[i] == right[j]) {
+                result[n++] = left[i++];
+                j++;
+            } else {
+                result[n++] = left[i] < right[j] ? left[i++] : right[j++];
+            }
+        }
+        while (i < a.size()) {
+            result[n++] = left[i++];
+        }
+        while (j < b.size()) {
+            result[n++] = right[j++];
+        }
+        return new Postings(result, n);
+    }
+
+    private static Postings intersect(Postings a, Postings b) {
+        int[] result = new int[Math.min(a.size(), b.size())];
+        int[] left = a.ids();
+        int[] right = b.ids();
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.size() && j < b.size()) {
+            if (left[i] == right[j]) {
+                result[n++] = left[i++];
+                j++;
+            } else if (left[i] < right[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return new Postings(result, n);
+    }
+
+    /**
+     * Отсортированный список id фильмов. Массив может быть длиннее {@code size}: добавление id больше
+     * последнего дописывает в свободное место и публикует новый список поверх того же массива, а прежние
+     * списки видят только свою часть. Остальные изменения копируют массив. Поиск пересекает и объединяет
+     * списки по этим же парам (массив, размер), не обрезая массивы.
+     */
+    private record Postings(int[] ids, int size) {
+        static final Postings EMPTY = new Postings(IntRows.EMPTY, 0);
+
+        Postings with(int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int position = Arrays.binarySearch(ids, 0, size, id);
+                if (position >= 0) {
+                    return this;
+                }
+                int insertAt = -position - 1;
+                int[] copy = new int[size + 1];
+                System.arraycopy(ids, 0, copy, 0, insertAt);
+                copy[insertAt] = id;
+                System.arraycopy(ids, insertAt, copy, insertAt + 1, size - insertAt);
+                return new Postings(copy, size + 1);
+            }
+            int[] target = size < ids.length ? ids : Arrays.copyOf(ids, Math.max(4, size * 2));
+            target[size] = id;
+            return new Postings(target, size + 1);
+        }
+
+        Postings without(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return this;
+            }
+            if (size == 1) {
+                return null;
+            }
+            int[] copy = new int[size - 1];
+            System.arraycopy(ids, 0, copy, 0, position);
+            System.arraycopy(ids, position + 1, copy, position, size - position - 1);
+            return new Postings(copy, size - 1);
+        }
+    }
+
+    private record Document(String[] title, String[] description) {
+        static final Document EMPTY = new Document(NO_TOKENS, NO_TOKENS);
+    }
+
+    private record Hit(long filmId, double score, long likes) {
+    }
+}
@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate.index;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.FriendshipEvent;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Рекомендации друзей второго круга по {@link FriendshipGraph}: кандидаты - друзья друзей,
+ * которые ещё не в друзьях у пользователя, ранжированные по числу общих друзей
+ * (при равенстве меньший id выше).
+ * <p>
+ * Общие друзья считаются в разреженном {@link IntCounter} по строкам друзей, поэтому запрос стоит
+ * порядка суммы степеней друзей, а не числа всех пользователей. Если строк много, подсчёт делится
+ * между задачами fork-join пула по остатку id кандидата: каждая проходит строки всех друзей,
+ * считает только своих кандидатов и отдаёт свой топ.
+ * Первые {@value #CACHED_LIMIT} рекомендаций кэшируются для каждого пользователя в кэше Caffeine,
+ * ограниченном по размеру, и годны, пока не
+ * изменилась дружба самого пользователя или любого из его друзей. Изменение дружбы только отмечает
+ * номер изменения у пользователя в {@link ChangeStamps}, а закэшированный результат сверяет номера
+ * при чтении - без обхода всех, у кого этот пользователь в друзьях.
+ */
+@Component
+public class FriendSuggestions {
+    static final int CACHED_LIMIT = 100;
+    private static final int MIN_ENTRIES_PER_TASK = 65_536;
+
+    private final FriendshipGraph graph;
+    private final Cache<Long, Entry> cache;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ChangeStamps userChanges = new ChangeStamps();
+
+    /**
+     * Рекомендации и номер изменения, на котором начался их расчёт.
+     */
+    private record Entry(int[] users, long computedAt) {
+    }
+
+    public FriendSuggestions(FriendshipGraph graph,
+                             @Value("${filmorate.suggestions.cache.maximum-size:10000}") long cacheSize) {
+        this.graph = graph;
+        this.cache = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * Id рекомендованных пользователей, не больше {@code limit}.
+     */
+    public int[] suggest(long userId, int limit) {
+        if (limit > CACHED_LIMIT) {
+            return compute(userId, limit);
+        }
+        Entry cached = cache.getIfPresent(userId);
+        if (cached == null || !isFresh(userId, cached)) {
+            long computedAt = sequence.get();
+            cached = new Entry(compute(userId, CACHED_LIMIT), computedAt);
+            cache.put(userId, cached);
+        }
+        int[] users = cached.users();
+        return users.length <= limit ? users : Arrays.copyOf(users, limit);
+    }
+
+    @Order(1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendship(FriendshipEvent event) {
+        userChanges.touch(event.userId(), sequence.incrementAndGet());
+        cache.invalidate(event.userId());
+    }
+
+    /**
+     * Сбрасывает все рекомендации - после того как граф дружбы загружен заново.
+     */
+    public void invalidateAll() {
+        userChanges.touchAll(sequence.incrementAndGet());
+        cache.invalidateAll();
+    }
+
+    private boolean isFresh(long userId, Entry entry) {
+        if (userChanges.changedAfter(userId, entry.computedAt())) {
+            return false;
+        }
+        for (int friend : graph.friends(userId)) {
+            if (userChanges.changedAfter(friend, entry.computedAt())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int[] compute(long userId, int limit) {
+        int[] friends = graph.friends(userId);
+        if (friends.length == 0 || limit <= 0) {
+            return new int[0];
+        }
+        long entries = 0;
+        for (int friend : friends) {
+            entries += graph.friends(friend).length;
+        }
+        int tasks = (int) Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), entries / MIN_ENTRIES_PER_TASK));
+        long perTask = entries / tasks;
+
+        return IntStream.range(0, tasks)
+                .parallel()
+                .mapToObj(task -> countPart(userId, friends, task, tasks, perTask, limit))
+                .reduce((first, second) -> merge(first, second, limit))
+                .map(FriendSuggestions::ids)
+                .orElse(new int[0]);
+    }
+
+    /**
+     * Считает общих друзей для кандидатов с {@code id % parts == part} и возвращает лучших из них
+     * парами {@code {id, count}}, упорядоченными по убыванию рейтинга.
+     */
+    private long[][] countPart(long userId, int[] friends, int part, int parts, long expected, int limit) {
+        IntCounter counts = new IntCounter(expected);
+        for (int friend : friends) {
+            for (int candidate : graph.friends(friend)) {
+                if (candidate % parts == part) {
+                    counts.add(candidate, 1);
+                }
+            }
+        }
+        return counts.top(limit, candidate -> candidate == userId || Arrays.binarySearch(friends, candidate) >= 0);
+    }
+
+    private static long[][] merge(long[][] first, long[][] second, int limit) {
+        long[][] all = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        Arrays.sort(all, IntCounter::compare);
+        return Arrays.copyOf(all, Math.min(limit, all.length));
+    }
+
+    private static int[] ids(long[][] pairs) {
+        int[] result = new int[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            result[i] = (int) pairs[i][0];
+        }
+        return result;
+    }
+}
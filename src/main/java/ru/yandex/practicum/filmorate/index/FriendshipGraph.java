@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.FriendshipEvent;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Граф дружбы в памяти. Друзья каждого пользователя хранятся отсортированным массивом int,
+ * массивы лежат в общем массиве, индексированном по id пользователя. Так же хранится и обратная
+ * сторона связи - пользователи, у которых данный пользователь в друзьях.
+ * <p>
+ * Строки не изменяются на месте: писатель под блокировкой строит новую строку и публикует её
+ * через ячейку атомарного массива ({@link IntRows}), поэтому читатели работают без блокировок
+ * и всегда видят целую строку. Возвращаемые массивы изменять нельзя.
+ */
+@Slf4j
+@Component
+public class FriendshipGraph {
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final IntRows friends = new IntRows();
+    private final IntRows followers = new IntRows();
+
+    /**
+     * Заменяет граф рёбрами {@code {userId, friendId}}.
+     */
+    public void load(List<long[]> edges) {
+        writeLock.lock();
+        try {
+            int maxId = 0;
+            for (long[] edge : edges) {
+                maxId = Math.max(maxId, (int) Math.max(edge[0], edge[1]));
+            }
+            friends.load(edges, maxId, 0);
+            followers.load(edges, maxId, 1);
+            log.info("Граф дружбы загружен: {} связей", edges.size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Отсортированные id друзей пользователя.
+     */
+    public int[] friends(long userId) {
+        return friends.row(userId);
+    }
+
+    /**
+     * Отсортированные id пользователей, у которых данный пользователь в друзьях.
+     */
+    public int[] followers(long userId) {
+        return followers.row(userId);
+    }
+
+    /**
+     * Общие друзья двух пользователей: слияние двух отсортированных массивов за линейное время.
+     */
+    public int[] common(long userId, long otherId) {
+        int[] first = friends(userId);
+        int[] second = friends(otherId);
+        int[] result = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    public void addFriend(long userId, long friendId) {
+        writeLock.lock();
+        try {
+            friends.insert((int) userId, (int) friendId);
+            followers.insert((int) friendId, (int) userId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void removeFriend(long userId, long friendId) {
+        writeLock.lock();
+        try {
+            friends.remove((int) userId, (int) friendId);
+            followers.remove((int) friendId, (int) userId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendship(FriendshipEvent event) {
+        if (event.added()) {
+            addFriend(event.userId(), event.friendId());
+        } else {
+            removeFriend(event.userId(), event.friendId());
+        }
+    }
+}
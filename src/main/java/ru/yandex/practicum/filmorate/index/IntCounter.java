@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+
+/**
+ * Счётчики по неотрицательным int-ключам в открытой адресации (линейное пробирование).
+ * Размер таблицы задаётся ожидаемым числом ключей, а не наибольшим id, поэтому подсчёт по строкам
+ * соседей стоит памяти и времени порядка суммы их длин. Не потокобезопасен: каждый расчёт
+ * заводит свой. Начальный размер ограничен {@value #MAX_INITIAL_KEYS} ключами: сумма длин строк
+ * популярных пользователей сильно завышает число разных ключей, а при нехватке таблица растёт.
+ */
+final class IntCounter {
+    private static final int FREE = -1;
+    private static final int MAX_INITIAL_KEYS = 1 << 20;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    IntCounter(long expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.clamp(expectedKeys, 8, MAX_INITIAL_KEYS) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    void add(int key, int delta) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == FREE) {
+            keys[slot] = key;
+            if (++size * 2 > keys.length) {
+                grow();
+                add(key, delta);
+                return;
+            }
+        }
+        values[slot] += delta;
+    }
+
+    /**
+     * Не больше {@code limit} ключей с наибольшими значениями парами {@code {ключ, значение}}:
+     * больше значение - раньше, при равенстве меньший ключ раньше. Ключи, для которых
+     * {@code excluded} истинно, пропускаются.
+     */
+    long[][] top(int limit, IntPredicate excluded) {
+        PriorityQueue<long[]> top = new PriorityQueue<>(limit + 1, (a, b) -> compare(b, a));
+        for (int slot = 0; slot < keys.length; slot++) {
+            int key = keys[slot];
+            if (key == FREE || excluded.test(key)) {
+                continue;
+            }
+            top.offer(new long[]{key, values[slot]});
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        long[][] sorted = top.toArray(new long[0][]);
+        Arrays.sort(sorted, IntCounter::compare);
+        return sorted;
+    }
+
+    /**
+     * Порядок {@link #top}: больше значение - раньше, при равенстве меньший ключ раньше.
+     */
+    static int compare(long[] a, long[] b) {
+        int byValue = Long.compare(b[1], a[1]);
+        return byValue != 0 ? byValue : Long.compare(a[0], b[0]);
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(keys, FREE);
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != FREE) {
+                add(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ hash >>> 16;
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Разреженная матрица смежности в виде массива строк: строка {@code id} - отсортированный
+ * массив int без повторов. Строки не изменяются на месте: запись строит новую строку и кладёт её
+ * в ячейку {@link AtomicReferenceArray}, поэтому читатель без блокировок видит либо прежнюю
+ * строку, либо новую целиком. При росте ячейки копируются в больший массив, который публикуется
+ * через volatile-поле. Записи идут под блокировкой владельца.
+ */
+final class IntRows {
+    static final int[] EMPTY = new int[0];
+
+    private volatile AtomicReferenceArray<int[]> rows = new AtomicReferenceArray<>(16);
+
+    int[] row(long id) {
+        AtomicReferenceArray<int[]> current = rows;
+        if (id < 0 || id >= current.length()) {
+            return EMPTY;
+        }
+        int[] row = current.get((int) id);
+        return row == null ? EMPTY : row;
+    }
+
+    /**
+     * Заменяет строки построенными по парам {@code {a, b}}: ключом служит элемент {@code keyIndex}, значением - второй.
+     */
+    void load(List<long[]> pairs, int maxId, int keyIndex) {
+        int[] degrees = new int[maxId + 1];
+        for (long[] pair : pairs) {
+            degrees[(int) pair[keyIndex]]++;
+        }
+        int[][] built = new int[Math.max(16, maxId + 1)][];
+        for (int id = 0; id <= maxId; id++) {
+            built[id] = degrees[id] == 0 ? EMPTY : new int[degrees[id]];
+        }
+        int[] filled = new int[maxId + 1];
+        for (long[] pair : pairs) {
+            int key = (int) pair[keyIndex];
+            built[key][filled[key]++] = (int) pair[1 - keyIndex];
+        }
+        for (int[] row : built) {
+            if (row != null) {
+                Arrays.sort(row);
+            }
+        }
+        rows = new AtomicReferenceArray<>(built);
+    }
+
+    /**
+     * Добавляет {@code value} в строку {@code id}; при нехватке места массив строк копируется с запасом.
+     */
+    void insert(int id, int value) {
+        AtomicReferenceArray<int[]> current = rows;
+        if (id >= current.length()) {
+            AtomicReferenceArray<int[]> grown = new AtomicReferenceArray<>(Math.max(id + 1, current.length() * 2));
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            rows = grown;
+            current = grown;
+        }
+        int[] row = row(id);
+        int position = Arrays.binarySearch(row, value);
+        if (position >= 0) {
+            return;
+        }
+        int insertAt = -position - 1;
+        int[] updated = new int[row.length + 1];
+        System.arraycopy(row, 0, updated, 0, insertAt);
+        updated[insertAt] = value;
+        System.arraycopy(row, insertAt, updated, insertAt + 1, row.length - insertAt);
+        current.set(id, updated);
+    }
+
+    void remove(int id, int value) {
+        int[] row = row(id);
+        int position = Arrays.binarySearch(row, value);
+        if (position < 0) {
+            return;
+        }
+        int[] updated = new int[row.length - 1];
+        System.arraycopy(row, 0, updated, 0, position);
+        System.arraycopy(row, position + 1, updated, position, row.length - position - 1);
+        rows.set(id, updated);
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Разреженная матрица лайков «пользователь × фильм» в памяти. Хранится в обе стороны:
+ * для каждого пользователя - отсортированный массив id понравившихся фильмов, для каждого
+ * фильма - отсортированный массив id лайкнувших пользователей, по четыре байта на лайк в каждой.
+ * <p>
+ * Как и в {@link FriendshipGraph}, строки копируются при записи под блокировкой и публикуются
+ * через ячейки {@link IntRows}, читатели работают без блокировок. Возвращаемые массивы изменять нельзя.
+ */
+@Slf4j
+@Component
+public class LikeMatrix {
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final IntRows filmsByUser = new IntRows();
+    private final IntRows usersByFilm = new IntRows();
+
+    /**
+     * Заменяет матрицу лайками {@code {userId, filmId}}.
+     */
+    public void load(List<long[]> likes) {
+        writeLock.lock();
+        try {
+            int maxUserId = 0;
+            int maxFilmId = 0;
+            for (long[] like : likes) {
+                maxUserId = Math.max(maxUserId, (int) like[0]);
+                maxFilmId = Math.max(maxFilmId, (int) like[1]);
+            }
+            filmsByUser.load(likes, maxUserId, 0);
+            usersByFilm.load(likes, maxFilmId, 1);
+            log.info("Матрица лайков загружена: {} лайков", likes.size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Отсортированные id фильмов, которые лайкнул пользователь.
+     */
+    public int[] films(long userId) {
+        return filmsByUser.row(userId);
+    }
+
+    /**
+     * Отсортированные id пользователей, лайкнувших фильм.
+     */
+    public int[] likers(long filmId) {
+        return usersByFilm.row(filmId);
+    }
+
+    public void addLike(long userId, long filmId) {
+        writeLock.lock();
+        try {
+            filmsByUser.insert((int) userId, (int) filmId);
+            usersByFilm.insert((int) filmId, (int) userId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void removeLike(long userId, long filmId) {
+        writeLock.lock();
+        try {
+            filmsByUser.remove((int) userId, (int) filmId);
+            usersByFilm.remove((int) filmId, (int) userId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLike(FilmLikeEvent event) {
+        if (event.liked()) {
+            addLike(event.userId(), event.filmId());
+        } else {
+            removeLike(event.userId(), event.filmId());
+        }
+    }
+}
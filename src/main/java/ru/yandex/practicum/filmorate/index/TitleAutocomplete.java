@@ -0,0 +1,407 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+import ru.yandex.practicum.filmorate.event.FilmSavedEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Автодополнение названий фильмов по префиксу. Названия приводятся к нижнему регистру, «ё» заменяется
+ * на «е», пробелы схлопываются; эти ключи лежат в отсортированном массиве, так что названия с общим
+ * префиксом занимают непрерывный диапазон. На тех же позициях лежат id фильмов и число лайков, а над ними -
+ * дерево отрезков с позицией самого популярного фильма каждого отрезка. Лучшие {@code limit} подсказок
+ * находятся за O(limit * log n) при любой длине префикса; на фильм - одна строка и несколько int,
+ * без узлов на каждый символ.
+ * <p>
+ * Новые и изменённые названия сначала попадают в небольшой буфер и раз в {@value #MERGE_THRESHOLD}
+ * изменений вливаются в основной массив; прежняя позиция переименованного фильма гасится сразу.
+ * Лайки меняют массивы на месте, поэтому читатель без блокировки может на мгновение увидеть порядок,
+ * отстающий на один лайк.
+ */
+@Slf4j
+@Component
+public class TitleAutocomplete {
+    static final int MERGE_THRESHOLD = 256;
+    private static final Comparator<Entry> BY_KEY = Comparator.comparing(Entry::key).thenComparingInt(Entry::filmId);
+
+    private final FilmLeaderboard leaderboard;
+    private volatile Ranked main = Ranked.EMPTY;
+    private volatile Entry[] pending = new Entry[0];
+    private volatile String[] keyById = new String[16];
+
+    public TitleAutocomplete(FilmLeaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+     * Заменяет содержимое индекса названиями фильмов. Лайки берутся из {@link FilmLeaderboard},
+     * поэтому он должен быть загружен раньше.
+     */
+    public synchronized void load(Map<Long, String> titlesByFilm) {
+        long maxId = titlesByFilm.keySet().stream().mapToLong(Long::longValue).max().orElse(0);
+        String[] keys = new String[(int) Math.max(16, maxId + 1)];
+        List<Entry> entries = new ArrayList<>(titlesByFilm.size());
+        titlesByFilm.forEach((filmId, title) -> {
+            String key = fold(title);
+            keys[filmId.intValue()] = key;
+            entries.add(new Entry(key, filmId.intValue()));
+        });
+        keyById = keys;
+        main = rank(entries);
+        pending = new Entry[0];
+        log.info("Индекс автодополнения загружен: {} названий", entries.size());
+    }
+
+    /**
+     * Добавляет название фильма или заменяет прежнее.
+     */
+    public synchronized void index(long filmId, String title) {
+        String key = fold(title);
+        int id = (int) filmId;
+        String[] keys = keyById;
+        if (id >= keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(id + 1, keys.length * 2));
+        } else if (key.equals(keys[id])) {
+            return;
+        }
+        keys[id] = key;
+        keyById = keys;
+        main.remove(id);
+        Entry[] updated = Arrays.copyOf(pending, pending.length + 1);
+        updated[pending.length] = new Entry(key, id);
+        pending = updated;
+        if (updated.length >= MERGE_THRESHOLD) {
+            merge();
+        }
+    }
+
+    /**
+     * Возвращает id не больше {@code limit} фильмов, название которых начинается с {@code prefix};
+     * больше лайков выше, при равенстве меньший id выше.
+     */
+    public List<Long> complete(String prefix, int limit) {
+        String folded = foldPrefix(prefix);
+        if (folded.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Ranked ranked = main;
+        Entry[] recent = pending;
+        String[] keys = keyById;
+        Top top = new Top(limit);
+        int from = ranked.lowerBound(folded);
+        ranked.collect(from, ranked.upperBound(folded, from), top);
+        for (Entry entry : recent) {
+            // запись буфера устарела, если фильм с тех пор переименовали ещё раз
+            if (keys[entry.filmId()] == entry.key() && entry.key().startsWith(folded)) {
+                top.offer(entry.filmId(), leaderboard.likes((long) entry.filmId()));
+            }
+        }
+        return top.ids();
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmSaved(FilmSavedEvent event) {
+        index(event.film().getId(), event.film().getName());
+    }
+
+    /**
+     * Выполняется после {@link FilmLeaderboard} и берёт из него итоговое число лайков, а не прибавляет
+     * единицу: так слияние буфера, прочитавшее уже новое значение, не приведёт к двойному счёту.
+     */
+    @Order(1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onFilmLike(FilmLikeEvent event) {
+        main.setLikes(event.filmId().intValue(), leaderboard.likes(event.filmId()));
+    }
+
+    private void merge() {
+        String[] keys = keyById;
+        Ranked ranked = main;
+        List<Entry> entries = new ArrayList<>(ranked.keys.length + pending.length);
+        for (int i = 0; i < ranked.keys.length; i++) {
+            if (ranked.likes[i] != Ranked.REMOVED) {
+                entries.add(new Entry(ranked.keys[i], ranked.ids[i]));
+            }
+        }
+        for (Entry entry : pending) {
+            if (keys[entry.filmId()] == entry.key()) {
+                entries.add(entry);
+            }
+        }
+        main = rank(entries);
+        pending = new Entry[0];
+    }
+
+    private Ranked rank(List<Entry> entries) {
+        entries.sort(BY_KEY);
+        int[] likes = new int[entries.size()];
+        for (int i = 0; i < likes.length; i++) {
+            likes[i] = (int) Math.min(Integer.MAX_VALUE, leaderboard.likes((long) entries.get(i).filmId()));
+        }
+        return new Ranked(entries, likes);
+    }
+
+    static String fold(String title) {
+        String folded = foldPrefix(title);
+        int end = folded.length();
+        while (end > 0 && folded.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return folded.substring(0, end);
+    }
+
+    /**
+     * Нижний регистр, «ё» как «е», пробелы в начале отбрасываются, подряд идущие - схлопываются.
+     * Пробел в конце сохраняется: префикс «ад » находит «Ад на земле», но не «Адмирал».
+     */
+    private static String foldPrefix(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder folded = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (!folded.isEmpty() && folded.charAt(folded.length() - 1) != ' ') {
+                    folded.append(' ');
+                }
+            } else {
+                char lower = Character.toLowerCase(c);
+                folded.append(lower == 'ё' ? 'е' : lower);
+            }
+        }
+        return folded.toString();
+    }
+
+    private record Entry(String key, int filmId) {
+    }
+
+    /**
+     * Ключи по возрастанию, id фильмов и лайки на тех же позициях, позиция по id фильма и дерево
+     * отрезков: лист {@code leaves + i} - позиция i, внутренний узел - лучшая позиция своих детей,
+     * -1 - пусто. Погашенная позиция (фильм переименован) хранит {@value #REMOVED} лайков.
+     * Ключи и id не меняются, лайки и дерево меняются только под блокировкой индекса.
+     */
+    private static final class Ranked {
+        static final int REMOVED = -1;
+        static final Ranked EMPTY = new Ranked(List.of(), new int[0]);
+
+        private final String[] keys;
+        private final int[] ids;
+        private final int[] likes;
+        private final int[] positionById;
+        private final int[] tree;
+        private final int leaves;
+
+        Ranked(List<Entry> entries, int[] likes) {
+            int size = entries.size();
+            this.keys = new String[size];
+            this.ids = new int[size];
+            this.likes = likes;
+            int maxId = 0;
+            for (int i = 0; i < size; i++) {
+                keys[i] = entries.get(i).key();
+                ids[i] = entries.get(i).filmId();
+                maxId = Math.max(maxId, ids[i]);
+            }
+            this.positionById = new int[maxId + 1];
+            Arrays.fill(positionById, -1);
+            for (int i = 0; i < size; i++) {
+                positionById[ids[i]] = i;
+            }
+            this.leaves = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+            this.tree = new int[2 * leaves];
+            Arrays.fill(tree, -1);
+            for (int i = 0; i < size; i++) {
+                tree[leaves + i] = i;
+            }
+            for (int node = leaves - 1; node > 0; node--) {
+                tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+
+        void setLikes(int filmId, long filmLikes) {
+            int position = position(filmId);
+            if (position >= 0 && likes[position] != REMOVED) {
+                likes[position] = (int) Math.min(Integer.MAX_VALUE, filmLikes);
+                update(position);
+            }
+        }
+
+        void remove(int filmId) {
+            int position = position(filmId);
+            if (position >= 0) {
+                likes[position] = REMOVED;
+                update(position);
+            }
+        }
+
+        /**
+         * Кладёт в {@code top} лучшие фильмы позиций {@code [from, to)}. Кандидаты - отрезки со своей
+         * лучшей позицией; выбранный лучший отрезок делится на части слева и справа от неё.
+         */
+        void collect(int from, int to, Top top) {
+            int capacity = top.capacity() + 1;
+            int[] lows = new int[capacity];
+            int[] highs = new int[capacity];
+            int[] bests = new int[capacity];
+            int candidates = 0;
+            if (from < to) {
+                lows[0] = from;
+                highs[0] = to;
+                bests[0] = best(from, to);
+                candidates = 1;
+            }
+            while (!top.isFull()) {
+                int chosen = -1;
+                for (int i = 0; i < candidates; i++) {
+                    if (bests[i] >= 0 && (chosen < 0 || better(bests[i], bests[chosen]) == bests[i])) {
+                        chosen = i;
+                    }
+                }
+                if (chosen < 0 || likes[bests[chosen]] == REMOVED) {
+                    return;
+                }
+                int position = bests[chosen];
+                top.offer(ids[position], likes[position]);
+                lows[candidates] = position + 1;
+                highs[candidates] = highs[chosen];
+                bests[candidates] = best(position + 1, highs[chosen]);
+                candidates++;
+                highs[chosen] = position;
+                bests[chosen] = best(lows[chosen], position);
+            }
+        }
+
+        /**
+         * Первая позиция, ключ на которой не меньше {@code prefix}.
+         */
+        int lowerBound(String prefix) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle].compareTo(prefix) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Первая позиция не раньше {@code from}, ключ на которой уже не начинается с {@code prefix}.
+         */
+        int upperBound(String prefix, int from) {
+            int low = from;
+            int high = keys.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle].startsWith(prefix)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private int position(int filmId) {
+            return filmId < positionById.length ? positionById[filmId] : -1;
+        }
+
+        private void update(int position) {
+            for (int node = (leaves + position) >> 1; node > 0; node >>= 1) {
+                tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+
+        private int best(int from, int to) {
+            int result = -1;
+            for (int low = from + leaves, high = to + leaves; low < high; low >>= 1, high >>= 1) {
+                if ((low & 1) == 1) {
+                    result = better(result, tree[low++]);
+                }
+                if ((high & 1) == 1) {
+                    result = better(result, tree[--high]);
+                }
+            }
+            return result;
+        }
+
+        private int better(int a, int b) {
+            if (a < 0 || b < 0) {
+                return a < 0 ? b : a;
+            }
+            if (likes[a] != likes[b]) {
+                return likes[a] > likes[b] ? a : b;
+            }
+            return ids[a] < ids[b] ? a : b;
+        }
+    }
+
+    /**
+     * Лучшие {@code limit} фильмов по лайкам в массивах фиксированного размера, вставкой.
+     */
+    private static final class Top {
+        private final long[] filmIds;
+        private final long[] likes;
+        private int count;
+
+        Top(int limit) {
+            filmIds = new long[limit];
+            likes = new long[limit];
+        }
+
+        int capacity() {
+            return filmIds.length;
+        }
+
+        boolean isFull() {
+            return count == filmIds.length;
+        }
+
+        void offer(long filmId, long filmLikes) {
+            for (int i = 0; i < count; i++) {
+                if (filmIds[i] == filmId) {
+                    return;
+                }
+            }
+            int position = count;
+            while (position > 0 && better(filmId, filmLikes, filmIds[position - 1], likes[position - 1])) {
+                position--;
+            }
+            if (position >= filmIds.length) {
+                return;
+            }
+            int last = Math.min(count, filmIds.length - 1);
+            System.arraycopy(filmIds, position, filmIds, position + 1, last - position);
+            System.arraycopy(likes, position, likes, position + 1, last - position);
+            filmIds[position] = filmId;
+            likes[position] = filmLikes;
+            count = Math.min(count + 1, filmIds.length);
+        }
+
+        List<Long> ids() {
+            List<Long> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(filmIds[i]);
+            }
+            return result;
+        }
+
+        private static boolean better(long filmId, long filmLikes, long otherId, long otherLikes) {
+            return filmLikes > otherLikes || filmLikes == otherLikes && filmId < otherId;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Записывает, сколько SQL-запросов выполнил и сколько строк прочитал каждый HTTP-запрос:
+ * распределения {@code filmorate.request.sql.statements} и {@code filmorate.request.sql.rows}
+ * с тегами {@code method} и {@code uri} (шаблон пути, как у {@code http.server.requests}),
+ * и проверяет запрос на повторы одного SQL в {@link SqlStatsCollector}.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.metrics.sql.enabled", havingValue = "true", matchIfMissing = true)
+public class RequestMetricsFilter extends OncePerRequestFilter {
+    private final MeterRegistry meterRegistry;
+    private final SqlStatsCollector collector;
+
+    public RequestMetricsFilter(MeterRegistry meterRegistry, SqlStatsCollector collector) {
+        this.meterRegistry = meterRegistry;
+        this.collector = collector;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestSqlStats.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestSqlStats stats = RequestSqlStats.end();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+            summary("filmorate.request.sql.statements", "SQL-запросы на один HTTP-запрос", 1_000,
+                    request, uri).record(stats.statements());
+            summary("filmorate.request.sql.rows", "Строки из базы на один HTTP-запрос", 1_000_000,
+                    request, uri).record(stats.rows());
+            collector.finishRequest(request.getMethod(), uri, stats);
+        }
+    }
+
+    private DistributionSummary summary(String name, String description, double maxExpected,
+                                        HttpServletRequest request, String uri) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(maxExpected)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Счётчики SQL текущего HTTP-запроса. Привязаны к потоку, который обрабатывает запрос:
+ * {@link RequestMetricsFilter} открывает их в начале запроса и забирает в конце,
+ * а {@link SqlMetrics} увеличивает. Запросы к базе вне HTTP-запроса (фоновые задачи, загрузка
+ * индексов при старте) сюда не попадают, только в общие счётчики.
+ */
+public final class RequestSqlStats {
+    private static final ThreadLocal<RequestSqlStats> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Integer> executionsByFingerprint = new HashMap<>();
+    private long statements;
+    private long rows;
+
+    private RequestSqlStats() {
+    }
+
+    static void begin() {
+        CURRENT.set(new RequestSqlStats());
+    }
+
+    static RequestSqlStats end() {
+        RequestSqlStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    /**
+     * @return счётчики текущего запроса или {@code null}, если поток не обрабатывает HTTP-запрос
+     */
+    static RequestSqlStats current() {
+        return CURRENT.get();
+    }
+
+    void addStatement(String fingerprint) {
+        statements++;
+        executionsByFingerprint.merge(fingerprint, 1, Integer::sum);
+    }
+
+    void addRows(long count) {
+        rows += count;
+    }
+
+    public long statements() {
+        return statements;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    Map<String, Integer> executionsByFingerprint() {
+        return executionsByFingerprint;
+    }
+}
@@ -0,0 +1,172 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Оборачивает DataSource и считает выполненные SQL-запросы ({@code filmorate.sql.statements})
+ * и прочитанные строки результатов ({@code filmorate.sql.rows}), а также ведёт те же счётчики
+ * для текущего HTTP-запроса в {@link RequestSqlStats}. Пакетное выполнение считается одним запросом.
+ * Время и строки каждого выполнения по отпечатку запроса уходят в {@link SqlStatsCollector}.
+ * <p>
+ * Строки копятся в обёртке ResultSet и переносятся в счётчики один раз при его закрытии,
+ * так что на каждую строку приходится только вызов через прокси без атомарных операций.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.metrics.sql.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlMetrics implements BeanPostProcessor {
+    private static final String UNKNOWN_SQL = "<неизвестный запрос>";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final SqlStatsCollector collector;
+    private volatile Counter statements;
+    private volatile Counter rows;
+
+    // MeterRegistry берётся лениво: постпроцессор создаётся раньше, чем реестр метрик
+    public SqlMetrics(ObjectProvider<MeterRegistry> meterRegistry, SqlStatsCollector collector) {
+        this.meterRegistry = meterRegistry;
+        this.collector = collector;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource)) {
+            return bean;
+        }
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(dataSource, method, args);
+                    return result instanceof Connection connection ? connection(connection) : result;
+                });
+    }
+
+    private Connection connection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (!(result instanceof Statement statement)) {
+                        return result;
+                    }
+                    String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                    return statement(statement, sql == null ? null : SqlFingerprint.of(sql));
+                });
+    }
+
+    /**
+     * @param preparedFingerprint отпечаток подготовленного запроса; для простого Statement
+     *                            {@code null}, текст тогда берётся из аргумента execute
+     */
+    private Statement statement(Statement statement, String preparedFingerprint) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        String[] lastFingerprint = {preparedFingerprint == null ? UNKNOWN_SQL : preparedFingerprint};
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    Object result;
+                    if (name.startsWith("execute")) {
+                        if (preparedFingerprint == null) {
+                            lastFingerprint[0] = args != null && args.length > 0 && args[0] instanceof String sql
+                                    ? SqlFingerprint.of(sql) : UNKNOWN_SQL;
+                        }
+                        String fingerprint = lastFingerprint[0];
+                        countStatement(fingerprint);
+                        long startedAt = System.nanoTime();
+                        try {
+                            result = invoke(statement, method, args);
+                        } finally {
+                            collector.recordExecution(fingerprint, System.nanoTime() - startedAt);
+                        }
+                    } else {
+                        result = invoke(statement, method, args);
+                    }
+                    if (result instanceof ResultSet resultSet
+                            && (name.equals("executeQuery") || name.equals("getResultSet"))) {
+                        return resultSet(resultSet, lastFingerprint[0]);
+                    }
+                    return result;
+                });
+    }
+
+    private ResultSet resultSet(ResultSet resultSet, String fingerprint) {
+        long[] read = new long[1];
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("next")) {
+                        Object hasRow = invoke(resultSet, method, args);
+                        if ((Boolean) hasRow) {
+                            read[0]++;
+                        }
+                        return hasRow;
+                    }
+                    if (name.equals("close") && read[0] > 0) {
+                        countRows(fingerprint, read[0]);
+                        read[0] = 0;
+                    }
+                    return invoke(resultSet, method, args);
+                });
+    }
+
+    private void countStatement(String fingerprint) {
+        statementsCounter().increment();
+        RequestSqlStats stats = RequestSqlStats.current();
+        if (stats != null) {
+            stats.addStatement(fingerprint);
+        }
+    }
+
+    private void countRows(String fingerprint, long count) {
+        rowsCounter().increment(count);
+        collector.recordRows(fingerprint, count);
+        RequestSqlStats stats = RequestSqlStats.current();
+        if (stats != null) {
+            stats.addRows(count);
+        }
+    }
+
+    private Counter statementsCounter() {
+        Counter counter = statements;
+        if (counter == null) {
+            counter = Counter.builder("filmorate.sql.statements")
+                    .description("Выполненные SQL-запросы")
+                    .register(meterRegistry.getObject());
+            statements = counter;
+        }
+        return counter;
+    }
+
+    private Counter rowsCounter() {
+        Counter counter = rows;
+        if (counter == null) {
+            counter = Counter.builder("filmorate.sql.rows")
+                    .description("Строки, прочитанные из результатов SQL-запросов")
+                    .register(meterRegistry.getObject());
+            rows = counter;
+        }
+        return counter;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Статистика SQL по отпечаткам запросов ({@link SqlFingerprint}): число выполнений, время, строки,
+ * медленные выполнения и HTTP-запросы, где отпечаток повторился больше порога (признак N+1).
+ * Медленные запросы и N+1 ещё и пишутся в лог. Отдаётся через actuator-эндпоинт {@code sqlstats}.
+ */
+@Slf4j
+@Component
+public class SqlStatsCollector {
+    static final String OTHER = "<прочие>";
+    private static final int MAX_FINGERPRINTS = 1_000;
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final long slowQueryNanos;
+    private final int repeatThreshold;
+
+    public SqlStatsCollector(@Value("${filmorate.sql.slow-query-ms:200}") long slowQueryMs,
+                             @Value("${filmorate.sql.n-plus-one-threshold:10}") int repeatThreshold) {
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMs);
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    void recordExecution(String fingerprint, long nanos) {
+        Stats entry = stats(fingerprint);
+        entry.executions.increment();
+        entry.totalNanos.add(nanos);
+        entry.maxNanos.accumulate(nanos);
+        if (nanos >= slowQueryNanos) {
+            entry.slow.increment();
+            log.warn("Медленный SQL-запрос: {} мс: {}", TimeUnit.NANOSECONDS.toMillis(nanos), fingerprint);
+        }
+    }
+
+    void recordRows(String fingerprint, long rows) {
+        stats(fingerprint).rows.add(rows);
+    }
+
+    /**
+     * Проверяет завершившийся HTTP-запрос на повторы одного отпечатка больше порога.
+     *
+     * @return отпечатки, повторившиеся больше порога
+     */
+    List<String> finishRequest(String method, String uri, RequestSqlStats request) {
+        List<String> repeated = new ArrayList<>();
+        request.executionsByFingerprint().forEach((fingerprint, count) -> {
+            if (count > repeatThreshold) {
+                repeated.add(fingerprint);
+                stats(fingerprint).repeatedRequests.increment();
+                log.warn("Возможен N+1: {} {} выполнил {} раз запрос: {}", method, uri, count, fingerprint);
+            }
+        });
+        return repeated;
+    }
+
+    /**
+     * Отпечатки с наибольшим значением выбранной характеристики.
+     */
+    public List<FingerprintStats> top(Order order, int limit) {
+        return stats.entrySet().stream()
+                .map(entry -> entry.getValue().snapshot(entry.getKey()))
+                .sorted(order.comparator)
+                .limit(limit)
+                .toList();
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    private Stats stats(String fingerprint) {
+        Stats entry = stats.get(fingerprint);
+        if (entry != null) {
+            return entry;
+        }
+        // отпечатки из кода конечны, но страхуемся от запросов, собранных из данных
+        String key = stats.size() < MAX_FINGERPRINTS ? fingerprint : OTHER;
+        return stats.computeIfAbsent(key, k -> new Stats());
+    }
+
+    public enum Order {
+        TOTAL_TIME(Comparator.comparingDouble(FingerprintStats::totalMs)),
+        MAX_TIME(Comparator.comparingDouble(FingerprintStats::maxMs)),
+        EXECUTIONS(Comparator.comparingLong(FingerprintStats::executions)),
+        ROWS(Comparator.comparingLong(FingerprintStats::rows)),
+        SLOW(Comparator.comparingLong(FingerprintStats::slow)),
+        N_PLUS_ONE(Comparator.comparingLong(FingerprintStats::repeatedRequests));
+
+        private final Comparator<FingerprintStats> comparator;
+
+        Order(Comparator<FingerprintStats> comparator) {
+            this.comparator = comparator.reversed();
+        }
+    }
+
+    /**
+     * Снимок статистики отпечатка; {@code repeatedRequests} - HTTP-запросы, где он повторился больше порога.
+     */
+    public record FingerprintStats(String sql, long executions, double totalMs, double maxMs, long rows,
+                                   long slow, long repeatedRequests) {
+    }
+
+    private static class Stats {
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+        private final LongAdder repeatedRequests = new LongAdder();
+
+        FingerprintStats snapshot(String sql) {
+            return new FingerprintStats(sql, executions.sum(), totalNanos.sum() / 1e6, maxNanos.get() / 1e6,
+                    rows.sum(), slow.sum(), repeatedRequests.sum());
+        }
+    }
+}
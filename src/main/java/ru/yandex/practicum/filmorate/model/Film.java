@@ -7,6 +7,7 @@ import lombok.Data;
 
 import java.time.LocalDate;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -25,4 +26,26 @@ public class Film {
     private Set<Long> likes = new HashSet<>();
     private Set<Genre> genres = new HashSet<>();
     private Mpa mpa;
+
+    /**
+     * Независимая копия: изменение копии, её жанров или MPA не затрагивает оригинал.
+     */
+    public Film copy() {
+        Film copy = new Film();
+        copy.setId(id);
+        copy.setName(name);
+        copy.setDescription(description);
+        copy.setReleaseDate(releaseDate);
+        copy.setDuration(duration);
+        copy.setLikes(likes == null ? null : new HashSet<>(likes));
+        if (genres != null) {
+            Set<Genre> genresCopy = new LinkedHashSet<>();
+            genres.forEach(genre -> genresCopy.add(genre.copy()));
+            copy.setGenres(genresCopy);
+        } else {
+            copy.setGenres(null);
+        }
+        copy.setMpa(mpa == null ? null : mpa.copy());
+        return copy;
+    }
 }
@@ -10,4 +10,11 @@ public class Genre {
     @NotNull
     @NotBlank
     private String name;
+
+    public Genre copy() {
+        Genre copy = new Genre();
+        copy.setId(id);
+        copy.setName(name);
+        return copy;
+    }
 }
\ No newline at end of file
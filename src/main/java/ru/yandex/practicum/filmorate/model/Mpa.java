@@ -6,4 +6,11 @@ import lombok.Data;
 public class Mpa {
     private Long id;
     private String name;
+
+    public Mpa copy() {
+        Mpa copy = new Mpa();
+        copy.setId(id);
+        copy.setName(name);
+        return copy;
+    }
 }
\ No newline at end of file
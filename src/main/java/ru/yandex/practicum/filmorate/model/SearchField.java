@@ -0,0 +1,8 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * Поле фильма, по которому ищет полнотекстовый поиск.
+ */
+public enum SearchField {
+    TITLE, DESCRIPTION
+}
@@ -0,0 +1,8 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * Порядок результатов полнотекстового поиска: по релевантности или по числу лайков.
+ */
+public enum SearchRanking {
+    RELEVANCE, LIKES
+}
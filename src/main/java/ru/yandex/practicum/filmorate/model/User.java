@@ -30,4 +30,19 @@ public class User {
         PENDING,
         CONFIRMED
     }
+
+    /**
+     * Независимая копия: изменение копии и её списков друзей не затрагивает оригинал.
+     */
+    public User copy() {
+        User copy = new User();
+        copy.setId(id);
+        copy.setEmail(email);
+        copy.setLogin(login);
+        copy.setName(name);
+        copy.setBirthday(birthday);
+        copy.setFriendIds(friendIds == null ? null : new HashSet<>(friendIds));
+        copy.setFriendIdsWithStatus(friendIdsWithStatus == null ? null : new HashMap<>(friendIdsWithStatus));
+        return copy;
+    }
 }
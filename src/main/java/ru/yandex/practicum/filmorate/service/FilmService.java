@@ -1,25 +1,43 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.SearchField;
+import ru.yandex.practicum.filmorate.model.SearchRanking;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 public class FilmService {
-    @Autowired
-    @Qualifier("filmDbStorage")
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BATCH_SIZE = 10000;
+    public static final int MAX_AUTOCOMPLETE_SIZE = 50;
+
     private final FilmStorage storageFilm;
 
     public Collection<Film> findAll() {
         return storageFilm.findAll();
     }
 
+    public Collection<Film> findPage(Long after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return storageFilm.findPage(after == null ? 0 : after, limit);
+    }
+
+    public void exportAll(Consumer<Film> action) {
+        storageFilm.exportAll(action);
+    }
+
     public Film findById(Long id) {
         return storageFilm.findById(id);
     }
@@ -28,6 +46,13 @@ public class FilmService {
         return storageFilm.create(film);
     }
 
+    public List<Film> createAll(List<Film> films) {
+        if (films.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("За один запрос можно создать не больше " + MAX_BATCH_SIZE + " фильмов");
+        }
+        return storageFilm.createAll(films);
+    }
+
     public Film update(Film newFilm) {
         return storageFilm.update(newFilm);
     }
@@ -40,7 +65,45 @@ public class FilmService {
         return storageFilm.deleteLike(filmId, userId);
     }
 
-    public Collection<Film> popularFilms(int count) {
-        return storageFilm.popularFilms(count);
+    public Collection<Film> popularFilms(int count, Long genreId, Integer year) {
+        return storageFilm.popularFilms(count, genreId, year);
+    }
+
+    /**
+     * @param by     поля через запятую: title и/или description
+     * @param sortBy relevance или likes
+     */
+    public Collection<Film> search(String query, String by, String sortBy, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Количество результатов поиска должно быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        Set<SearchField> fields = EnumSet.noneOf(SearchField.class);
+        for (String field : by.split(",")) {
+            switch (field.trim().toLowerCase()) {
+                case "title" -> fields.add(SearchField.TITLE);
+                case "description" -> fields.add(SearchField.DESCRIPTION);
+                default -> throw new ValidationException("Искать можно только по title и description");
+            }
+        }
+        SearchRanking ranking = switch (sortBy.trim().toLowerCase()) {
+            case "relevance" -> SearchRanking.RELEVANCE;
+            case "likes" -> SearchRanking.LIKES;
+            default -> throw new ValidationException("Сортировать результаты поиска можно по relevance или likes");
+        };
+        return storageFilm.search(query, fields, ranking, limit);
+    }
+
+    public Collection<Film> autocomplete(String prefix, int limit) {
+        if (limit < 1 || limit > MAX_AUTOCOMPLETE_SIZE) {
+            throw new ValidationException("Количество подсказок должно быть от 1 до " + MAX_AUTOCOMPLETE_SIZE);
+        }
+        return storageFilm.autocomplete(prefix, limit);
+    }
+
+    public Collection<Film> findRecommendations(Long userId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return storageFilm.findRecommendations(userId, limit);
     }
 }
\ No newline at end of file
@@ -2,26 +2,39 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserService {
-    @Autowired
-    @Qualifier("userDbStorage")
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BATCH_SIZE = 10000;
+
     private final UserStorage storage;
 
     public Collection<User> findAll() {
         return storage.findAll();
     }
 
+    public Collection<User> findPage(Long after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return storage.findPage(after == null ? 0 : after, limit);
+    }
+
+    public void exportAll(Consumer<User> action) {
+        storage.exportAll(action);
+    }
+
     public User findById(Long id) {
         return storage.findById(id);
     }
@@ -30,6 +43,14 @@ public class UserService {
         return storage.create(user);
     }
 
+    public List<User> createAll(List<User> users) {
+        if (users.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("За один запрос можно создать не больше " + MAX_BATCH_SIZE
+                    + " пользователей");
+        }
+        return storage.createAll(users);
+    }
+
     public User update(User newUser) {
         return storage.update(newUser);
     }
@@ -50,4 +71,11 @@ public class UserService {
         return storage.findCommonFriends(userId, otherId);
     }
 
+    public Collection<User> findFriendSuggestions(Long userId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return storage.findFriendSuggestions(userId, limit);
+    }
+
 }
\ No newline at end of file
@@ -1,20 +1,60 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.SearchField;
+import ru.yandex.practicum.filmorate.model.SearchRanking;
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Collection<Film> findAll();
 
+    /**
+     * Страница фильмов с id больше {@code after} в порядке возрастания id.
+     */
+    Collection<Film> findPage(long after, int limit);
+
+    /**
+     * Передаёт все фильмы по одному, не собирая их в коллекцию.
+     */
+    void exportAll(Consumer<Film> action);
+
     Film findById(Long id);
 
     Film create(Film film);
 
+    /**
+     * Создаёт фильмы пакетом и возвращает их с присвоенными id.
+     */
+    List<Film> createAll(List<Film> films);
+
     Film update(Film newFilm);
 
     Film addLike(Long filmId, Long userId);
 
     Film deleteLike(Long filmId, Long userId);
 
-    Collection<Film> popularFilms(int count);
+    /**
+     * Самые популярные фильмы; {@code genreId} и {@code year} ограничивают рейтинг жанром и годом
+     * выпуска, {@code null} - без ограничения.
+     */
+    Collection<Film> popularFilms(int count, Long genreId, Integer year);
+
+    /**
+     * Полнотекстовый поиск по выбранным полям: найдены фильмы, где есть все слова запроса.
+     */
+    Collection<Film> search(String query, Set<SearchField> fields, SearchRanking ranking,
+                            int limit);
+
+    /**
+     * Фильмы, название которых начинается с {@code prefix}, популярные первыми.
+     */
+    Collection<Film> autocomplete(String prefix, int limit);
+
+    /**
+     * Фильмы, которые лайкнули пользователи с похожими вкусами, а сам пользователь ещё нет.
+     */
+    Collection<Film> findRecommendations(Long userId, int limit);
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.dao.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+
+/**
+ * Проверки фильмов и пользователей, общие для всех реализаций хранилищ,
+ * чтобы база и память отклоняли одни и те же данные с одними и теми же сообщениями.
+ */
+@Slf4j
+public final class StorageValidator {
+
+    private StorageValidator() {
+    }
+
+    public static void validateFilm(Film film) {
+        if (film.getDescription().length() > 200) {
+            log.warn("Описание фильма: {}", film.getDescription());
+            throw new ValidationException("Максимальная длина описания - 200 символов");
+        }
+        if (film.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28))) {
+            log.warn("Дата релиза: {}", film.getReleaseDate());
+            throw new ValidationException("Дата релиза должна быть не раньше 28 декабря 1895 года");
+        }
+    }
+
+    /**
+     * Проверяет, что MPA и жанры фильма есть в справочниках.
+     */
+    public static void validateReferences(Film film, ReferenceDataRegistry registry) {
+        if (film.getMpa() != null && film.getMpa().getId() != null
+                && registry.mpa(film.getMpa().getId()) == null) {
+            throw new NotFoundException("Указанный MPA рейтинг не найден");
+        }
+        if (film.getGenres() != null && film.getGenres().stream()
+                .anyMatch(genre -> genre.getId() == null || registry.genre(genre.getId()) == null)) {
+            throw new NotFoundException("Указанный жанр не найден");
+        }
+    }
+
+    public static void validateUser(User user) {
+        if (!user.getEmail().contains("@")) {
+            log.warn("Email пользователя: {}", user.getEmail());
+            throw new ValidationException("Электронная почта не может быть пустой и должна содержать символ @");
+        }
+        if (user.getLogin().contains(" ")) {
+            log.warn("Логин пользователя: {}", user.getLogin());
+            throw new ValidationException("Логин не может быть пустым и содержать пробелы");
+        }
+        if (user.getBirthday().isAfter(LocalDate.now())) {
+            log.warn("Дата рождения пользователя: {}", user.getBirthday());
+            throw new ValidationException("Дата рождения не может быть в будущем");
+        }
+        log.info("Валидация прошла успешно");
+    }
+}
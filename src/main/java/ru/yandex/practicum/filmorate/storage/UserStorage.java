@@ -3,14 +3,31 @@ package ru.yandex.practicum.filmorate.storage;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     Collection<User> findAll();
 
+    /**
+     * Страница пользователей с id больше {@code after} в порядке возрастания id.
+     */
+    Collection<User> findPage(long after, int limit);
+
+    /**
+     * Передаёт всех пользователей по одному, не собирая их в коллекцию.
+     */
+    void exportAll(Consumer<User> action);
+
     User findById(Long id);
 
     User create(User user);
 
+    /**
+     * Создаёт пользователей пакетом и возвращает их с присвоенными id.
+     */
+    List<User> createAll(List<User> users);
+
     User update(User newUser);
 
     Collection<User> addFriend(Long userId, Long friendId);
@@ -20,4 +37,9 @@ public interface UserStorage {
     Collection<User> findFriends(Long userId);
 
     Collection<User> findCommonFriends(Long userId, Long otherId);
+
+    /**
+     * Друзья друзей пользователя, которых нет у него в друзьях, по убыванию числа общих друзей.
+     */
+    Collection<User> findFriendSuggestions(Long userId, int limit);
 }
\ No newline at end of file
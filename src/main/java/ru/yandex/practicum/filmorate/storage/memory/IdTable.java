@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Сущности по целочисленному id: ячейка массива с номером id, без хэширования и упаковки ключей.
+ * Id выдаются подряд, поэтому массив почти плотный.
+ * <p>
+ * Чтение - одно volatile-чтение ссылки на массив и одно volatile-чтение ячейки, без блокировок.
+ * Записи идут под блокировкой: при росте массив копируется, и запись в старую копию,
+ * сделанная параллельно с копированием, иначе потерялась бы. Хранимые значения не изменяются,
+ * а наружу {@link #get}, {@link #page} и {@link #forEach} отдают их копии: модели изменяемы,
+ * и правка отданного объекта иначе поменяла бы данные хранилища в обход журнала и индексов.
+ */
+final class IdTable<T> {
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final UnaryOperator<T> copy;
+    private volatile AtomicReferenceArray<T> rows = new AtomicReferenceArray<>(16);
+    private volatile int maxId;
+    private volatile int size;
+
+    IdTable(UnaryOperator<T> copy) {
+        this.copy = copy;
+    }
+
+    /**
+     * @return значение или {@code null}, если id нет
+     */
+    T get(long id) {
+        AtomicReferenceArray<T> current = rows;
+        T value = id > 0 && id < current.length() ? current.get((int) id) : null;
+        return value == null ? null : copy.apply(value);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int maxId() {
+        return maxId;
+    }
+
+    /**
+     * Кладёт значения с id, которые выдал {@code idOf}, по одному под общей блокировкой.
+     */
+    void putAll(Collection<T> values, ToIntFunction<T> idOf) {
+        writeLock.lock();
+        try {
+            for (T value : values) {
+                put(idOf.applyAsInt(value), value);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Id, который получит следующая новая запись. Между этим вызовом и {@link #set(int, Object)}
+     * вызывающий код сам не пускает другие вставки.
+     */
+    int nextId() {
+        return maxId + 1;
+    }
+
+    /**
+     * Кладёт значение под id, заменяя прежнее.
+     */
+    void set(int id, T value) {
+        writeLock.lock();
+        try {
+            put(id, value);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void clear() {
+        writeLock.lock();
+        try {
+            rows = new AtomicReferenceArray<>(16);
+            maxId = 0;
+            size = 0;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Значения с id больше {@code after} по возрастанию id, не больше {@code limit}.
+     */
+    List<T> page(long after, int limit) {
+        AtomicReferenceArray<T> current = rows;
+        List<T> page = new ArrayList<>(Math.min(limit, 1024));
+        int last = Math.min(maxId, current.length() - 1);
+        for (long id = Math.max(after, 0) + 1; id <= last && page.size() < limit; id++) {
+            T value = current.get((int) id);
+            if (value != null) {
+                page.add(copy.apply(value));
+            }
+        }
+        return page;
+    }
+
+    void forEach(Consumer<T> action) {
+        AtomicReferenceArray<T> current = rows;
+        int last = Math.min(maxId, current.length() - 1);
+        for (int id = 1; id <= last; id++) {
+            T value = current.get(id);
+            if (value != null) {
+                action.accept(copy.apply(value));
+            }
+        }
+    }
+
+    private void put(int id, T value) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("Некорректный id: " + id);
+        }
+        AtomicReferenceArray<T> current = rows;
+        if (id >= current.length()) {
+            AtomicReferenceArray<T> grown = new AtomicReferenceArray<>(Math.max(id + 1, current.length() * 2));
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            rows = grown;
+            current = grown;
+        }
+        if (current.getAndSet(id, value) == null) {
+            size++;
+        }
+        maxId = Math.max(maxId, id);
+    }
+}
@@ -0,0 +1,397 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+import ru.yandex.practicum.filmorate.event.FilmSavedEvent;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.index.FilmRecommendations;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.index.TitleAutocomplete;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.SearchField;
+import ru.yandex.practicum.filmorate.model.SearchRanking;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static ru.yandex.practicum.filmorate.storage.StorageValidator.validateFilm;
+import static ru.yandex.practicum.filmorate.storage.StorageValidator.validateReferences;
+
+/**
+ * Фильмы в памяти, без базы: включается {@code filmorate.storage.type=memory}.
+ * Фильм хранится неизменяемым снимком в {@link IdTable}, поэтому чтение по id - обращение к массиву
+ * без блокировок, а запись подменяет снимок целиком. Вызывающий код получает копии снимков.
+ * Лайки - множество пар (фильм, пользователь), упакованных в один long.
+ * Рейтинг, поиск, автодополнение и рекомендации - те же индексы и события, что у FilmDbStorage.
+ * На диск данные сохраняет {@link MemorySnapshots}, а каждое изменение до следующего снимка -
+ * {@link OperationLog}. Изменение и его запись в журнал идут под одной блокировкой, чтобы журнал
+ * повторял изменения одной сущности в том же порядке, причём сначала запись в журнал: если она
+ * не удалась, данные в памяти не меняются. Под той же блокировкой публикуется событие, так что
+ * индексы получают изменения в порядке записи. Сброса журнала на диск запись ждёт уже без
+ * блокировки: если сброс не удался, изменение остаётся применённым и проиндексированным, а
+ * вызывающий получает ошибку с неизвестным исходом записи.
+ */
+@Timed(value = "filmorate.storage", histogram = true)
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory")
+public class InMemoryFilmStorage implements FilmStorage {
+    private final IdTable<Film> films = new IdTable<>(Film::copy);
+    private final Set<Long> likes = ConcurrentHashMap.newKeySet();
+    private final AtomicLong modifications = new AtomicLong();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final FilmLeaderboard leaderboard;
+    private final LikeMatrix likeMatrix;
+    private final FilmRecommendations recommendations;
+    private final FilmSearchIndex searchIndex;
+    private final TitleAutocomplete autocomplete;
+    private final ReferenceDataRegistry registry;
+    private final UserStorage userStorage;
+    private final OperationLog operationLog;
+    private final ApplicationEventPublisher events;
+
+    public InMemoryFilmStorage(FilmLeaderboard leaderboard, LikeMatrix likeMatrix,
+                               FilmRecommendations recommendations, FilmSearchIndex searchIndex,
+                               TitleAutocomplete autocomplete, ReferenceDataRegistry registry,
+                               UserStorage userStorage, OperationLog operationLog,
+                               ApplicationEventPublisher events) {
+        this.leaderboard = leaderboard;
+        this.likeMatrix = likeMatrix;
+        this.recommendations = recommendations;
+        this.searchIndex = searchIndex;
+        this.autocomplete = autocomplete;
+        this.registry = registry;
+        this.userStorage = userStorage;
+        this.operationLog = operationLog;
+        this.events = events;
+    }
+
+    /**
+     * Заменяет содержимое хранилища фильмами и лайками {@code {userId, filmId}} и заново строит индексы.
+     */
+    public void restore(Collection<Film> restored, List<long[]> restoredLikes) {
+        films.clear();
+        likes.clear();
+        List<Film> snapshots = restored.stream()
+                .sorted(Comparator.comparing(Film::getId))
+                .map(film -> snapshot(film.getId().intValue(), film, resolveGenres(film.getGenres()),
+                        resolveMpa(film.getMpa())))
+                .toList();
+        films.putAll(snapshots, film -> film.getId().intValue());
+        restoredLikes.forEach(like -> likes.add(likeKey(like[1], like[0])));
+
+        Map<Long, Long> likesByFilm = new HashMap<>();
+        restoredLikes.forEach(like -> likesByFilm.merge(like[1], 1L, Long::sum));
+        Map<Long, Integer> yearByFilm = new HashMap<>();
+        Map<Long, Set<Long>> genresByFilm = new HashMap<>();
+        Map<Long, String> titlesByFilm = new HashMap<>();
+        searchIndex.clear();
+        for (Film film : snapshots) {
+            searchIndex.index(film.getId(), film.getName(), film.getDescription());
+            titlesByFilm.put(film.getId(), film.getName());
+            likesByFilm.putIfAbsent(film.getId(), 0L);
+            if (film.getReleaseDate() != null) {
+                yearByFilm.put(film.getId(), film.getReleaseDate().getYear());
+            }
+            Set<Long> genreIds = new HashSet<>();
+            film.getGenres().forEach(genre -> genreIds.add(genre.getId()));
+            genresByFilm.put(film.getId(), genreIds);
+        }
+        leaderboard.load(likesByFilm, yearByFilm, genresByFilm);
+        autocomplete.load(titlesByFilm);
+        likeMatrix.load(restoredLikes);
+        recommendations.invalidateAll();
+        modifications.incrementAndGet();
+        log.info("Фильмы восстановлены в памяти: {} фильмов, {} лайков", snapshots.size(), restoredLikes.size());
+    }
+
+    /**
+     * Все лайки парами {@code {userId, filmId}}.
+     */
+    public List<long[]> likes() {
+        List<long[]> pairs = new ArrayList<>(likes.size());
+        likes.forEach(key -> pairs.add(new long[]{key & 0xFFFFFFFFL, key >>> 32}));
+        return pairs;
+    }
+
+    /**
+     * Счётчик изменений: по нему {@link MemorySnapshots} понимает, что с прошлого снимка ничего не менялось.
+     */
+    public long modifications() {
+        return modifications.get();
+    }
+
+    /**
+     * Выполняет {@code action}, когда ни одно изменение хранилища не записано в журнал без
+     * применения в памяти, и не пускает новые изменения до его завершения.
+     */
+    <T> T withWritesPaused(Supplier<T> action) {
+        writeLock.lock();
+        try {
+            return action.get();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<Film> findAll() {
+        return films.page(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Collection<Film> findPage(long after, int limit) {
+        return films.page(after, limit);
+    }
+
+    @Override
+    public void exportAll(Consumer<Film> action) {
+        films.forEach(action);
+    }
+
+    @Override
+    public Film findById(Long id) {
+        Film film = films.get(id);
+        if (film == null) {
+            throw new NotFoundException("Фильм с id = " + id + " не найден");
+        }
+        return film;
+    }
+
+    @Override
+    public Film create(Film film) {
+        log.info("Валидация входящего запроса");
+        validateFilm(film);
+        validateReferences(film, registry);
+        insert(film);
+        log.info("Добавлен фильм с идентификатором: {}", film.getId());
+        return film;
+    }
+
+    /**
+     * Проверки те же, что у {@link #create(Film)}; при любой ошибке ничего не сохраняется,
+     * а в ответе перечислены номера и причины.
+     */
+    @Override
+    public List<Film> createAll(List<Film> batch) {
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Film film = batch.get(i);
+            try {
+                validateFilm(film);
+                validateReferences(film, registry);
+            } catch (ValidationException | NotFoundException e) {
+                errors.add("Фильм #" + i + ": " + e.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            log.warn("Пакет фильмов не прошёл проверку: {}", errors);
+            throw new ValidationException(String.join("; ", errors));
+        }
+        batch.forEach(this::insert);
+        log.info("Пакетно добавлено фильмов: {}", batch.size());
+        return batch;
+    }
+
+    /**
+     * Как и в базе, MPA фильма при обновлении не меняется, а пустой список жанров оставляет прежние.
+     */
+    @Override
+    public Film update(Film newFilm) {
+        if (newFilm.getId() == null) {
+            throw new ValidationException("Id должен быть указан");
+        }
+        log.info("Валидация входящего запроса");
+        validateFilm(newFilm);
+        boolean replaceGenres = newFilm.getGenres() != null && !newFilm.getGenres().isEmpty();
+        Set<Genre> genres = replaceGenres ? resolveGenres(newFilm.getGenres()) : null;
+        long position;
+        writeLock.lock();
+        try {
+            Film current = films.get(newFilm.getId());
+            if (current == null) {
+                throw new NotFoundException("Фильм с id = " + newFilm.getId() + " не найден");
+            }
+            Film updated = snapshot(current.getId().intValue(), newFilm,
+                    replaceGenres ? genres : current.getGenres(), current.getMpa());
+            position = operationLog.appendFilm(updated);
+            films.set(current.getId().intValue(), updated);
+            applied(new FilmSavedEvent(newFilm, false));
+        } finally {
+            writeLock.unlock();
+        }
+        operationLog.await(position);
+        log.info("Фильма успешно обновлен");
+        return newFilm;
+    }
+
+    @Override
+    public Film addLike(Long filmId, Long userId) {
+        Film film = findById(filmId);
+        userStorage.findById(userId);
+        changeLike(filmId, userId, true);
+        return film;
+    }
+
+    @Override
+    public Film deleteLike(Long filmId, Long userId) {
+        Film film = findById(filmId);
+        changeLike(filmId, userId, false);
+        return film;
+    }
+
+    @Override
+    public Collection<Film> popularFilms(int count, Long genreId, Integer year) {
+        return findByIds(leaderboard.top(count, genreId, year));
+    }
+
+    @Override
+    public Collection<Film> search(String query, Set<SearchField> fields, SearchRanking ranking,
+                                   int limit) {
+        return findByIds(searchIndex.search(query, fields, ranking, limit));
+    }
+
+    @Override
+    public Collection<Film> autocomplete(String prefix, int limit) {
+        return findByIds(autocomplete.complete(prefix, limit));
+    }
+
+    @Override
+    public Collection<Film> findRecommendations(Long userId, int limit) {
+        userStorage.findById(userId);
+        return findByIds(Arrays.stream(recommendations.recommend(userId, limit))
+                .mapToObj(Long::valueOf)
+                .toList());
+    }
+
+    private List<Film> findByIds(List<Long> ids) {
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Ставит или снимает лайк; если он уже в этом состоянии, ничего не пишет и не публикует.
+     */
+    private void changeLike(long filmId, long userId, boolean liked) {
+        long position;
+        writeLock.lock();
+        try {
+            long key = likeKey(filmId, userId);
+            if (likes.contains(key) == liked) {
+                return;
+            }
+            position = operationLog.appendLike(filmId, userId, liked);
+            if (liked) {
+                likes.add(key);
+            } else {
+                likes.remove(key);
+            }
+            applied(new FilmLikeEvent(filmId, userId, liked));
+        } finally {
+            writeLock.unlock();
+        }
+        operationLog.await(position);
+    }
+
+    private void insert(Film film) {
+        Set<Genre> genres = resolveGenres(film.getGenres());
+        Mpa mpa = resolveMpa(film.getMpa());
+        long position;
+        writeLock.lock();
+        try {
+            Film stored = snapshot(films.nextId(), film, genres, mpa);
+            position = operationLog.appendFilm(stored);
+            films.set(stored.getId().intValue(), stored);
+            film.setId(stored.getId());
+            applied(new FilmSavedEvent(film, true));
+        } finally {
+            writeLock.unlock();
+        }
+        operationLog.await(position);
+    }
+
+    /**
+     * Отмечает изменение для {@link MemorySnapshots} и публикует событие; вызывается под блокировкой записи.
+     */
+    private void applied(Object event) {
+        modifications.incrementAndGet();
+        events.publishEvent(event);
+    }
+
+    /**
+     * Неизменяемая копия фильма: жанры по возрастанию id, как их отдаёт база, с названиями из справочника.
+     */
+    private static Film snapshot(int id, Film film, Set<Genre> genres, Mpa mpa) {
+        Film snapshot = new Film();
+        snapshot.setId((long) id);
+        snapshot.setName(film.getName());
+        snapshot.setDescription(film.getDescription());
+        snapshot.setReleaseDate(film.getReleaseDate());
+        snapshot.setDuration(film.getDuration());
+        snapshot.setLikes(Set.of());
+        snapshot.setGenres(genres);
+        snapshot.setMpa(mpa);
+        return snapshot;
+    }
+
+    private Set<Genre> resolveGenres(Set<Genre> genres) {
+        if (genres == null || genres.isEmpty()) {
+            return Collections.emptySet();
+        }
+        List<Genre> resolved = new ArrayList<>(genres.size());
+        for (Genre genre : genres) {
+            Genre known = genre.getId() == null ? null : registry.genre(genre.getId());
+            if (known == null) {
+                throw new NotFoundException("Указанный жанр не найден");
+            }
+            resolved.add(known);
+        }
+        resolved.sort(Comparator.comparing(Genre::getId));
+        return Collections.unmodifiableSet(new LinkedHashSet<>(resolved));
+    }
+
+    private Mpa resolveMpa(Mpa mpa) {
+        if (mpa == null || mpa.getId() == null) {
+            return null;
+        }
+        Mpa resolved = registry.mpa(mpa.getId());
+        if (resolved == null) {
+            throw new NotFoundException("Указанный MPA рейтинг не найден");
+        }
+        return resolved;
+    }
+
+    private static long likeKey(long filmId, long userId) {
+        return filmId << 32 | userId;
+    }
+}
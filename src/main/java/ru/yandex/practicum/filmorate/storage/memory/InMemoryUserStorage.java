@@ -0,0 +1,303 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.FriendshipEvent;
+import ru.yandex.practicum.filmorate.event.UserSavedEvent;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.FriendSuggestions;
+import ru.yandex.practicum.filmorate.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static ru.yandex.practicum.filmorate.storage.StorageValidator.validateUser;
+
+/**
+ * Пользователи в памяти, без базы: включается {@code filmorate.storage.type=memory}.
+ * Пользователь хранится неизменяемым снимком в {@link IdTable}, наружу уходят его копии.
+ * Дружба - множество пар (пользователь, друг), упакованных в один long; списки друзей,
+ * общие друзья и рекомендации берутся из тех же индексов, что у UserDbStorage.
+ * Изменения пишутся в {@link OperationLog} под той же блокировкой, под которой применяются, и до
+ * применения: если запись в журнал не удалась, данные в памяти не меняются. События публикуются
+ * под той же блокировкой, а сброса журнала на диск запись ждёт после неё - как в {@link InMemoryFilmStorage}.
+ */
+@Timed(value = "filmorate.storage", histogram = true)
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory")
+public class InMemoryUserStorage implements UserStorage {
+    private final IdTable<User> users = new IdTable<>(User::copy);
+    private final Set<Long> friendships = ConcurrentHashMap.newKeySet();
+    private final AtomicLong modifications = new AtomicLong();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final FriendshipGraph friendshipGraph;
+    private final FriendSuggestions friendSuggestions;
+    private final OperationLog operationLog;
+    private final ApplicationEventPublisher events;
+
+    public InMemoryUserStorage(FriendshipGraph friendshipGraph, FriendSuggestions friendSuggestions,
+                               OperationLog operationLog, ApplicationEventPublisher events) {
+        this.friendshipGraph = friendshipGraph;
+        this.friendSuggestions = friendSuggestions;
+        this.operationLog = operationLog;
+        this.events = events;
+    }
+
+    /**
+     * Заменяет содержимое хранилища пользователями и дружбой {@code {userId, friendId}}.
+     */
+    public void restore(Collection<User> restored, List<long[]> restoredFriendships) {
+        users.clear();
+        friendships.clear();
+        users.putAll(restored.stream()
+                .sorted(Comparator.comparing(User::getId))
+                .map(user -> snapshot(user.getId().intValue(), user))
+                .toList(), user -> user.getId().intValue());
+        restoredFriendships.forEach(edge -> friendships.add(friendshipKey(edge[0], edge[1])));
+        friendshipGraph.load(restoredFriendships);
+        friendSuggestions.invalidateAll();
+        modifications.incrementAndGet();
+        log.info("Пользователи восстановлены в памяти: {} пользователей, {} связей дружбы",
+                restored.size(), restoredFriendships.size());
+    }
+
+    /**
+     * Вся дружба парами {@code {userId, friendId}}.
+     */
+    public List<long[]> friendships() {
+        List<long[]> pairs = new ArrayList<>(friendships.size());
+        friendships.forEach(key -> pairs.add(new long[]{key >>> 32, key & 0xFFFFFFFFL}));
+        return pairs;
+    }
+
+    public long modifications() {
+        return modifications.get();
+    }
+
+    /**
+     * Выполняет {@code action}, когда ни одно изменение хранилища не записано в журнал без
+     * применения в памяти, и не пускает новые изменения до его завершения.
+     */
+    <T> T withWritesPaused(Supplier<T> action) {
+        writeLock.lock();
+        try {
+            return action.get();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<User> findAll() {
+        return users.page(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Collection<User> findPage(long after, int limit) {
+        return users.page(after, limit);
+    }
+
+    @Override
+    public void exportAll(Consumer<User> action) {
+        users.forEach(action);
+    }
+
+    @Override
+    public User findById(Long id) {
+        User user = users.get(id);
+        if (user == null) {
+            throw new NotFoundException("Пользователь с id = " + id + " не найден");
+        }
+        return user;
+    }
+
+    @Override
+    public User create(User user) {
+        log.info("Валидация входящего запроса");
+        validateUser(user);
+        if (user.getName() == null || user.getName().isBlank()) {
+            log.info("Имя не заполнено, поэтому присваиваем ему значение логина: {}", user.getLogin());
+            user.setName(user.getLogin());
+        }
+        insert(user);
+        log.info("Создан пользователь с идентификатором: {}", user.getId());
+        return user;
+    }
+
+    @Override
+    public List<User> createAll(List<User> batch) {
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                validateUser(batch.get(i));
+            } catch (ValidationException e) {
+                errors.add("Пользователь #" + i + ": " + e.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            log.warn("Пакет пользователей не прошёл проверку: {}", errors);
+            throw new ValidationException(String.join("; ", errors));
+        }
+        batch.stream()
+                .filter(user -> user.getName() == null || user.getName().isBlank())
+                .forEach(user -> user.setName(user.getLogin()));
+        batch.forEach(this::insert);
+        log.info("Пакетно создано пользователей: {}", batch.size());
+        return batch;
+    }
+
+    @Override
+    public User update(User newUser) {
+        if (newUser.getId() == null) {
+            throw new ValidationException("Id должен быть указан");
+        }
+        log.info("Валидация входящего запроса");
+        validateUser(newUser);
+        long position;
+        writeLock.lock();
+        try {
+            User current = users.get(newUser.getId());
+            if (current == null) {
+                throw new NotFoundException("Пользователь с id = " + newUser.getId() + " не найден");
+            }
+            User updated = snapshot(current.getId().intValue(), newUser);
+            position = operationLog.appendUser(updated);
+            users.set(current.getId().intValue(), updated);
+            applied(new UserSavedEvent(newUser, false));
+        } finally {
+            writeLock.unlock();
+        }
+        operationLog.await(position);
+        return newUser;
+    }
+
+    @Override
+    public Collection<User> addFriend(Long userId, Long friendId) {
+        List<User> pair = findPair(userId, friendId);
+        changeFriendship(userId, friendId, true);
+        return pair;
+    }
+
+    @Override
+    public Collection<User> deleteFriend(Long userId, Long friendId) {
+        List<User> pair = findPair(userId, friendId);
+        changeFriendship(userId, friendId, false);
+        return pair;
+    }
+
+    @Override
+    public Collection<User> findFriends(Long userId) {
+        findById(userId);
+        return findByIds(friendshipGraph.friends(userId));
+    }
+
+    @Override
+    public Collection<User> findCommonFriends(Long userId, Long otherId) {
+        findPair(userId, otherId);
+        return findByIds(friendshipGraph.common(userId, otherId));
+    }
+
+    @Override
+    public Collection<User> findFriendSuggestions(Long userId, int limit) {
+        findById(userId);
+        return findByIds(friendSuggestions.suggest(userId, limit));
+    }
+
+    private List<User> findPair(Long userId, Long otherId) {
+        return List.of(findById(userId), findById(otherId));
+    }
+
+    private List<User> findByIds(int[] ids) {
+        List<User> found = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            User user = users.get(id);
+            if (user != null) {
+                found.add(user);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Добавляет или удаляет дружбу; если она уже в этом состоянии, ничего не пишет и не публикует.
+     */
+    private void changeFriendship(long userId, long friendId, boolean added) {
+        long position;
+        writeLock.lock();
+        try {
+            long key = friendshipKey(userId, friendId);
+            if (friendships.contains(key) == added) {
+                return;
+            }
+            position = operationLog.appendFriendship(userId, friendId, added);
+            if (added) {
+                friendships.add(key);
+            } else {
+                friendships.remove(key);
+            }
+            applied(new FriendshipEvent(userId, friendId, added));
+        } finally {
+            writeLock.unlock();
+        }
+        operationLog.await(position);
+    }
+
+    private void insert(User user) {
+        long position;
+        writeLock.lock();
+        try {
+            User stored = snapshot(users.nextId(), user);
+            position = operationLog.appendUser(stored);
+            users.set(stored.getId().intValue(), stored);
+            user.setId(stored.getId());
+            applied(new UserSavedEvent(user, true));
+        } finally {
+            writeLock.unlock();
+        }
+        operationLog.await(position);
+    }
+
+    /**
+     * Отмечает изменение для {@link MemorySnapshots} и публикует событие; вызывается под блокировкой записи.
+     */
+    private void applied(Object event) {
+        modifications.incrementAndGet();
+        events.publishEvent(event);
+    }
+
+    /**
+     * Неизменяемая копия пользователя. Друзья в представление пользователя не входят, как и в базе.
+     */
+    private static User snapshot(int id, User user) {
+        User snapshot = new User();
+        snapshot.setId((long) id);
+        snapshot.setEmail(user.getEmail());
+        snapshot.setLogin(user.getLogin());
+        snapshot.setName(user.getName());
+        snapshot.setBirthday(user.getBirthday());
+        snapshot.setFriendIds(Set.of());
+        snapshot.setFriendIdsWithStatus(Map.of());
+        return snapshot;
+    }
+
+    private static long friendshipKey(long userId, long friendId) {
+        return userId << 32 | friendId;
+    }
+}
@@ -0,0 +1,223 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Сохранение хранилищ в памяти на диск: при старте данные читаются из файла снимка, и на них
+ * накладываются операции из {@link OperationLog}, затем снимок перезаписывается раз в
+ * {@code snapshot-interval-ms}, если что-то изменилось, и ещё раз при остановке. Файл пишется во
+ * временный и переименовывается поверх старого, так что после сбоя на диске остаётся предыдущий
+ * целый снимок.
+ * <p>
+ * Перед выгрузкой журнал начинает новый сегмент, а после записи снимка старые сегменты удаляются.
+ * Новый сегмент начинается под блокировками записи обоих хранилищ, пока ни одна операция не записана
+ * в журнал без применения в памяти: всё, что было в старых сегментах, уже применено к данным и
+ * попадёт в снимок. Операции нового сегмента могут
+ * попасть в снимок частично; при восстановлении они повторяются, и так как каждая задаёт итоговое
+ * состояние сущности или пары, результат тот же.
+ * <p>
+ * Снимок делается без остановки записи. Лайки и дружба выгружаются раньше фильмов и
+ * пользователей: сущности не удаляются, поэтому каждая выгруженная связь ссылается на
+ * выгруженную сущность. Изменения, сделанные во время выгрузки, могут попасть в снимок
+ * частично и будут целиком в следующем.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory")
+public class MemorySnapshots {
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+    private final OperationLog operationLog;
+    private final ObjectMapper objectMapper;
+    private final Path path;
+    private final long intervalMs;
+
+    private final ReentrantLock saveLock = new ReentrantLock();
+    private long savedVersion = -1;
+    private ScheduledExecutorService executor;
+
+    public MemorySnapshots(InMemoryFilmStorage filmStorage, InMemoryUserStorage userStorage,
+                           OperationLog operationLog, ObjectMapper objectMapper,
+                           @Value("${filmorate.storage.memory.snapshot-path:./db/filmorate-memory.json}") String path,
+                           @Value("${filmorate.storage.memory.snapshot-interval-ms:60000}") long intervalMs) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.operationLog = operationLog;
+        this.objectMapper = objectMapper;
+        this.path = Path.of(path);
+        this.intervalMs = intervalMs;
+    }
+
+    @PostConstruct
+    void start() {
+        load();
+        executor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("memory-snapshots").daemon().factory());
+        executor.scheduleWithFixedDelay(this::saveQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        log.info("Снимок хранилищ в памяти: {}, интервал {} мс", path, intervalMs);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        save();
+        log.info("Снимок хранилищ в памяти сохранён при остановке");
+    }
+
+    /**
+     * Заменяет содержимое хранилищ данными из файла снимка (или пустыми, если файла нет) с
+     * наложенным журналом операций. Время восстановления зависит от длины журнала после
+     * последнего снимка, а не от всей истории.
+     */
+    public void load() {
+        Snapshot snapshot = new Snapshot(List.of(), List.of(), List.of(), List.of());
+        if (Files.exists(path)) {
+            try {
+                snapshot = objectMapper.readValue(path.toFile(), Snapshot.class);
+            } catch (IOException e) {
+                throw new InternalServerException("Не удалось прочитать снимок " + path + ": " + e.getMessage());
+            }
+        }
+        Recovery recovery = new Recovery(snapshot);
+        int replayed = operationLog.replay(recovery);
+        userStorage.restore(recovery.users.values(), recovery.friendships.values().stream().toList());
+        filmStorage.restore(recovery.films.values(), recovery.likes.values().stream().toList());
+        savedVersion = replayed > 0 ? -1 : version();
+        log.info("Загружен снимок {}: {} фильмов, {} пользователей, повторено операций журнала: {}", path,
+                recovery.films.size(), recovery.users.size(), replayed);
+    }
+
+    /**
+     * Записывает снимок, если после прошлой записи что-то изменилось.
+     *
+     * @return {@code true}, если файл перезаписан
+     */
+    public boolean save() {
+        saveLock.lock();
+        try {
+            long version = version();
+            if (version == savedVersion) {
+                return false;
+            }
+            long segment = filmStorage.withWritesPaused(
+                    () -> userStorage.withWritesPaused(operationLog::rotate));
+            List<long[]> likes = filmStorage.likes();
+            List<long[]> friendships = userStorage.friendships();
+            List<User> users = new ArrayList<>();
+            userStorage.exportAll(users::add);
+            List<Film> films = new ArrayList<>();
+            filmStorage.exportAll(films::add);
+
+            Path parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+            try {
+                objectMapper.writeValue(temp.toFile(), new Snapshot(films, users, likes, friendships));
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            savedVersion = version;
+            operationLog.deleteBefore(segment);
+            log.info("Сохранён снимок {}: {} фильмов, {} пользователей", path, films.size(), users.size());
+            return true;
+        } catch (IOException e) {
+            throw new InternalServerException("Не удалось сохранить снимок " + path + ": " + e.getMessage());
+        } finally {
+            saveLock.unlock();
+        }
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (RuntimeException e) {
+            log.error("Не удалось сохранить снимок хранилищ: {}", e.getMessage());
+        }
+    }
+
+    private long version() {
+        return filmStorage.modifications() + userStorage.modifications();
+    }
+
+    /**
+     * Снимок, на который по порядку накладываются операции журнала. Лайки и дружба - по упакованной паре id.
+     */
+    private static class Recovery implements OperationLog.Replay {
+        private final Map<Long, Film> films = new TreeMap<>();
+        private final Map<Long, User> users = new TreeMap<>();
+        private final Map<Long, long[]> likes = new LinkedHashMap<>();
+        private final Map<Long, long[]> friendships = new LinkedHashMap<>();
+
+        Recovery(Snapshot snapshot) {
+            snapshot.films().forEach(this::film);
+            snapshot.users().forEach(this::user);
+            snapshot.likes().forEach(like -> like(like[1], like[0], true));
+            snapshot.friendships().forEach(edge -> friendship(edge[0], edge[1], true));
+        }
+
+        @Override
+        public void film(Film film) {
+            films.put(film.getId(), film);
+        }
+
+        @Override
+        public void user(User user) {
+            users.put(user.getId(), user);
+        }
+
+        @Override
+        public void like(long filmId, long userId, boolean liked) {
+            long key = filmId << 32 | userId;
+            if (liked) {
+                likes.put(key, new long[]{userId, filmId});
+            } else {
+                likes.remove(key);
+            }
+        }
+
+        @Override
+        public void friendship(long userId, long friendId, boolean added) {
+            long key = userId << 32 | friendId;
+            if (added) {
+                friendships.put(key, new long[]{userId, friendId});
+            } else {
+                friendships.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Содержимое файла снимка. Лайки - пары {@code {userId, filmId}}, дружба - {@code {userId, friendId}}.
+     */
+    record Snapshot(List<Film> films, List<User> users, List<long[]> likes, List<long[]> friendships) {
+    }
+}
@@ -0,0 +1,463 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал операций хранилищ в памяти: каждое сохранение фильма или пользователя, лайк и изменение
+ * дружбы дописывается в конец файла-сегмента, отображённого в память. Запись - копирование
+ * нескольких десятков байт под блокировкой, без системных вызовов; отображённые страницы
+ * переживают падение процесса, а на диск их сбрасывает отдельный поток раз в {@code sync-interval-ms}.
+ * При {@code fsync=true} запись ждёт ближайшего сброса: все записи, накопившиеся за время
+ * предыдущего fsync, подтверждаются одним следующим (group commit).
+ * <p>
+ * Запись - {@code [длина][CRC32C][тип][данные]}; длина пишется последней, поэтому недописанная
+ * при сбое запись видна как нулевая длина или несовпадение CRC, и чтение сегмента на ней
+ * останавливается. Фильм и пользователь пишутся целиком в JSON, уже в том виде, в каком их хранит
+ * хранилище, лайк и дружба - парой id; поэтому повтор любой операции даёт то же состояние.
+ * <p>
+ * {@link MemorySnapshots} при старте накладывает журнал на последний снимок, а при каждом новом
+ * снимке начинает новый сегмент и после записи снимка удаляет предыдущие: восстановление
+ * читает только операции после последнего снимка.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory")
+public class OperationLog {
+    private static final byte FILM = 1;
+    private static final byte USER = 2;
+    private static final byte LIKE = 3;
+    private static final byte UNLIKE = 4;
+    private static final byte FRIEND = 5;
+    private static final byte UNFRIEND = 6;
+    private static final int HEADER_SIZE = 8;
+    private static final String SEGMENT_PREFIX = "oplog-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentSize;
+    private final boolean fsync;
+    private final long syncIntervalMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+    private long segment;
+    private MappedByteBuffer buffer;
+    private int offset;
+    private long writtenPosition;
+    private long syncedPosition;
+    private String syncFailure;
+    private long failedPosition;
+    private boolean running;
+    private Thread syncer;
+
+    /**
+     * Операции, которые восстановление накладывает на снимок, в порядке записи.
+     */
+    public interface Replay {
+        void film(Film film);
+
+        void user(User user);
+
+        void like(long filmId, long userId, boolean liked);
+
+        void friendship(long userId, long friendId, boolean added);
+    }
+
+    public OperationLog(ObjectMapper objectMapper,
+                        @Value("${filmorate.storage.memory.log.enabled:true}") boolean enabled,
+                        @Value("${filmorate.storage.memory.log.dir:./db/oplog}") String dir,
+                        @Value("${filmorate.storage.memory.log.segment-size-mb:64}") int segmentSizeMb,
+                        @Value("${filmorate.storage.memory.log.fsync:false}") boolean fsync,
+                        @Value("${filmorate.storage.memory.log.sync-interval-ms:10}") long syncIntervalMs) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.dir = Path.of(dir);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.fsync = fsync;
+        this.syncIntervalMs = syncIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new InternalServerException("Не удалось создать каталог журнала " + dir + ": " + e.getMessage());
+        }
+        running = true;
+        syncer = Thread.ofPlatform().name("operation-log-sync").daemon().start(this::syncLoop);
+        log.info("Журнал операций: {}, сегмент {} МБ, fsync {}, сброс каждые {} мс",
+                dir, segmentSize / 1024 / 1024, fsync, syncIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            running = false;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            syncer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            if (buffer != null) {
+                buffer.force();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Позиции возвращаются для {@link #await(long)}; вызывающий код пишет в журнал под той же
+     * блокировкой, под которой меняет данные, чтобы операции над одной сущностью шли в журнал
+     * в порядке применения, а ждёт сброса уже после неё.
+     */
+    public long appendFilm(Film film) {
+        return append(FILM, json(film));
+    }
+
+    public long appendUser(User user) {
+        return append(USER, json(user));
+    }
+
+    public long appendLike(long filmId, long userId, boolean liked) {
+        return append(liked ? LIKE : UNLIKE, pair(filmId, userId));
+    }
+
+    public long appendFriendship(long userId, long friendId, boolean added) {
+        return append(added ? FRIEND : UNFRIEND, pair(userId, friendId));
+    }
+
+    /**
+     * При {@code fsync=true} ждёт, пока запись с позицией {@code position} окажется на диске.
+     * Если сброс не удался, запись не подтверждается: бросается {@link InternalServerException}.
+     * Сама запись при этом остаётся в сегменте, и более поздний сброс может её сохранить, поэтому
+     * исход изменения для вызывающего неизвестен.
+     */
+    public void await(long position) {
+        if (!enabled || !fsync) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (syncedPosition < position && running) {
+                if (syncFailure != null && position <= failedPosition) {
+                    throw new InternalServerException("Изменение применено, но не подтверждено на диске " +
+                            "и может потеряться при сбое: " + syncFailure);
+                }
+                appended.signal();
+                synced.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerException("Запись в журнал операций прервана");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Сбрасывает текущий сегмент и начинает следующий.
+     *
+     * @return номер нового сегмента: всё, что записано раньше, лежит в сегментах с меньшими номерами
+     */
+    public long rotate() {
+        if (!enabled) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            if (buffer != null) {
+                force(buffer);
+                syncedPosition = writtenPosition;
+                syncFailure = null;
+                synced.signalAll();
+            }
+            open(Math.max(segment, lastSegment()) + 1);
+            return segment;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет сегменты с номерами меньше {@code segment} - их операции уже есть в снимке.
+     */
+    public void deleteBefore(long segment) {
+        for (Path path : segments()) {
+            if (segmentNumber(path) < segment) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("Не удалось удалить сегмент журнала {}: {}", path, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Передаёт {@code replay} все целые записи всех сегментов по порядку.
+     *
+     * @return число прочитанных операций
+     */
+    public int replay(Replay replay) {
+        if (!enabled) {
+            return 0;
+        }
+        int count = 0;
+        for (Path path : segments()) {
+            count += replaySegment(path, replay);
+        }
+        return count;
+    }
+
+    private int replaySegment(Path path, Replay replay) {
+        ByteBuffer segmentBuffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            segmentBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new InternalServerException("Не удалось прочитать журнал " + path + ": " + e.getMessage());
+        }
+        int count = 0;
+        int position = 0;
+        while (position + HEADER_SIZE <= segmentBuffer.limit()) {
+            int length = segmentBuffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > segmentBuffer.limit()) {
+                break;
+            }
+            byte[] record = new byte[length];
+            segmentBuffer.get(position + HEADER_SIZE, record);
+            if (crc(record) != segmentBuffer.getInt(position + 4)) {
+                log.warn("Журнал {} обрывается на позиции {}: запись повреждена", path, position);
+                break;
+            }
+            apply(ByteBuffer.wrap(record), replay);
+            count++;
+            position += HEADER_SIZE + length;
+        }
+        return count;
+    }
+
+    private void apply(ByteBuffer record, Replay replay) {
+        byte type = record.get();
+        try {
+            switch (type) {
+                case FILM -> replay.film(objectMapper.readValue(rest(record), Film.class));
+                case USER -> replay.user(objectMapper.readValue(rest(record), User.class));
+                case LIKE, UNLIKE -> replay.like(record.getLong(), record.getLong(), type == LIKE);
+                case FRIEND, UNFRIEND -> replay.friendship(record.getLong(), record.getLong(), type == FRIEND);
+                default -> throw new InternalServerException("Неизвестный тип записи журнала: " + type);
+            }
+        } catch (IOException e) {
+            throw new InternalServerException("Не удалось прочитать запись журнала: " + e.getMessage());
+        }
+    }
+
+    private long append(byte type, byte[] data) {
+        if (!enabled) {
+            return 0;
+        }
+        int length = data.length + 1;
+        if (HEADER_SIZE + length > segmentSize) {
+            throw new InternalServerException("Запись журнала больше сегмента: " + length + " байт");
+        }
+        lock.lock();
+        try {
+            if (buffer == null || offset + HEADER_SIZE + length > segmentSize) {
+                rotate();
+            }
+            buffer.put(offset + HEADER_SIZE, type);
+            buffer.put(offset + HEADER_SIZE + 1, data);
+            buffer.putInt(offset + 4, crc(type, data));
+            buffer.putInt(offset, length);
+            offset += HEADER_SIZE + length;
+            writtenPosition = segment << 32 | offset;
+            return writtenPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Сбрасывает на диск всё записанное, как только есть что сбрасывать, но не реже чем раз в
+     * {@code sync-interval-ms}. Сам fsync идёт без блокировки, и записи, пришедшие за это время,
+     * уйдут следующим. Неудачный сброс не сдвигает подтверждённую позицию: записи, которые он
+     * должен был подтвердить, получают ошибку, а более поздние ждут следующей попытки - через
+     * {@code sync-interval-ms}.
+     */
+    private void syncLoop() {
+        while (true) {
+            MappedByteBuffer target;
+            long position;
+            lock.lock();
+            try {
+                while (running && writtenPosition == syncedPosition) {
+                    appended.await(syncIntervalMs, TimeUnit.MILLISECONDS);
+                }
+                if (!running) {
+                    synced.signalAll();
+                    return;
+                }
+                target = buffer;
+                position = writtenPosition;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            String failure = null;
+            try {
+                force(target);
+            } catch (UncheckedIOException e) {
+                failure = e.getCause().getMessage();
+                log.error("Не удалось сбросить журнал операций: {}", failure);
+            }
+            lock.lock();
+            try {
+                if (failure == null) {
+                    syncedPosition = Math.max(syncedPosition, position);
+                } else {
+                    failedPosition = position;
+                }
+                syncFailure = failure;
+                synced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (!fsync || failure != null) {
+                try {
+                    Thread.sleep(syncIntervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    void force(MappedByteBuffer target) {
+        target.force();
+    }
+
+    private void open(long number) {
+        Path path = dir.resolve(segmentName(number));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new InternalServerException("Не удалось открыть сегмент журнала " + path + ": " + e.getMessage());
+        }
+        segment = number;
+        offset = 0;
+        writtenPosition = segment << 32;
+        syncedPosition = writtenPosition;
+    }
+
+    private List<Path> segments() {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> segments = new ArrayList<>(files
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .toList());
+            segments.sort((a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)));
+            return segments;
+        } catch (IOException e) {
+            throw new InternalServerException("Не удалось прочитать каталог журнала " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private long lastSegment() {
+        List<Path> segments = segments();
+        return segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1));
+    }
+
+    private static String segmentName(long number) {
+        return String.format("%s%010d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private byte[] json(Object value) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new InternalServerException("Не удалось записать операцию в журнал: " + e.getMessage());
+        }
+    }
+
+    private static byte[] pair(long first, long second) {
+        return ByteBuffer.allocate(16).putLong(first).putLong(second).array();
+    }
+
+    private static byte[] rest(ByteBuffer record) {
+        byte[] rest = new byte[record.remaining()];
+        record.get(rest);
+        return rest;
+    }
+
+    private static int crc(byte[] record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private static int crc(byte type, byte[] data) {
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}
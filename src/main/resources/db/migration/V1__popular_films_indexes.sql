@@ -0,0 +1,8 @@
+-- Индексы для GET /films/popular без рейтинга в памяти. В базах, созданных до миграций,
+-- они уже заведены schema.sql, поэтому все операторы идемпотентны.
+create INDEX IF NOT EXISTS film_like_count_idx ON film (like_count DESC, id);
+
+create INDEX IF NOT EXISTS film_release_date_idx ON film (releaseDate);
+
+-- Первичный ключ начинается с film_id, для фильтра по жанру нужен обратный порядок
+create INDEX IF NOT EXISTS film_genres_genre_idx ON film_genres (genre_id, film_id);
@@ -0,0 +1,7 @@
+-- Первичные ключи связующих таблиц начинаются с film_id и user_id. Для поиска с другой стороны связи
+-- (лайки пользователя, кто добавил пользователя в друзья) и каскадного удаления пользователя нужны
+-- индексы в обратном порядке: с обеими колонками запрос не обращается к строкам таблицы.
+-- film.mpa_id отдельный индекс не нужен: H2 сам индексирует колонку внешнего ключа.
+create INDEX IF NOT EXISTS film_likes_user_idx ON film_likes (user_id, film_id);
+
+create INDEX IF NOT EXISTS user_friendship_friend_idx ON user_friendship (friend_id, user_id);
@@ -0,0 +1,3 @@
+-- like_count меняется тем же запросом, что и film_likes (см. FilmDbStorage.LIKE_QUERY), триггер
+-- из прежних версий schema.sql больше не нужен: с ним счётчик менялся бы дважды.
+drop TRIGGER IF EXISTS film_likes_count;
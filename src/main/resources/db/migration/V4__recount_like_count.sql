@@ -0,0 +1,8 @@
+-- Разовый пересчёт like_count для баз, где колонку добавил schema.sql уже после лайков: у всех
+-- фильмов в них стоял 0. Один проход с группировкой по film_id, меняются только расходящиеся строки.
+merge INTO film f
+USING (SELECT f.id, COUNT(fl.user_id) AS likes
+       FROM film f LEFT JOIN film_likes fl ON fl.film_id = f.id
+       GROUP BY f.id) counted
+ON f.id = counted.id
+WHEN MATCHED AND f.like_count <> counted.likes THEN UPDATE SET like_count = counted.likes;
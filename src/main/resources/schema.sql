@@ -1,3 +1,10 @@
+-- Применённые версии из db/migration, см. SchemaMigrations. Индексы заводятся только миграциями
+create TABLE IF NOT EXISTS schema_version (
+    version INTEGER PRIMARY KEY,
+    description VARCHAR(255) NOT NULL,
+    installed_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
 create TABLE IF NOT EXISTS "user" (
     id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     email VARCHAR(500) NOT NULL,
@@ -24,9 +31,13 @@ create TABLE IF NOT EXISTS film (
     description VARCHAR(2000),
     releaseDate DATE,
     duration INTEGER,
-    mpa_id INTEGER REFERENCES mpa (id) ON delete RESTRICT
+    mpa_id INTEGER REFERENCES mpa (id) ON delete RESTRICT,
+    like_count INTEGER DEFAULT 0 NOT NULL
 );
 
+-- Для баз, созданных до появления like_count; значения пересчитывает миграция V4
+alter TABLE film ADD COLUMN IF NOT EXISTS like_count INTEGER DEFAULT 0 NOT NULL;
+
 create TABLE IF NOT EXISTS genres (
     id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     name VARCHAR(255) NOT NULL
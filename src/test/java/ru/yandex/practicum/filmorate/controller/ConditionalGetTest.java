@@ -0,0 +1,143 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.dao.StatementCounter;
+import ru.yandex.practicum.filmorate.event.FilmSavedEvent;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:conditional-get;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+@Import({StatementCounter.class, ConditionalGetTest.FilmViewProbe.class})
+class ConditionalGetTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private StatementCounter counter;
+
+    @Autowired
+    private FilmViewProbe probe;
+
+    @Autowired
+    private EntityVersions versions;
+
+    @DisplayName("Неизменённый фильм отдаётся как 304 без запросов к базе, после обновления - снова 200")
+    @Test
+    void filmAnswersNotModifiedUntilUpdated() throws Exception {
+        String etag = etag("/films/1");
+        counter.reset();
+
+        mvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        assertEquals(0, counter.count());
+
+        mvc.perform(put("/films").contentType(MediaType.APPLICATION_JSON).content("""
+                        {"id": 1, "name": "Новое название", "description": "Описание",
+                         "releaseDate": "2000-01-01", "duration": 100, "mpa": {"id": 1}}
+                        """))
+                .andExpect(status().isOk());
+        mvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        assertNotEquals(etag, etag("/films/1"));
+    }
+
+    @DisplayName("Версия списка друзей меняется при новой дружбе и при обновлении друга")
+    @Test
+    void friendsVersionFollowsFriendshipAndFriendUpdates() throws Exception {
+        String before = etag("/users/1/friends");
+        mvc.perform(get("/users/1/friends").header(HttpHeaders.IF_NONE_MATCH, before))
+                .andExpect(status().isNotModified());
+
+        mvc.perform(put("/users/1/friends/2")).andExpect(status().isOk());
+        String afterFriendship = etag("/users/1/friends");
+        assertNotEquals(before, afterFriendship);
+        String common = etag("/users/1/friends/common/3");
+
+        mvc.perform(put("/users").contentType(MediaType.APPLICATION_JSON).content("""
+                        {"id": 2, "email": "friend@mail.ru", "login": "friend", "name": "Друг",
+                         "birthday": "1990-01-01"}
+                        """))
+                .andExpect(status().isOk());
+        assertNotEquals(afterFriendship, etag("/users/1/friends"));
+        assertNotEquals(common, etag("/users/1/friends/common/3"));
+    }
+
+    @DisplayName("На несуществующий фильм или пользователя с общим ETag приходит 404, а не 304")
+    @Test
+    void unknownEntityIsNotFoundDespiteMatchingEtag() throws Exception {
+        String filmEtag = "\"" + versions.film(100_000).etag() + "\"";
+        String friendsEtag = "\"" + versions.friends(100_000).etag() + "\"";
+
+        mvc.perform(get("/films/100000").header(HttpHeaders.IF_NONE_MATCH, filmEtag))
+                .andExpect(status().isNotFound());
+        mvc.perform(get("/users/100000").header(HttpHeaders.IF_NONE_MATCH, filmEtag))
+                .andExpect(status().isNotFound());
+        mvc.perform(get("/users/100000/friends").header(HttpHeaders.IF_NONE_MATCH, friendsEtag))
+                .andExpect(status().isNotFound());
+    }
+
+    @DisplayName("Как только видна новая версия фильма, фильм из хранилища уже обновлён")
+    @Test
+    void newFilmVersionComesWithNewBody() throws Exception {
+        etag("/films/2");
+
+        mvc.perform(put("/films").contentType(MediaType.APPLICATION_JSON).content("""
+                        {"id": 2, "name": "Обновлённый", "description": "Описание",
+                         "releaseDate": "2000-01-01", "duration": 100, "mpa": {"id": 1}}
+                        """))
+                .andExpect(status().isOk());
+
+        assertEquals("Обновлённый", probe.name);
+        assertEquals(probe.etag, etag("/films/2"));
+    }
+
+    private String etag(String uri) throws Exception {
+        return mvc.perform(get(uri))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    /**
+     * Читает фильм сразу после того, как {@link EntityVersions} выдала новую версию, - так же, как
+     * параллельный запрос, пришедший в этот момент.
+     */
+    static class FilmViewProbe {
+        private final FilmStorage films;
+        private final EntityVersions versions;
+        private volatile String name;
+        private volatile String etag;
+
+        FilmViewProbe(FilmStorage films, EntityVersions versions) {
+            this.films = films;
+            this.versions = versions;
+        }
+
+        @Order(3)
+        @TransactionalEventListener(fallbackExecution = true)
+        public void onFilmSaved(FilmSavedEvent event) {
+            long filmId = event.film().getId();
+            etag = "\"" + versions.film(filmId).etag() + "\"";
+            name = films.findById(filmId).getName();
+        }
+    }
+}
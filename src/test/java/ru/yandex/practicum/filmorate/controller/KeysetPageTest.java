@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:keyset-page;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class KeysetPageTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @DisplayName("Полная страница отдаёт курсор в X-Next-Cursor, неполная последняя - без заголовка")
+    @Test
+    void pagesUsersByCursor() throws Exception {
+        mvc.perform(get("/users").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(1, 2)))
+                .andExpect(header().string(KeysetPage.NEXT_CURSOR_HEADER, "2"));
+        mvc.perform(get("/users").param("after", "2").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(3, 4)))
+                .andExpect(header().string(KeysetPage.NEXT_CURSOR_HEADER, "4"));
+        mvc.perform(get("/users").param("after", "4").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(5)))
+                .andExpect(header().doesNotExist(KeysetPage.NEXT_CURSOR_HEADER));
+    }
+
+    @DisplayName("Без параметров отдаётся весь список без курсора, с одним after - страница по умолчанию")
+    @Test
+    void withoutParametersReturnsEverything() throws Exception {
+        mvc.perform(get("/users"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)))
+                .andExpect(header().doesNotExist(KeysetPage.NEXT_CURSOR_HEADER));
+        mvc.perform(get("/films").param("after", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(4, 5)))
+                .andExpect(header().doesNotExist(KeysetPage.NEXT_CURSOR_HEADER));
+    }
+
+    @DisplayName("Размер страницы вне допустимого - 400")
+    @Test
+    void rejectsBadLimit() throws Exception {
+        mvc.perform(get("/users").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,224 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:binary-snapshot;DB_CLOSE_DELAY=-1")
+class BinarySnapshotTest {
+
+    @Autowired
+    private BinarySnapshot snapshot;
+
+    @Autowired
+    private FilmStorage films;
+
+    @Autowired
+    private UserStorage users;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @DisplayName("Восстановление из снимка возвращает данные, счётчики лайков, дружбу и последовательности id")
+    @Test
+    void restoresExportedState() {
+        User first = users.create(user("snapshot-first"));
+        User second = users.create(user("snapshot-second"));
+        User third = users.create(user("snapshot-third"));
+        Film popular = films.create(film("Популярный", 1990, 1, 4));
+        Film other = films.create(film("Другой", 1991));
+        films.addLike(popular.getId(), first.getId());
+        films.addLike(popular.getId(), second.getId());
+        films.addLike(other.getId(), third.getId());
+        users.addFriend(first.getId(), second.getId());
+        users.addFriend(first.getId(), third.getId());
+        users.addFriend(second.getId(), first.getId());
+
+        String filmsBefore = films.findAll().toString();
+        String usersBefore = users.findAll().toString();
+        List<Long> popularBefore = filmIds(films.popularFilms(10, null, null));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Map<String, Long> exported = snapshot.export(Channels.newChannel(out));
+
+        Film added = films.create(film("После снимка", 2000, 2));
+        films.addLike(other.getId(), first.getId());
+        films.addLike(other.getId(), second.getId());
+        users.deleteFriend(first.getId(), third.getId());
+        users.addFriend(third.getId(), first.getId());
+
+        Map<String, Long> restored = snapshot.restore(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+
+        assertEquals(exported, restored);
+        assertEquals(filmsBefore, films.findAll().toString());
+        assertEquals(usersBefore, users.findAll().toString());
+        assertEquals(popularBefore, filmIds(films.popularFilms(10, null, null)));
+        assertEquals(2, likeCount(popular.getId()));
+        assertEquals(List.of(second.getId(), third.getId()),
+                users.findFriends(first.getId()).stream().map(User::getId).toList());
+        assertTrue(users.findFriends(third.getId()).isEmpty());
+
+        Film next = films.create(film("Новый", 2001));
+        assertEquals(added.getId(), next.getId());
+        films.addLike(next.getId(), first.getId());
+        assertEquals(1, likeCount(next.getId()));
+    }
+
+    @DisplayName("Поток без заголовка снимка отклоняется, данные не трогаются")
+    @Test
+    void rejectsForeignInput() {
+        Film film = films.create(film("Остаётся", 1995));
+        byte[] garbage = "{\"films\": []}".getBytes();
+
+        assertThrows(ValidationException.class,
+                () -> snapshot.restore(Channels.newChannel(new ByteArrayInputStream(garbage))));
+        assertEquals("Остаётся", films.findById(film.getId()).getName());
+    }
+
+    @DisplayName("Оборванный снимок отклоняется до загрузки, данные не трогаются")
+    @Test
+    void rejectsTruncatedSnapshot() {
+        films.create(film("До снимка", 1996));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.export(Channels.newChannel(out));
+        films.create(film("После снимка", 1997));
+        String filmsBefore = films.findAll().toString();
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 5);
+
+        assertThrows(ValidationException.class,
+                () -> snapshot.restore(Channels.newChannel(new ByteArrayInputStream(truncated))));
+        assertEquals(filmsBefore, films.findAll().toString());
+    }
+
+    @DisplayName("Снимок со ссылкой на отсутствующий фильм отклоняется до загрузки, лайки после него считаются")
+    @Test
+    void rejectsDanglingReference() throws IOException {
+        User user = users.create(user("snapshot-dangling"));
+        Film film = films.create(film("Не трогается", 1998, 1));
+        String filmsBefore = films.findAll().toString();
+        String usersBefore = users.findAll().toString();
+        ColumnWriter filmIds = new ColumnWriter();
+        filmIds.putVarLong(999_999);
+        ColumnWriter userIds = new ColumnWriter();
+        userIds.putZigZag(1);
+
+        assertThrows(ValidationException.class, () -> snapshot.restore(Channels.newChannel(
+                new ByteArrayInputStream(singleRow(BinarySnapshot.Table.FILM_LIKES, filmIds, userIds)))));
+
+        assertEquals(filmsBefore, films.findAll().toString());
+        assertEquals(usersBefore, users.findAll().toString());
+        films.addLike(film.getId(), user.getId());
+        assertEquals(1, likeCount(film.getId()));
+    }
+
+    @DisplayName("Снимок со строкой длиннее колонки отклоняется до загрузки")
+    @Test
+    void rejectsValueLongerThanColumn() throws IOException {
+        String usersBefore = users.findAll().toString();
+        ColumnWriter ids = new ColumnWriter();
+        ids.putVarLong(1);
+        ColumnWriter emails = new ColumnWriter();
+        emails.putString("a".repeat(600) + "@mail.ru");
+        ColumnWriter logins = new ColumnWriter();
+        logins.putString("too-long-email");
+        ColumnWriter names = new ColumnWriter();
+        names.putNullableString(null);
+        ColumnWriter birthdays = new ColumnWriter();
+        birthdays.putNullableZigZag(null);
+
+        ValidationException e = assertThrows(ValidationException.class, () -> snapshot.restore(Channels.newChannel(
+                new ByteArrayInputStream(singleRow(BinarySnapshot.Table.USERS, ids, emails, logins, names, birthdays)))));
+
+        assertTrue(e.getMessage().contains("user.email"));
+        assertEquals(usersBefore, users.findAll().toString());
+    }
+
+    /**
+     * Снимок со всеми таблицами пустыми, кроме одной строки таблицы {@code table} из колонок {@code columns}.
+     */
+    private static byte[] singleRow(BinarySnapshot.Table table, ColumnWriter... columns) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+        ColumnWriter header = new ColumnWriter();
+        header.putVarLong(BinarySnapshot.MAGIC);
+        header.putVarLong(BinarySnapshot.VERSION);
+        header.writeRawTo(channel);
+        int[] columnCounts = {2, 2, 5, 7, 2, 2, 3};
+        for (int tag = 1; tag <= columnCounts.length; tag++) {
+            boolean filled = tag == table.ordinal() + 1;
+            ColumnWriter section = new ColumnWriter();
+            section.putVarLong(tag);
+            section.putVarLong(filled ? 1 : 0);
+            section.putVarLong(columnCounts[tag - 1]);
+            section.writeRawTo(channel);
+            for (int column = 0; column < columnCounts[tag - 1]; column++) {
+                (filled ? columns[column] : new ColumnWriter()).writeTo(channel);
+            }
+        }
+        ColumnWriter end = new ColumnWriter();
+        end.putVarLong(0);
+        end.writeRawTo(channel);
+        return out.toByteArray();
+    }
+
+    private int likeCount(long filmId) {
+        return jdbc.queryForObject("SELECT like_count FROM film WHERE id = ?", Integer.class, filmId);
+    }
+
+    private static List<Long> filmIds(Collection<Film> films) {
+        return films.stream().map(Film::getId).toList();
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+
+    private static Film film(String name, int year, long... genreIds) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Описание");
+        film.setReleaseDate(LocalDate.of(year, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (long genreId : genreIds) {
+            Genre genre = new Genre();
+            genre.setId(genreId);
+            genres.add(genre);
+        }
+        film.setGenres(genres);
+        return film;
+    }
+}
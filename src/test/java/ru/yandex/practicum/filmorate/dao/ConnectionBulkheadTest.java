@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionBulkheadTest {
+
+    @DisplayName("Соединений выдаётся не больше разрешений, закрытие возвращает разрешение")
+    @Test
+    void limitsConcurrentConnections() throws Exception {
+        ConnectionBulkhead bulkhead = new ConnectionBulkhead(1, 10, 50);
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:bulkhead");
+        DataSource dataSource = (DataSource) bulkhead.postProcessAfterInitialization(h2, "dataSource");
+
+        Connection first = dataSource.getConnection();
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        assertEquals(0, bulkhead.waiting());
+
+        first.close();
+        first.close();
+        assertEquals(1, bulkhead.available());
+        try (Connection second = dataSource.getConnection()) {
+            assertEquals(0, bulkhead.available());
+        }
+        assertEquals(1, bulkhead.available());
+    }
+
+    @DisplayName("При переполненной очереди соединение не ждут")
+    @Test
+    void rejectsWhenQueueIsFull() throws Exception {
+        ConnectionBulkhead bulkhead = new ConnectionBulkhead(1, 0, 10_000);
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:bulkhead-queue");
+        DataSource dataSource = (DataSource) bulkhead.postProcessAfterInitialization(h2, "dataSource");
+
+        try (Connection ignored = dataSource.getConnection()) {
+            long startedAt = System.nanoTime();
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+            assertTrue(System.nanoTime() - startedAt < 1_000_000_000L);
+        }
+    }
+}
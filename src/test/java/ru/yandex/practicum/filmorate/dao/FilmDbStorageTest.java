@@ -0,0 +1,301 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:film-db-storage;DB_CLOSE_DELAY=-1")
+@Import(StatementCounter.class)
+class FilmDbStorageTest {
+
+    @Autowired
+    private FilmDbStorage storage;
+
+    @Autowired
+    private StatementCounter counter;
+
+    @Autowired
+    private FilmLeaderboard leaderboard;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void seedFilms() {
+        for (int i = 0; i < 20; i++) {
+            storage.create(film("Фильм с жанрами " + i, 1L, 2L));
+        }
+        counter.reset();
+    }
+
+    @DisplayName("findAll загружает фильмы с MPA и жанрами одним запросом")
+    @Test
+    void findAllRunsSingleStatement() {
+        Collection<Film> films = storage.findAll();
+
+        assertEquals(1, counter.count());
+        assertTrue(films.size() >= 20);
+        assertTrue(films.stream()
+                .filter(film -> film.getName().startsWith("Фильм с жанрами"))
+                .allMatch(film -> film.getGenres().size() == 2 && film.getMpa().getName() != null));
+    }
+
+    @DisplayName("popularFilms загружает фильмы с MPA и жанрами одним запросом")
+    @Test
+    void popularFilmsRunsSingleStatement() {
+        Collection<Film> films = storage.popularFilms(15, null, null);
+
+        // часть фильмов может уже лежать в кэше, но недостающие догружаются одним запросом
+        assertTrue(counter.count() <= 1);
+        assertEquals(15, films.size());
+    }
+
+    @DisplayName("findById загружает фильм с MPA и жанрами одним запросом")
+    @Test
+    void findByIdRunsSingleStatement() {
+        Film created = storage.create(film("Одиночный фильм", 3L, 4L, 5L));
+        counter.reset();
+
+        Film film = storage.findById(created.getId());
+
+        assertEquals(1, counter.count());
+        assertEquals(3, film.getGenres().size());
+        assertEquals(1L, film.getMpa().getId());
+        assertEquals("G", film.getMpa().getName());
+    }
+
+    @DisplayName("findPage отдаёт страницу по курсору одним запросом")
+    @Test
+    void findPageUsesKeysetCursor() {
+        List<Film> first = new ArrayList<>(storage.findPage(0, 7));
+        List<Film> second = new ArrayList<>(storage.findPage(first.getLast().getId(), 7));
+
+        assertEquals(2, counter.count());
+        assertEquals(7, first.size());
+        assertEquals(7, second.size());
+        assertTrue(first.getLast().getId() < second.getFirst().getId());
+        assertEquals(2, second.getFirst().getGenres().size());
+    }
+
+    @DisplayName("exportAll отдаёт те же фильмы, что и findAll, одним запросом")
+    @Test
+    void exportAllStreamsFilmGraph() {
+        List<Film> exported = new ArrayList<>();
+        storage.exportAll(exported::add);
+        assertEquals(1, counter.count());
+
+        assertEquals(new ArrayList<>(storage.findAll()), exported);
+    }
+
+    @DisplayName("Повторный findById берёт фильм из кэша, обновление сбрасывает запись")
+    @Test
+    void findByIdIsCachedUntilUpdate() {
+        Film created = storage.create(film("Кэшируемый фильм", 1L));
+        storage.findById(created.getId());
+        counter.reset();
+
+        storage.findById(created.getId());
+        assertEquals(0, counter.count());
+
+        created.setName("Обновлённый фильм");
+        storage.update(created);
+        assertEquals("Обновлённый фильм", storage.findById(created.getId()).getName());
+    }
+
+    @DisplayName("createAll вставляет фильмы и жанры пакетами и возвращает id")
+    @Test
+    void createAllUsesBatches() {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            films.add(film("Пакетный фильм " + i, 1L, 6L));
+        }
+
+        List<Film> created = storage.createAll(films);
+
+        // по 3 пачки: INSERT film и INSERT film_genres
+        assertEquals(6, counter.count());
+        assertTrue(created.stream().allMatch(film -> film.getId() != null));
+        Film last = storage.findById(created.getLast().getId());
+        assertEquals("Пакетный фильм 1199", last.getName());
+        assertEquals(2, last.getGenres().size());
+    }
+
+    @DisplayName("createAll ничего не сохраняет и перечисляет ошибки по номерам фильмов")
+    @Test
+    void createAllReportsEveryInvalidItem() {
+        Film tooOld = film("Слишком старый", 1L);
+        tooOld.setReleaseDate(LocalDate.of(1800, 1, 1));
+        Film unknownGenre = film("Неизвестный жанр", 100L);
+        int before = storage.findAll().size();
+
+        ValidationException e = assertThrows(ValidationException.class,
+                () -> storage.createAll(List.of(film("Нормальный", 1L), tooOld, unknownGenre)));
+
+        assertTrue(e.getMessage().contains("Фильм #1"));
+        assertTrue(e.getMessage().contains("Фильм #2"));
+        assertEquals(before, storage.findAll().size());
+    }
+
+    @DisplayName("Повторный лайк не увеличивает like_count, снятие лайка уменьшает")
+    @Test
+    void likeCountStaysInSync() {
+        Film film = storage.create(film("Фильм с лайками", 1L));
+
+        storage.addLike(film.getId(), 1L);
+        storage.addLike(film.getId(), 1L);
+        storage.addLike(film.getId(), 2L);
+        assertEquals(2, likeCount(film.getId()));
+
+        storage.deleteLike(film.getId(), 1L);
+        storage.deleteLike(film.getId(), 1L);
+        assertEquals(1, likeCount(film.getId()));
+        assertEquals(1, leaderboard.likes(film.getId()));
+    }
+
+    @DisplayName("Лайк, снятие лайка и обновление фильма выполняются одним запросом вместе с like_count")
+    @Test
+    void writesRunSingleStatement() {
+        Film film = storage.create(film("Фильм для записи", 1L));
+        storage.findById(film.getId());
+        counter.reset();
+
+        // раньше: чтение фильма, чтение его жанров и вставка; счётчик меняет тот же запрос, триггеров в базе нет
+        storage.addLike(film.getId(), 4L);
+        assertEquals(1, counter.count());
+        assertEquals(1, likeCount(film.getId()));
+
+        counter.reset();
+        storage.deleteLike(film.getId(), 4L);
+        assertEquals(1, counter.count());
+        assertEquals(0, likeCount(film.getId()));
+
+        counter.reset();
+        film.setGenres(null);
+        film.setName("Новое название");
+        storage.update(film);
+        assertEquals(1, counter.count());
+        assertEquals(0, likeCount(film.getId()));
+    }
+
+    @DisplayName("Лайк несуществующего фильма или пользователя - 404 с прежним сообщением")
+    @Test
+    void likeOfMissingEntityIsNotFound() {
+        Film film = storage.create(film("Фильм без пользователя", 1L));
+
+        NotFoundException noUser = assertThrows(NotFoundException.class,
+                () -> storage.addLike(film.getId(), 100_000L));
+        NotFoundException noFilm = assertThrows(NotFoundException.class,
+                () -> storage.addLike(100_000L, 1L));
+        Film missing = film("Несуществующий фильм", 1L);
+        missing.setId(100_000L);
+        NotFoundException noUpdate = assertThrows(NotFoundException.class, () -> storage.update(missing));
+
+        assertEquals("Пользователь с id = 100000 не найден", noUser.getMessage());
+        assertEquals("Фильм с id = 100000 не найден", noFilm.getMessage());
+        assertEquals("Фильм с id = 100000 не найден", noUpdate.getMessage());
+        assertEquals(0, likeCount(film.getId()));
+    }
+
+    @DisplayName("Популярные фильмы фильтруются по жанру и году выпуска")
+    @Test
+    void popularFilmsByGenreAndYear() {
+        Film old = storage.create(film("Старый фильм жанра 6", LocalDate.of(1960, 5, 1), 6L));
+        Film liked = storage.create(film("Популярный фильм жанра 6", LocalDate.of(1970, 1, 1), 6L));
+        Film other = storage.create(film("Фильм жанра 6", LocalDate.of(1970, 12, 31), 6L, 1L));
+        Film otherGenre = storage.create(film("Фильм жанра 5", LocalDate.of(1970, 6, 1), 5L));
+        storage.addLike(liked.getId(), 1L);
+        storage.addLike(liked.getId(), 2L);
+        storage.addLike(old.getId(), 1L);
+        storage.addLike(otherGenre.getId(), 1L);
+
+        List<Long> byGenre = storage.popularFilms(2, 6L, null).stream().map(Film::getId).toList();
+        List<Long> byYear = storage.popularFilms(10, null, 1960).stream().map(Film::getId).toList();
+        List<Long> both = storage.popularFilms(10, 6L, 1970).stream().map(Film::getId).toList();
+
+        assertEquals(List.of(liked.getId(), old.getId()), byGenre);
+        assertEquals(List.of(old.getId()), byYear);
+        assertEquals(List.of(liked.getId(), other.getId()), both);
+    }
+
+    @DisplayName("Миграция V4 восстанавливает like_count по film_likes и не трогает верные счётчики")
+    @Test
+    void recountMigrationRestoresLikeCount() {
+        Film film = storage.create(film("Фильм для пересчёта", 1L));
+        Film counted = storage.create(film("Фильм с верным счётчиком", 1L));
+        storage.addLike(film.getId(), 3L);
+        storage.addLike(counted.getId(), 3L);
+        jdbc.update("UPDATE film SET like_count = 0 WHERE id = ?", film.getId());
+
+        int[] updated = new int[1];
+        jdbc.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                String script = new ClassPathResource("db/migration/V4__recount_like_count.sql")
+                        .getContentAsString(StandardCharsets.UTF_8);
+                updated[0] = statement.executeUpdate(script);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+
+        assertEquals(1, updated[0]);
+        assertEquals(1, likeCount(film.getId()));
+        assertEquals(1, likeCount(counted.getId()));
+    }
+
+    private int likeCount(Long filmId) {
+        return jdbc.queryForObject("SELECT like_count FROM film WHERE id = ?", Integer.class, filmId);
+    }
+
+    private static Film film(String name, LocalDate releaseDate, Long... genreIds) {
+        Film film = film(name, genreIds);
+        film.setReleaseDate(releaseDate);
+        return film;
+    }
+
+    private static Film film(String name, Long... genreIds) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Описание");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (Long genreId : genreIds) {
+            Genre genre = new Genre();
+            genre.setId(genreId);
+            genres.add(genre);
+        }
+        film.setGenres(genres);
+        return film;
+    }
+}
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:like-write-behind;DB_CLOSE_DELAY=-1",
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.flush-interval-ms=3600000",
+        "filmorate.likes.write-behind.capacity=3"
+})
+class LikeWriteBehindQueueTest {
+
+    @Autowired
+    private FilmDbStorage storage;
+
+    @Autowired
+    private LikeWriteBehindQueue queue;
+
+    @Autowired
+    private FilmLeaderboard leaderboard;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @DisplayName("Лайк и снятие лайка одной пары схлопываются до записи в базу, до сброса лайк не виден")
+    @Test
+    void coalescesLikeAndUnlike() {
+        storage.addLike(1L, 1L);
+        storage.deleteLike(1L, 1L);
+        assertEquals(0, storage.addLike(1L, 2L).getLikes().size());
+        assertEquals(0, likeRows(1L));
+        assertEquals(0, leaderboard.likes(1L));
+
+        queue.flush();
+
+        assertEquals(1, likeRows(1L));
+        assertEquals(1, jdbc.queryForObject("SELECT like_count FROM film WHERE id = 1", Integer.class));
+        assertEquals(1, leaderboard.likes(1L));
+        storage.deleteLike(1L, 2L);
+        queue.flush();
+    }
+
+    @DisplayName("Переполненный буфер сбрасывается потоком, который добавляет лайк")
+    @Test
+    void flushesWhenFull() {
+        storage.addLike(2L, 1L);
+        storage.addLike(2L, 2L);
+        storage.addLike(2L, 3L);
+        storage.addLike(2L, 4L);
+
+        assertEquals(1, queue.size());
+        assertEquals(3, likeRows(2L));
+        queue.flush();
+        assertEquals(4, likeRows(2L));
+    }
+
+    @DisplayName("Параллельные лайки не переполняют буфер")
+    @Test
+    void keepsCapacityUnderConcurrentLikes() throws Exception {
+        AtomicInteger largest = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                long userId = t % 5 + 1;
+                tasks.add(threads.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 2_000; i++) {
+                        long filmId = 3 + i % 3;
+                        if (i % 2 == 0) {
+                            queue.like(filmId, userId);
+                        } else {
+                            queue.unlike(filmId, userId);
+                        }
+                        largest.accumulateAndGet(queue.size(), Math::max);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            threads.shutdown();
+        }
+        queue.flush();
+
+        assertTrue(largest.get() <= 3, "в буфере было " + largest.get() + " пар при ёмкости 3");
+    }
+
+    private int likeRows(Long filmId) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM film_likes WHERE film_id = ?", Integer.class, filmId);
+    }
+}
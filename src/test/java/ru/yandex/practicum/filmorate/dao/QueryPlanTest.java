@@ -0,0 +1,183 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
+import ru.yandex.practicum.filmorate.cache.UserCache;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Планы запросов хранилищ: каждый запрос, выполняемый на обработку HTTP-запроса, должен идти
+ * по индексу. Полное чтение таблиц (загрузка индексов в памяти при старте, findAll, выгрузки)
+ * сюда не попадает - оно читает таблицу целиком намеренно.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:query-plans;DB_CLOSE_DELAY=-1",
+        "filmorate.popular.leaderboard.enabled=false"
+})
+@Import(StatementCounter.class)
+class QueryPlanTest {
+    private static final String TABLE_SCAN = "tableScan";
+
+    @Autowired
+    private FilmDbStorage films;
+
+    @Autowired
+    private UserDbStorage users;
+
+    @Autowired
+    private FilmCache filmCache;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private SchemaMigrations migrations;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private StatementCounter counter;
+
+    @DisplayName("Миграции применяются один раз и записываются в schema_version")
+    @Test
+    void migrationsAreAppliedOnce() {
+        assertEquals(0, migrations.migrate());
+        assertEquals(List.of(1, 2, 3, 4), jdbc.queryForList("SELECT version FROM schema_version ORDER BY version",
+                Integer.class));
+    }
+
+    @DisplayName("Запросы FilmDbStorage идут по индексам")
+    @Test
+    void filmQueriesUseIndexes() {
+        User user = users.create(user("film-plans"));
+        Film film = films.create(film("План", 2, 6));
+        filmCache.invalidateAll();
+        counter.reset();
+
+        films.findById(film.getId());
+        films.findPage(0, 10);
+        film.setGenres(Set.of(genre(3)));
+        films.update(film);
+        films.addLike(film.getId(), user.getId());
+        films.deleteLike(film.getId(), user.getId());
+        films.popularFilms(10, null, null);
+        films.popularFilms(10, 2L, null);
+        films.popularFilms(10, null, 2001);
+        films.popularFilms(10, 2L, 2001);
+
+        assertIndexed(counter.sql());
+    }
+
+    @DisplayName("Запросы UserDbStorage идут по индексам")
+    @Test
+    void userQueriesUseIndexes() {
+        User user = users.create(user("user-plans"));
+        User friend = users.create(user("friend-plans"));
+        userCache.invalidateAll();
+        counter.reset();
+
+        users.findById(user.getId());
+        users.findPage(0, 10);
+        users.update(user);
+        users.addFriend(user.getId(), friend.getId());
+        userCache.invalidateAll();
+        users.findFriends(user.getId());
+        users.findCommonFriends(user.getId(), friend.getId());
+        users.deleteFriend(user.getId(), friend.getId());
+
+        assertIndexed(counter.sql());
+    }
+
+    @DisplayName("Обратные связи - лайки пользователя, подписчики, фильмы MPA - ищутся по индексам")
+    @Test
+    void reverseLookupsUseIndexes() {
+        assertTrue(plan("SELECT film_id FROM film_likes WHERE user_id = ?").contains("FILM_LIKES_USER_IDX"));
+        assertTrue(plan("SELECT user_id FROM user_friendship WHERE friend_id = ?")
+                .contains("USER_FRIENDSHIP_FRIEND_IDX"));
+        assertIndexed(Set.of("SELECT id FROM film WHERE mpa_id = ?"));
+    }
+
+    private void assertIndexed(Set<String> queries) {
+        assertFalse(queries.isEmpty());
+        Map<String, String> scans = new TreeMap<>();
+        for (String query : queries) {
+            String plan = plan(query);
+            if (plan.contains(TABLE_SCAN)) {
+                scans.put(query, plan);
+            }
+        }
+        assertTrue(scans.isEmpty(), () -> "Запросы читают таблицу целиком: " + scans);
+    }
+
+    /**
+     * План запроса без выполнения. Параметры не связываются: H2 строит план по их местам.
+     */
+    private String plan(String query) {
+        return jdbc.execute((ConnectionCallback<String>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + query);
+                 ResultSet rs = statement.executeQuery()) {
+                List<String> lines = new ArrayList<>();
+                while (rs.next()) {
+                    lines.add(rs.getString(1));
+                }
+                return String.join("\n", lines);
+            }
+        });
+    }
+
+    private static Film film(String name, long... genreIds) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Описание");
+        film.setReleaseDate(LocalDate.of(2001, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (long genreId : genreIds) {
+            genres.add(genre(genreId));
+        }
+        film.setGenres(genres);
+        return film;
+    }
+
+    private static Genre genre(long id) {
+        Genre genre = new Genre();
+        genre.setId(id);
+        return genre;
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.service.GenreService;
+import ru.yandex.practicum.filmorate.service.MpaService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:reference-data;DB_CLOSE_DELAY=-1")
+@Import(StatementCounter.class)
+class ReferenceDataRegistryTest {
+
+    @Autowired
+    private GenreService genreService;
+
+    @Autowired
+    private MpaService mpaService;
+
+    @Autowired
+    private ReferenceDataRegistry registry;
+
+    @Autowired
+    private StatementCounter counter;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @DisplayName("Жанры и MPA отдаются без SQL-запросов, копиями: правка отданного не портит справочник")
+    @Test
+    void servesFromMemory() {
+        counter.reset();
+
+        assertEquals(6, genreService.findAll().size());
+        assertEquals(5, mpaService.findAll().size());
+        assertEquals("Комедия", genreService.findById(1L).getName());
+        mpaService.findById(3L).setName("Испорчен");
+        genreService.findAll().iterator().next().setName("Испорчен");
+        assertEquals("PG-13", mpaService.findById(3L).getName());
+        assertEquals("Комедия", genreService.findById(1L).getName());
+        assertThrows(NotFoundException.class, () -> genreService.findById(100L));
+
+        assertEquals(0, counter.count());
+    }
+
+    @DisplayName("reload подхватывает изменения справочников в базе")
+    @Test
+    void reloadPicksUpChanges() {
+        jdbc.update("MERGE INTO genres (id, name) VALUES (7, 'Фантастика')");
+
+        registry.reload();
+
+        assertEquals("Фантастика", genreService.findById(7L).getName());
+    }
+}
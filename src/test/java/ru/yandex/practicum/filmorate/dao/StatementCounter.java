@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Оборачивает DataSource, считает подготовленные и выполненные через него SQL-запросы
+ * и запоминает текст подготовленных.
+ */
+public class StatementCounter implements BeanPostProcessor {
+    private final AtomicInteger statements = new AtomicInteger();
+    private final Set<String> sql = ConcurrentHashMap.newKeySet();
+
+    public int count() {
+        return statements.get();
+    }
+
+    /**
+     * Различные тексты запросов, подготовленных после последнего {@link #reset()}.
+     */
+    public Set<String> sql() {
+        return Set.copyOf(sql);
+    }
+
+    public void reset() {
+        statements.set(0);
+        sql.clear();
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource)) {
+            return bean;
+        }
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(dataSource, method, args);
+                    return result instanceof Connection connection ? countingConnection(connection) : result;
+                });
+    }
+
+    private Connection countingConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("prepareStatement") || name.equals("prepareCall")
+                            || name.equals("createStatement")) {
+                        statements.incrementAndGet();
+                        if (args != null && args[0] instanceof String text) {
+                            sql.add(text);
+                        }
+                    }
+                    return invoke(connection, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
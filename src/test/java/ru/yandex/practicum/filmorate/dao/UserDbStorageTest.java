@@ -0,0 +1,182 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.event.FriendshipEvent;
+import ru.yandex.practicum.filmorate.cache.UserCache;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:user-db-storage;DB_CLOSE_DELAY=-1")
+@Import({StatementCounter.class, UserDbStorageTest.SlowFriendshipListener.class})
+class UserDbStorageTest {
+
+    @Autowired
+    private UserDbStorage storage;
+
+    @Autowired
+    private UserCache cache;
+
+    @Autowired
+    private StatementCounter counter;
+
+    @Autowired
+    private FriendshipGraph friendshipGraph;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @DisplayName("Добавление и удаление друга - один запрос на запись и не больше одного на ответ")
+    @Test
+    void friendshipWritesRunSingleStatement() {
+        User user = storage.create(user("writer"));
+        User friend = storage.create(user("friend"));
+        cache.invalidateAll();
+        counter.reset();
+
+        // раньше: два чтения пользователей и вставка
+        storage.addFriend(user.getId(), friend.getId());
+        assertEquals(2, counter.count());
+
+        counter.reset();
+        storage.deleteFriend(user.getId(), friend.getId());
+        assertEquals(1, counter.count());
+
+        counter.reset();
+        storage.addFriend(user.getId(), friend.getId());
+        storage.addFriend(user.getId(), friend.getId());
+        assertEquals(2, counter.count());
+        assertEquals(List.of(friend.getId()), ids(storage.findFriends(user.getId())));
+    }
+
+    @DisplayName("findPage отдаёт страницу по курсору одним запросом, последняя страница короче")
+    @Test
+    void findPageUsesKeysetCursor() {
+        User first = storage.create(user("page-first"));
+        User second = storage.create(user("page-second"));
+        User third = storage.create(user("page-third"));
+        counter.reset();
+
+        List<User> page = List.copyOf(storage.findPage(first.getId() - 1, 2));
+        List<User> last = List.copyOf(storage.findPage(page.getLast().getId(), 2));
+
+        assertEquals(2, counter.count());
+        assertEquals(List.of(first.getId(), second.getId()), ids(page));
+        assertEquals("page-first@mail.ru", page.getFirst().getEmail());
+        assertEquals(List.of(third.getId()), ids(last));
+        assertTrue(storage.findPage(third.getId(), 2).isEmpty());
+    }
+
+    @DisplayName("Общие друзья загружаются вместе с проверкой обоих пользователей одним запросом")
+    @Test
+    void commonFriendsRunSingleStatement() {
+        User user = storage.create(user("first"));
+        User other = storage.create(user("second"));
+        User common = storage.create(user("common"));
+        storage.addFriend(user.getId(), common.getId());
+        storage.addFriend(other.getId(), common.getId());
+        cache.invalidateAll();
+        counter.reset();
+
+        assertEquals(List.of(common.getId()), ids(storage.findCommonFriends(user.getId(), other.getId())));
+        assertEquals(1, counter.count());
+    }
+
+    @DisplayName("Отсутствующий пользователь - 404 с прежним сообщением, обновление без чтения")
+    @Test
+    void missingUserIsNotFound() {
+        User user = storage.create(user("lonely"));
+        counter.reset();
+
+        NotFoundException noFriend = assertThrows(NotFoundException.class,
+                () -> storage.addFriend(user.getId(), 100_000L));
+        NotFoundException noUser = assertThrows(NotFoundException.class,
+                () -> storage.deleteFriend(100_000L, user.getId()));
+        NotFoundException noCommon = assertThrows(NotFoundException.class,
+                () -> storage.findCommonFriends(user.getId(), 100_001L));
+        User missing = user("missing");
+        missing.setId(100_002L);
+        NotFoundException noUpdate = assertThrows(NotFoundException.class, () -> storage.update(missing));
+
+        assertEquals("Пользователь с id = 100000 не найден", noFriend.getMessage());
+        assertEquals("Пользователь с id = 100000 не найден", noUser.getMessage());
+        assertEquals("Пользователь с id = 100001 не найден", noCommon.getMessage());
+        assertEquals("Пользователь с id = 100002 не найден", noUpdate.getMessage());
+        assertTrue(storage.findFriends(user.getId()).isEmpty());
+    }
+
+    @DisplayName("После параллельных добавления и удаления одной дружбы граф совпадает с базой")
+    @Test
+    void concurrentFriendshipChangesKeepGraphInSync() throws Exception {
+        User user = storage.create(user("racing"));
+        User friend = storage.create(user("raced"));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 200; round++) {
+                CyclicBarrier start = new CyclicBarrier(2);
+                Future<?> added = executor.submit(() -> {
+                    start.await();
+                    return storage.addFriend(user.getId(), friend.getId());
+                });
+                Future<?> deleted = executor.submit(() -> {
+                    start.await();
+                    return storage.deleteFriend(user.getId(), friend.getId());
+                });
+                added.get();
+                deleted.get();
+
+                List<Long> stored = jdbc.queryForList("SELECT friend_id FROM user_friendship WHERE user_id = ?",
+                        Long.class, user.getId());
+                assertEquals(stored, Arrays.stream(friendshipGraph.friends(user.getId())).asLongStream().boxed().toList(),
+                        "раунд " + round);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Задерживает применение событий дружбы к индексам, расширяя окно между записью в базу и графом.
+     */
+    static class SlowFriendshipListener {
+        @Order(-1)
+        @TransactionalEventListener(fallbackExecution = true)
+        public void onFriendship(FriendshipEvent event) throws InterruptedException {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+        }
+    }
+
+    private static List<Long> ids(Collection<User> users) {
+        return users.stream().map(User::getId).toList();
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
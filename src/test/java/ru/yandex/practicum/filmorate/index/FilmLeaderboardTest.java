@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilmLeaderboardTest {
+
+    @DisplayName("Фильмы упорядочены по лайкам, при равенстве по id")
+    @Test
+    void ordersByLikesThenById() {
+        FilmLeaderboard leaderboard = new FilmLeaderboard();
+        leaderboard.load(Map.of(1L, 2L, 2L, 5L, 3L, 2L, 4L, 0L));
+        leaderboard.addFilm(5L);
+        leaderboard.changeLikes(4L, 1);
+
+        assertEquals(List.of(2L, 1L, 3L, 4L, 5L), leaderboard.top(10));
+        assertEquals(List.of(2L, 1L), leaderboard.top(2));
+    }
+
+    @DisplayName("Рейтинги жанра и года учитывают лайки и перенос фильма")
+    @Test
+    void segmentRankings() {
+        FilmLeaderboard leaderboard = new FilmLeaderboard();
+        leaderboard.load(Map.of(1L, 3L, 2L, 5L, 3L, 1L, 4L, 4L),
+                Map.of(1L, 2000, 2L, 2001, 3L, 2000, 4L, 2000),
+                Map.of(1L, Set.of(1L), 2L, Set.of(1L, 2L), 3L, Set.of(2L), 4L, Set.of(2L)));
+        leaderboard.changeLikes(3L, 3);
+
+        assertEquals(List.of(2L, 1L), leaderboard.top(10, 1L, null));
+        assertEquals(List.of(3L, 4L, 1L), leaderboard.top(10, null, 2000));
+        assertEquals(List.of(3L, 4L), leaderboard.top(10, 2L, 2000));
+        assertEquals(List.of(), leaderboard.top(10, 3L, null));
+
+        leaderboard.moveFilm(4L, 2001, Set.of(1L));
+        assertEquals(List.of(3L, 1L), leaderboard.top(10, null, 2000));
+        assertEquals(List.of(2L, 4L, 1L), leaderboard.top(10, 1L, null));
+        assertEquals(List.of(2L, 3L, 4L, 1L), leaderboard.top(10));
+    }
+
+    @DisplayName("Лайк, пришедший раньше события о создании фильма, не выводит фильм из рейтингов жанра и года")
+    @Test
+    void likeBeforeCreationKeepsSegments() {
+        FilmLeaderboard leaderboard = new FilmLeaderboard();
+        leaderboard.load(Map.of(1L, 2L), Map.of(1L, 1999), Map.of(1L, Set.of(3L)));
+
+        leaderboard.changeLikes(7L, 1);
+        leaderboard.addFilm(7L, 1999, Set.of(3L));
+
+        assertEquals(1, leaderboard.likes(7L));
+        assertEquals(List.of(1L, 7L), leaderboard.top(10, 3L, null));
+        assertEquals(List.of(1L, 7L), leaderboard.top(10, null, 1999));
+    }
+
+    @DisplayName("Конкурентные лайки не теряются")
+    @Test
+    void concurrentLikes() throws InterruptedException {
+        FilmLeaderboard leaderboard = new FilmLeaderboard();
+        leaderboard.load(Map.of(1L, 0L, 2L, 0L));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(() -> leaderboard.changeLikes(1L, 1));
+            executor.execute(() -> leaderboard.top(2));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1000, leaderboard.likes(1L));
+        assertEquals(List.of(1L, 2L), leaderboard.top(5));
+    }
+}
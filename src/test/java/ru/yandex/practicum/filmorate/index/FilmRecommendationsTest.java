@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilmRecommendationsTest {
+
+    @DisplayName("Фильмы похожих пользователей ранжируются по числу общих лайков с ними")
+    @Test
+    void recommendsFilmsOfSimilarUsers() {
+        LikeMatrix matrix = new LikeMatrix();
+        matrix.load(List.of(
+                new long[]{1, 10}, new long[]{1, 11},
+                new long[]{2, 10}, new long[]{2, 11}, new long[]{2, 20},
+                new long[]{3, 10}, new long[]{3, 30}, new long[]{3, 20},
+                new long[]{4, 40}));
+        FilmRecommendations recommendations = new FilmRecommendations(matrix, 100);
+
+        assertArrayEquals(new int[]{20, 30}, recommendations.recommend(1, 10));
+        assertArrayEquals(new int[]{20}, recommendations.recommend(1, 1));
+        assertArrayEquals(new int[0], recommendations.recommend(5, 10));
+    }
+
+    @DisplayName("Лайк похожего пользователя сбрасывает закэшированные рекомендации")
+    @Test
+    void invalidatesWhenSimilarUserLikes() {
+        LikeMatrix matrix = new LikeMatrix();
+        matrix.load(List.of(new long[]{1, 10}, new long[]{2, 10}, new long[]{2, 20}));
+        FilmRecommendations recommendations = new FilmRecommendations(matrix, 100);
+        assertArrayEquals(new int[]{20}, recommendations.recommend(1, 10));
+
+        FilmLikeEvent like = new FilmLikeEvent(30L, 2L, true);
+        matrix.onLike(like);
+        recommendations.onLike(like);
+        assertArrayEquals(new int[]{20, 30}, recommendations.recommend(1, 10));
+
+        FilmLikeEvent own = new FilmLikeEvent(20L, 1L, true);
+        matrix.onLike(own);
+        recommendations.onLike(own);
+        assertArrayEquals(new int[]{30}, recommendations.recommend(1, 10));
+    }
+
+    @DisplayName("Лайк, который не касается пользователя, не сбрасывает его рекомендации")
+    @Test
+    void keepsCacheOnUnrelatedLike() {
+        AtomicInteger rowReads = new AtomicInteger();
+        LikeMatrix matrix = new LikeMatrix() {
+            @Override
+            public int[] likers(long filmId) {
+                if (filmId == 10) {
+                    rowReads.incrementAndGet();
+                }
+                return super.likers(filmId);
+            }
+        };
+        matrix.load(List.of(new long[]{1, 10}, new long[]{2, 10}, new long[]{2, 20}, new long[]{3, 40}));
+        FilmRecommendations recommendations = new FilmRecommendations(matrix, 100);
+        assertArrayEquals(new int[]{20}, recommendations.recommend(1, 10));
+        int computedReads = rowReads.get();
+
+        FilmLikeEvent unrelated = new FilmLikeEvent(50L, 3L, true);
+        matrix.onLike(unrelated);
+        recommendations.onLike(unrelated);
+        assertArrayEquals(new int[]{20}, recommendations.recommend(1, 10));
+        assertEquals(computedReads, rowReads.get());
+
+        FilmLikeEvent sameFilm = new FilmLikeEvent(10L, 3L, true);
+        matrix.onLike(sameFilm);
+        recommendations.onLike(sameFilm);
+        assertArrayEquals(new int[]{20, 40, 50}, recommendations.recommend(1, 10));
+        assertTrue(rowReads.get() > computedReads);
+    }
+}
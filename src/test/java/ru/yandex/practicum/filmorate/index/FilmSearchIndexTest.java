@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.SearchField;
+import ru.yandex.practicum.filmorate.model.SearchRanking;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FilmSearchIndexTest {
+    private static final Set<SearchField> ALL_FIELDS = EnumSet.allOf(SearchField.class);
+
+    @DisplayName("Поиск не зависит от регистра и «ё», находит только фильмы со всеми словами запроса")
+    @Test
+    void matchesAllTermsCaseInsensitive() {
+        FilmSearchIndex index = new FilmSearchIndex(new FilmLeaderboard());
+        index.index(1, "Ёлки", "Новогодняя комедия");
+        index.index(2, "Ирония судьбы", "Новогодняя история, комедия о ёлках и бане");
+        index.index(3, "Берлинская комедия", "Фильм про Берлин");
+
+        assertEquals(List.of(1L), index.search("ЕЛКИ", ALL_FIELDS, SearchRanking.RELEVANCE, 10));
+        assertEquals(List.of(1L, 2L), index.search("новогодняя, комедия!", ALL_FIELDS,
+                SearchRanking.RELEVANCE, 10));
+        assertEquals(List.of(), index.search("новогодняя берлин", ALL_FIELDS,
+                SearchRanking.RELEVANCE, 10));
+        assertEquals(List.of(), index.search("ирония", EnumSet.of(SearchField.DESCRIPTION),
+                SearchRanking.RELEVANCE, 10));
+    }
+
+    @DisplayName("Совпадение в названии весит больше, сортировка по лайкам и обновление текста")
+    @Test
+    void ranksAndReindexes() {
+        FilmLeaderboard leaderboard = new FilmLeaderboard();
+        leaderboard.load(Map.of(1L, 1L, 2L, 7L, 3L, 3L));
+        FilmSearchIndex index = new FilmSearchIndex(leaderboard);
+        index.index(1, "Комедия", "Смешно");
+        index.index(2, "Драма", "Почти комедия");
+        index.index(3, "Комедия положений", "Тоже смешно");
+
+        assertEquals(List.of(3L, 1L, 2L), index.search("комедия", ALL_FIELDS, SearchRanking.RELEVANCE, 10));
+        assertEquals(List.of(2L, 3L), index.search("комедия", ALL_FIELDS, SearchRanking.LIKES, 2));
+
+        index.index(3, "Трагедия", "Совсем не смешно");
+        assertEquals(List.of(1L, 2L), index.search("комедия", ALL_FIELDS, SearchRanking.RELEVANCE, 10));
+        assertEquals(List.of(3L), index.search("трагедия", ALL_FIELDS, SearchRanking.RELEVANCE, 10));
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.event.FriendshipEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FriendSuggestionsTest {
+
+    @DisplayName("Друзья друзей ранжируются по числу общих друзей, свои друзья исключаются")
+    @Test
+    void ranksByMutualFriends() {
+        FriendshipGraph graph = new FriendshipGraph();
+        graph.load(List.of(
+                new long[]{1, 2}, new long[]{1, 3}, new long[]{1, 4},
+                new long[]{2, 5}, new long[]{3, 5}, new long[]{4, 5},
+                new long[]{2, 6}, new long[]{3, 6},
+                new long[]{2, 7}, new long[]{2, 3}, new long[]{2, 1}));
+        FriendSuggestions suggestions = new FriendSuggestions(graph, 100);
+
+        assertArrayEquals(new int[]{5, 6, 7}, suggestions.suggest(1, 10));
+        assertArrayEquals(new int[]{5}, suggestions.suggest(1, 1));
+    }
+
+    @DisplayName("Изменение дружбы друга сбрасывает закэшированные рекомендации")
+    @Test
+    void invalidatesWhenFriendOfFriendChanges() {
+        FriendshipGraph graph = new FriendshipGraph();
+        graph.load(List.of(new long[]{1, 2}, new long[]{2, 3}));
+        FriendSuggestions suggestions = new FriendSuggestions(graph, 100);
+        assertArrayEquals(new int[]{3}, suggestions.suggest(1, 10));
+
+        graph.addFriend(2, 4);
+        suggestions.onFriendship(new FriendshipEvent(2L, 4L, true));
+
+        assertArrayEquals(new int[]{3, 4}, suggestions.suggest(1, 10));
+    }
+
+    @DisplayName("Изменение дружбы, которое не касается пользователя и его друзей, не сбрасывает его рекомендации")
+    @Test
+    void keepsCacheOnUnrelatedFriendship() {
+        AtomicInteger rowReads = new AtomicInteger();
+        FriendshipGraph graph = new FriendshipGraph() {
+            @Override
+            public int[] friends(long userId) {
+                if (userId == 2) {
+                    rowReads.incrementAndGet();
+                }
+                return super.friends(userId);
+            }
+        };
+        graph.load(List.of(new long[]{1, 2}, new long[]{2, 3}, new long[]{5, 6}));
+        FriendSuggestions suggestions = new FriendSuggestions(graph, 100);
+        assertArrayEquals(new int[]{3}, suggestions.suggest(1, 10));
+        int computedReads = rowReads.get();
+
+        graph.addFriend(5, 7);
+        suggestions.onFriendship(new FriendshipEvent(5L, 7L, true));
+        assertArrayEquals(new int[]{3}, suggestions.suggest(1, 10));
+        assertEquals(computedReads, rowReads.get());
+    }
+
+    @DisplayName("Параллельный подсчёт по остаткам id совпадает с последовательным")
+    @Test
+    void parallelPartsOnLargeGraph() {
+        List<long[]> edges = new ArrayList<>();
+        for (int friend = 2; friend <= 50; friend++) {
+            edges.add(new long[]{1, friend});
+            for (int candidate = 100_000; candidate < 103_000 + friend; candidate++) {
+                edges.add(new long[]{friend, candidate});
+            }
+        }
+        FriendshipGraph graph = new FriendshipGraph();
+        graph.load(edges);
+
+        assertArrayEquals(new int[]{100_000, 100_001, 100_002}, new FriendSuggestions(graph, 100).suggest(1, 3));
+    }
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class FriendshipGraphTest {
+
+    @DisplayName("Друзья хранятся отсортированными, общие друзья находятся слиянием")
+    @Test
+    void friendsAndCommonFriends() {
+        FriendshipGraph graph = new FriendshipGraph();
+        graph.load(List.of(new long[]{1, 5}, new long[]{1, 3}, new long[]{2, 3}, new long[]{2, 4}));
+
+        graph.addFriend(2, 5);
+        graph.addFriend(40, 1);
+        graph.removeFriend(1, 3);
+        graph.addFriend(1, 3);
+
+        assertArrayEquals(new int[]{3, 5}, graph.friends(1));
+        assertArrayEquals(new int[]{3, 4, 5}, graph.friends(2));
+        assertArrayEquals(new int[]{3, 5}, graph.common(1, 2));
+        assertArrayEquals(new int[]{1}, graph.friends(40));
+        assertArrayEquals(new int[0], graph.friends(100));
+    }
+}
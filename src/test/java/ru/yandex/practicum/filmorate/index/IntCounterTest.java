@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IntCounterTest {
+
+    @DisplayName("Счётчики сохраняются при росте таблицы сверх ожидаемого числа ключей")
+    @Test
+    void keepsCountsWhenGrowing() {
+        IntCounter counts = new IntCounter(1);
+        for (int key = 0; key < 10_000; key++) {
+            counts.add(key * 7, key % 5 + 1);
+        }
+        counts.add(0, 10);
+
+        long[][] top = counts.top(3, key -> key == 7 * 4);
+
+        assertEquals(3, top.length);
+        assertArrayEquals(new long[]{0, 11}, top[0]);
+        assertArrayEquals(new long[]{7 * 9, 5}, top[1]);
+        assertArrayEquals(new long[]{7 * 14, 5}, top[2]);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.event.FilmLikeEvent;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TitleAutocompleteTest {
+
+    @DisplayName("Подсказки по префиксу без учёта регистра и «ё», популярные первыми")
+    @Test
+    void completesByPrefixRankedByLikes() {
+        FilmLeaderboard leaderboard = new FilmLeaderboard();
+        leaderboard.load(Map.of(1L, 1L, 2L, 5L, 3L, 3L, 4L, 9L));
+        TitleAutocomplete autocomplete = new TitleAutocomplete(leaderboard);
+        autocomplete.load(Map.of(1L, "Ёлки", 2L, "Ёлки 2", 3L, "Елки-палки", 4L, "Адмирал"));
+
+        assertEquals(List.of(2L, 3L, 1L), autocomplete.complete("  ЕЛК", 10));
+        assertEquals(List.of(2L), autocomplete.complete("ёлки  2", 10));
+        assertEquals(List.of(2L, 3L), autocomplete.complete("елки", 2));
+        assertEquals(List.of(), autocomplete.complete("ад ", 10));
+        assertEquals(List.of(), autocomplete.complete(" ", 10));
+    }
+
+    @DisplayName("Новые и переименованные фильмы видны сразу и после слияния буфера, лайки меняют порядок")
+    @Test
+    void reindexesTitles() {
+        FilmLeaderboard leaderboard = new FilmLeaderboard();
+        Map<Long, Long> likes = new HashMap<>();
+        for (long id = 1; id < 3 + TitleAutocomplete.MERGE_THRESHOLD; id++) {
+            likes.put(id, id < 3 ? 0 : id);
+        }
+        leaderboard.load(likes);
+        TitleAutocomplete autocomplete = new TitleAutocomplete(leaderboard);
+        autocomplete.load(Map.of(1L, "Титаник"));
+
+        autocomplete.index(2, "Тихий Дон");
+        autocomplete.index(1, "Аватар");
+        assertEquals(List.of(2L), autocomplete.complete("ти", 10));
+        assertEquals(List.of(1L), autocomplete.complete("ава", 10));
+
+        for (long id = 3; id < 3 + TitleAutocomplete.MERGE_THRESHOLD; id++) {
+            autocomplete.index(id, "Фильм " + id);
+        }
+        assertEquals(List.of(2L), autocomplete.complete("ти", 10));
+        assertEquals(List.of(258L, 257L), autocomplete.complete("фильм", 2));
+        assertEquals(List.of(100L), autocomplete.complete("фильм 100", 10));
+
+        leaderboard.changeLikes(4L, 1000);
+        autocomplete.onFilmLike(new FilmLikeEvent(4L, 1L, true));
+        assertEquals(List.of(4L, 258L), autocomplete.complete("фильм", 2));
+    }
+}
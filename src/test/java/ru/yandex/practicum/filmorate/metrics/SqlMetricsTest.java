@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:sql-metrics;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class SqlMetricsTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @DisplayName("Запрос записывает время хранилища, число SQL-запросов и строк")
+    @Test
+    void recordsStorageTimerAndSqlPerRequest() throws Exception {
+        double statementsBefore = registry.get("filmorate.sql.statements").counter().count();
+
+        mvc.perform(get("/films").param("after", "0").param("limit", "3"))
+                .andExpect(status().isOk());
+
+        Timer storage = registry.find("filmorate.storage").tag("method", "findPage").timer();
+        assertNotNull(storage);
+        assertEquals(1, storage.count());
+        DistributionSummary statements = registry.get("filmorate.request.sql.statements")
+                .tag("uri", "/films").summary();
+        DistributionSummary rows = registry.get("filmorate.request.sql.rows").tag("uri", "/films").summary();
+        assertEquals(1, statements.count());
+        assertEquals(1, statements.totalAmount());
+        assertTrue(rows.totalAmount() >= 3);
+        assertEquals(statementsBefore + 1, registry.get("filmorate.sql.statements").counter().count());
+    }
+
+    @DisplayName("Ненайденный ресурс увеличивает счётчик ошибок not_found")
+    @Test
+    void countsNotFoundErrors() throws Exception {
+        double before = registry.get("filmorate.errors").tag("type", "not_found").counter().count();
+
+        mvc.perform(get("/users/9999")).andExpect(status().isNotFound());
+
+        assertEquals(before + 1, registry.get("filmorate.errors").tag("type", "not_found").counter().count());
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sql-stats;DB_CLOSE_DELAY=-1",
+        "filmorate.sql.n-plus-one-threshold=2",
+        "filmorate.sql.slow-query-ms=0"
+})
+@AutoConfigureMockMvc
+class SqlStatsCollectorTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private SqlStatsCollector collector;
+
+    @DisplayName("Запросы, отличающиеся только значениями, получают один отпечаток")
+    @Test
+    void fingerprintIgnoresLiteralsAndListSizes() {
+        assertEquals("SELECT * FROM film WHERE id IN (?, ...) AND name = ?",
+                SqlFingerprint.of("SELECT *  FROM film\n WHERE id IN (?, ?, ?) AND name = 'it''s'"));
+        assertEquals(SqlFingerprint.of("SELECT * FROM film_genres WHERE film_id = 1"),
+                SqlFingerprint.of("SELECT * FROM film_genres WHERE film_id = 42"));
+    }
+
+    @DisplayName("Повтор одного запроса в HTTP-запросе больше порога считается N+1")
+    @Test
+    void flagsRepeatedFingerprintWithinRequest() {
+        collector.reset();
+        RequestSqlStats.begin();
+        for (long filmId = 1; filmId <= 3; filmId++) {
+            jdbc.queryForList("SELECT genre_id FROM film_genres WHERE film_id = " + filmId);
+        }
+        jdbc.queryForList("SELECT id FROM film");
+        List<String> repeated = collector.finishRequest("GET", "/films", RequestSqlStats.end());
+
+        String fingerprint = "SELECT genre_id FROM film_genres WHERE film_id = ?";
+        assertEquals(List.of(fingerprint), repeated);
+        SqlStatsCollector.FingerprintStats top = collector.top(SqlStatsCollector.Order.N_PLUS_ONE, 1).get(0);
+        assertEquals(fingerprint, top.sql());
+        assertEquals(3, top.executions());
+        assertEquals(3, top.slow());
+        assertEquals(1, top.repeatedRequests());
+    }
+
+    @DisplayName("Эндпоинт sqlstats отдаёт отпечатки, отсортированные по выбранной характеристике")
+    @Test
+    void exposesTopOffenders() throws Exception {
+        collector.reset();
+        mvc.perform(get("/films").param("after", "0").param("limit", "2")).andExpect(status().isOk());
+
+        mvc.perform(get("/actuator/sqlstats").param("order", "EXECUTIONS").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].sql", hasItem(containsString("FROM film"))));
+    }
+}
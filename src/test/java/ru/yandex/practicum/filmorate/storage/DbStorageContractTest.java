@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:db-storage-contract;DB_CLOSE_DELAY=-1")
+class DbStorageContractTest extends StorageContractTest {
+}
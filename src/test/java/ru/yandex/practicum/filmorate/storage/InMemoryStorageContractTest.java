@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.memory.MemorySnapshots;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:memory-storage-contract;DB_CLOSE_DELAY=-1",
+        "filmorate.storage.type=memory",
+        "filmorate.storage.memory.snapshot-interval-ms=3600000"
+})
+class InMemoryStorageContractTest extends StorageContractTest {
+    @TempDir
+    static Path snapshotDir;
+
+    @DynamicPropertySource
+    static void snapshotPath(DynamicPropertyRegistry registry) {
+        registry.add("filmorate.storage.memory.snapshot-path", () -> snapshotDir.resolve("filmorate.json").toString());
+        registry.add("filmorate.storage.memory.log.dir", () -> snapshotDir.resolve("oplog").toString());
+        registry.add("filmorate.storage.memory.log.segment-size-mb", () -> "1");
+    }
+
+    @Autowired
+    private MemorySnapshots snapshots;
+
+    @DisplayName("Снимок на диске восстанавливает фильмы, пользователей, лайки и дружбу")
+    @Test
+    void snapshotRoundTrip() {
+        User user = users.create(user("snapshot-user"));
+        User friend = users.create(user("snapshot-friend"));
+        users.addFriend(user.getId(), friend.getId());
+        Film film = films.create(film("Снимок", 1970, 2, 6));
+        films.addLike(film.getId(), user.getId());
+        int filmCount = films.findAll().size();
+        int userCount = users.findAll().size();
+
+        assertTrue(snapshots.save());
+        assertFalse(snapshots.save());
+        snapshots.load();
+
+        assertEquals(filmCount, films.findAll().size());
+        assertEquals(userCount, users.findAll().size());
+        Film restored = films.findById(film.getId());
+        assertEquals("Снимок", restored.getName());
+        assertEquals(List.of(2L, 6L), restored.getGenres().stream().map(Genre::getId).toList());
+        assertEquals(List.of(film.getId()), filmIds(films.popularFilms(10, null, 1970)));
+        assertEquals(List.of(friend.getId()), userIds(users.findFriends(user.getId())));
+        assertEquals("snapshot-friend", users.findById(friend.getId()).getLogin());
+
+        Film next = films.create(film("После снимка", 1970));
+        assertEquals(filmCount + 1, next.getId());
+    }
+
+    @DisplayName("Изменения после снимка восстанавливаются из журнала операций")
+    @Test
+    void operationLogReplaysChangesAfterSnapshot() {
+        User user = users.create(user("log-user"));
+        Film film = films.create(film("Журнал", 1971, 1));
+        Film other = films.create(film("Другой", 1971));
+        films.addLike(other.getId(), user.getId());
+        snapshots.save();
+
+        User friend = users.create(user("log-friend"));
+        users.addFriend(user.getId(), friend.getId());
+        users.addFriend(friend.getId(), user.getId());
+        users.deleteFriend(friend.getId(), user.getId());
+        films.addLike(film.getId(), user.getId());
+        films.addLike(film.getId(), friend.getId());
+        films.deleteLike(film.getId(), user.getId());
+        films.addLike(other.getId(), friend.getId());
+        Film changed = film("Журнал после снимка", 1971, 3);
+        changed.setId(film.getId());
+        films.update(changed);
+        snapshots.load();
+
+        Film restored = films.findById(film.getId());
+        assertEquals("Журнал после снимка", restored.getName());
+        assertEquals(List.of(3L), restored.getGenres().stream().map(Genre::getId).toList());
+        assertEquals(List.of(other.getId(), film.getId()), filmIds(films.popularFilms(10, null, 1971)));
+        assertEquals(List.of(friend.getId()), userIds(users.findFriends(user.getId())));
+        assertTrue(users.findFriends(friend.getId()).isEmpty());
+        assertEquals("log-friend", users.findById(friend.getId()).getLogin());
+        assertEquals(friend.getId() + 1, users.create(user("log-next")).getId());
+    }
+
+    @DisplayName("Если операцию не удалось записать в журнал, данные в памяти не меняются")
+    @Test
+    void rejectedLogAppendLeavesDataUnchanged() {
+        User user = users.create(user("log-reject"));
+        int userCount = users.findAll().size();
+        // запись больше сегмента журнала (1 МБ) не помещается в него
+        String hugeName = "и".repeat(1024 * 1024);
+
+        User changed = user("log-reject");
+        changed.setId(user.getId());
+        changed.setName(hugeName);
+        assertThrows(InternalServerException.class, () -> users.update(changed));
+        User created = user("log-reject-new");
+        created.setName(hugeName);
+        assertThrows(InternalServerException.class, () -> users.create(created));
+
+        assertEquals("log-reject", users.findById(user.getId()).getName());
+        assertEquals(userCount, users.findAll().size());
+        assertEquals(user.getId() + 1, users.create(user("log-reject-next")).getId());
+    }
+}
@@ -0,0 +1,228 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Поведение, одинаковое для всех реализаций FilmStorage и UserStorage: подклассы поднимают
+ * контекст с нужным {@code filmorate.storage.type}. Контекст общий для тестов класса,
+ * поэтому тесты не рассчитывают на пустое хранилище.
+ */
+abstract class StorageContractTest {
+
+    @Autowired
+    protected FilmStorage films;
+
+    @Autowired
+    protected UserStorage users;
+
+    @DisplayName("Созданный фильм читается по id с MPA и жанрами по возрастанию id")
+    @Test
+    void createdFilmIsFoundById() {
+        Film created = films.create(film("Контракт", 1950, 3, 1));
+
+        Film found = films.findById(created.getId());
+        assertEquals("Контракт", found.getName());
+        assertEquals(LocalDate.of(1950, 1, 1), found.getReleaseDate());
+        assertEquals(1L, found.getMpa().getId());
+        assertNotNull(found.getMpa().getName());
+        assertEquals(List.of(1L, 3L), found.getGenres().stream().map(Genre::getId).toList());
+        assertTrue(found.getGenres().stream().allMatch(genre -> genre.getName() != null));
+    }
+
+    @DisplayName("Изменение отданных фильма и пользователя не меняет хранилище")
+    @Test
+    void returnedEntitiesAreCopies() {
+        Film film = films.create(film("Оригинал", 1954, 1));
+        User user = users.create(user("contract-copy"));
+
+        Film found = films.findById(film.getId());
+        found.setName("Испорчен");
+        found.getMpa().setName("Испорчен");
+        found.getGenres().iterator().next().setName("Испорчен");
+        users.findById(user.getId()).setLogin("broken");
+
+        Film again = films.findById(film.getId());
+        assertEquals("Оригинал", again.getName());
+        assertEquals("G", again.getMpa().getName());
+        assertEquals("Комедия", again.getGenres().iterator().next().getName());
+        assertEquals("contract-copy", users.findById(user.getId()).getLogin());
+    }
+
+    @DisplayName("Обновление не меняет MPA, а пустой список жанров оставляет прежние")
+    @Test
+    void updateKeepsMpaAndEmptyGenres() {
+        Film created = films.create(film("До обновления", 1951, 2));
+        Film changed = film("После обновления", 1952);
+        changed.setId(created.getId());
+        changed.getMpa().setId(3L);
+
+        films.update(changed);
+        Film found = films.findById(created.getId());
+        assertEquals("После обновления", found.getName());
+        assertEquals(1L, found.getMpa().getId());
+        assertEquals(List.of(2L), found.getGenres().stream().map(Genre::getId).toList());
+
+        changed.setGenres(new LinkedHashSet<>(List.of(genre(4))));
+        films.update(changed);
+        assertEquals(List.of(4L), films.findById(created.getId()).getGenres().stream().map(Genre::getId).toList());
+    }
+
+    @DisplayName("Отсутствующие фильмы, пользователи и справочники - 404 с прежними сообщениями")
+    @Test
+    void missingEntitiesAreNotFound() {
+        User user = users.create(user("contract-missing"));
+        Film film = films.create(film("Есть", 1953));
+        Film missing = film("Нет", 1953);
+        missing.setId(100_000L);
+
+        assertEquals("Фильм с id = 100000 не найден",
+                assertThrows(NotFoundException.class, () -> films.findById(100_000L)).getMessage());
+        assertEquals("Фильм с id = 100000 не найден",
+                assertThrows(NotFoundException.class, () -> films.update(missing)).getMessage());
+        assertEquals("Фильм с id = 100000 не найден",
+                assertThrows(NotFoundException.class, () -> films.addLike(100_000L, user.getId())).getMessage());
+        assertEquals("Пользователь с id = 100001 не найден",
+                assertThrows(NotFoundException.class, () -> films.addLike(film.getId(), 100_001L)).getMessage());
+        assertEquals("Пользователь с id = 100001 не найден",
+                assertThrows(NotFoundException.class, () -> users.findById(100_001L)).getMessage());
+        assertEquals("Пользователь с id = 100001 не найден",
+                assertThrows(NotFoundException.class, () -> users.addFriend(user.getId(), 100_001L)).getMessage());
+        assertEquals("Указанный жанр не найден",
+                assertThrows(NotFoundException.class, () -> films.create(film("Жанр", 1953, 999))).getMessage());
+        Film badMpa = film("MPA", 1953);
+        badMpa.getMpa().setId(999L);
+        assertEquals("Указанный MPA рейтинг не найден",
+                assertThrows(NotFoundException.class, () -> films.create(badMpa)).getMessage());
+    }
+
+    @DisplayName("Некорректные фильм и пользователь отклоняются до сохранения")
+    @Test
+    void invalidEntitiesAreRejected() {
+        Film oldFilm = film("Слишком старый", 1800);
+        User badLogin = user("bad login");
+        Film noId = film("Без id", 1954);
+
+        assertEquals("Дата релиза должна быть не раньше 28 декабря 1895 года",
+                assertThrows(ValidationException.class, () -> films.create(oldFilm)).getMessage());
+        assertEquals("Логин не может быть пустым и содержать пробелы",
+                assertThrows(ValidationException.class, () -> users.create(badLogin)).getMessage());
+        assertEquals("Id должен быть указан",
+                assertThrows(ValidationException.class, () -> films.update(noId)).getMessage());
+        assertThrows(ValidationException.class, () -> films.createAll(List.of(film("Годный", 1954), oldFilm)));
+    }
+
+    @DisplayName("Лайки идемпотентны и определяют порядок популярных фильмов")
+    @Test
+    void likesRankPopularFilms() {
+        User first = users.create(user("contract-first"));
+        User second = users.create(user("contract-second"));
+        Film quiet = films.create(film("Тихий", 1960, 5));
+        Film loud = films.create(film("Громкий", 1960, 5));
+
+        films.addLike(loud.getId(), first.getId());
+        films.addLike(loud.getId(), first.getId());
+        films.addLike(loud.getId(), second.getId());
+        films.addLike(quiet.getId(), first.getId());
+        assertEquals(List.of(loud.getId(), quiet.getId()), filmIds(films.popularFilms(10, null, 1960)));
+
+        films.deleteLike(loud.getId(), first.getId());
+        films.deleteLike(loud.getId(), second.getId());
+        assertEquals(List.of(quiet.getId(), loud.getId()), filmIds(films.popularFilms(10, 5L, 1960)));
+        assertEquals(List.of(quiet.getId()), filmIds(films.popularFilms(1, 5L, 1960)));
+    }
+
+    @DisplayName("Создание пользователя без имени подставляет логин, обновление меняет поля")
+    @Test
+    void userNameDefaultsToLogin() {
+        User noName = user("contract-login");
+        noName.setName(" ");
+        User created = users.create(noName);
+        assertEquals("contract-login", users.findById(created.getId()).getName());
+
+        User changed = user("contract-changed");
+        changed.setId(created.getId());
+        users.update(changed);
+        assertEquals("contract-changed", users.findById(created.getId()).getLogin());
+        assertEquals(List.of(created.getId()), userIds(users.findPage(created.getId() - 1, 1)));
+    }
+
+    @DisplayName("Дружба односторонняя, повторное добавление ничего не меняет, общие друзья - пересечение")
+    @Test
+    void friendshipIsOneWay() {
+        User user = users.create(user("contract-user"));
+        User other = users.create(user("contract-other"));
+        User common = users.create(user("contract-common"));
+
+        assertEquals(List.of(user.getId(), common.getId()), userIds(users.addFriend(user.getId(), common.getId())));
+        users.addFriend(user.getId(), common.getId());
+        users.addFriend(other.getId(), common.getId());
+        users.addFriend(user.getId(), other.getId());
+
+        assertEquals(List.of(other.getId(), common.getId()), userIds(users.findFriends(user.getId())));
+        assertTrue(users.findFriends(common.getId()).isEmpty());
+        assertEquals(List.of(common.getId()), userIds(users.findCommonFriends(user.getId(), other.getId())));
+
+        users.deleteFriend(user.getId(), other.getId());
+        users.deleteFriend(user.getId(), other.getId());
+        assertEquals(List.of(common.getId()), userIds(users.findFriends(user.getId())));
+    }
+
+    protected static List<Long> filmIds(Collection<Film> films) {
+        return films.stream().map(Film::getId).toList();
+    }
+
+    protected static List<Long> userIds(Collection<User> users) {
+        return users.stream().map(User::getId).toList();
+    }
+
+    protected static Film film(String name, int year, long... genreIds) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Описание");
+        film.setReleaseDate(LocalDate.of(year, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (long genreId : genreIds) {
+            genres.add(genre(genreId));
+        }
+        film.setGenres(genres);
+        return film;
+    }
+
+    private static Genre genre(long id) {
+        Genre genre = new Genre();
+        genre.setId(id);
+        return genre;
+    }
+
+    protected static User user(String login) {
+        User user = new User();
+        user.setEmail(login.replace(' ', '-') + "@mail.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
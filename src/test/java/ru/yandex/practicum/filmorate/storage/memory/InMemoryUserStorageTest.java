@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.event.FriendshipEvent;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.index.FriendSuggestions;
+import ru.yandex.practicum.filmorate.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryUserStorageTest {
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @TempDir
+    Path dir;
+
+    @DisplayName("Если сброс журнала не удался, применённое изменение всё равно доходит до индексов и снимка")
+    @Test
+    void publishesChangeWhenSyncFails() {
+        AtomicBoolean failing = new AtomicBoolean();
+        OperationLog log = new OperationLog(objectMapper, true, dir.toString(), 1, true, 5) {
+            @Override
+            void force(MappedByteBuffer target) {
+                if (failing.get()) {
+                    throw new UncheckedIOException(new IOException("нет места на диске"));
+                }
+                super.force(target);
+            }
+        };
+        log.start();
+        FriendshipGraph graph = new FriendshipGraph();
+        List<Object> published = new CopyOnWriteArrayList<>();
+        InMemoryUserStorage users = new InMemoryUserStorage(graph, new FriendSuggestions(graph, 100), log, event -> {
+            published.add(event);
+            if (event instanceof FriendshipEvent friendship) {
+                graph.onFriendship(friendship);
+            }
+        });
+        try {
+            User user = users.create(user("sync-failure-user"));
+            User friend = users.create(user("sync-failure-friend"));
+            long modifications = users.modifications();
+
+            failing.set(true);
+            InternalServerException e = assertThrows(InternalServerException.class,
+                    () -> users.addFriend(user.getId(), friend.getId()));
+
+            assertTrue(e.getMessage().contains("нет места на диске"));
+            assertEquals(new FriendshipEvent(user.getId(), friend.getId(), true), published.getLast());
+            assertEquals(modifications + 1, users.modifications());
+            assertArrayEquals(new int[]{friend.getId().intValue()}, graph.friends(user.getId()));
+            assertEquals(List.of(friend.getId()), users.friendships().stream().map(pair -> pair[1]).toList());
+        } finally {
+            log.stop();
+        }
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
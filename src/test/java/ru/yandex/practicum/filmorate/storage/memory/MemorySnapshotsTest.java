@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.index.FilmRecommendations;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FriendSuggestions;
+import ru.yandex.practicum.filmorate.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.index.TitleAutocomplete;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MemorySnapshotsTest {
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @TempDir
+    Path dir;
+
+    @DisplayName("Снимок не теряет операцию, которая уже записана в журнал, но ещё не применена в памяти")
+    @Test
+    void snapshotWaitsForOperationBetweenLogAndMemory() throws InterruptedException {
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OperationLog log = new OperationLog(objectMapper, true, dir.resolve("oplog").toString(), 1, false, 10) {
+            @Override
+            public long appendFriendship(long userId, long friendId, boolean added) {
+                long position = super.appendFriendship(userId, friendId, added);
+                appended.countDown();
+                awaitQuietly(release);
+                return position;
+            }
+        };
+        log.start();
+        Memory memory = memory(log);
+        User user = memory.users().create(user("snapshot-cut-user"));
+        User friend = memory.users().create(user("snapshot-cut-friend"));
+
+        Thread writer = Thread.ofPlatform().start(() -> memory.users().addFriend(user.getId(), friend.getId()));
+        appended.await();
+        Thread saver = Thread.ofPlatform().start(memory.snapshots()::save);
+        saver.join(500);
+        release.countDown();
+        writer.join();
+        saver.join();
+        log.stop();
+
+        OperationLog reopened = new OperationLog(objectMapper, true, dir.resolve("oplog").toString(), 1, false, 10);
+        Memory restored = memory(reopened);
+        restored.snapshots().load();
+
+        assertEquals(List.of(friend.getId()),
+                restored.users().findFriends(user.getId()).stream().map(User::getId).toList());
+    }
+
+    private Memory memory(OperationLog log) {
+        FriendshipGraph graph = new FriendshipGraph();
+        InMemoryUserStorage users = new InMemoryUserStorage(graph, new FriendSuggestions(graph, 100), log, event -> {
+        });
+        FilmLeaderboard leaderboard = new FilmLeaderboard();
+        LikeMatrix likeMatrix = new LikeMatrix();
+        InMemoryFilmStorage films = new InMemoryFilmStorage(leaderboard, likeMatrix,
+                new FilmRecommendations(likeMatrix, 100), new FilmSearchIndex(leaderboard),
+                new TitleAutocomplete(leaderboard), null, users, log, event -> {
+        });
+        MemorySnapshots snapshots = new MemorySnapshots(films, users, log, objectMapper,
+                dir.resolve("memory.json").toString(), 3_600_000);
+        return new Memory(users, snapshots);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+
+    private record Memory(InMemoryUserStorage users, MemorySnapshots snapshots) {
+    }
+}
@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OperationLogTest {
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @TempDir
+    Path dir;
+
+    @DisplayName("Операции читаются в порядке записи, в том числе из нескольких сегментов")
+    @Test
+    void replaysOperationsInOrder() {
+        OperationLog log = open(true);
+        Film film = new Film();
+        film.setId(7L);
+        film.setName("Фильм");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        User user = new User();
+        user.setId(3L);
+        user.setLogin("user");
+
+        log.await(log.appendFilm(film));
+        log.appendLike(7, 3, true);
+        log.rotate();
+        log.appendFriendship(3, 4, true);
+        log.appendLike(7, 3, false);
+        log.await(log.appendUser(user));
+        log.stop();
+
+        List<String> replayed = replay(open(false));
+        assertEquals(List.of("film 7 Фильм 2000-01-01", "like 7 3 true", "friendship 3 4 true",
+                "like 7 3 false", "user 3 user"), replayed);
+    }
+
+    @DisplayName("Чтение останавливается на недописанной записи, удалённые сегменты не читаются")
+    @Test
+    void stopsAtTornRecordAndSkipsDeletedSegments() throws IOException {
+        OperationLog log = open(false);
+        log.appendLike(1, 1, true);
+        long segment = log.rotate();
+        log.appendLike(2, 2, true);
+        log.appendLike(3, 3, true);
+        log.stop();
+
+        Path last = segments().get(1);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // CRC второй записи не совпадает с данными - как при сбое посреди записи
+            channel.write(ByteBuffer.allocate(8).putInt(17).putInt(0).flip(), 25);
+        }
+        assertEquals(List.of("like 1 1 true", "like 2 2 true"), replay(open(false)));
+
+        log.deleteBefore(segment);
+        assertEquals(List.of("like 2 2 true"), replay(open(false)));
+    }
+
+    @DisplayName("Если сброс на диск не удался, запись не подтверждается, следующий удачный сброс снимает ошибку")
+    @Test
+    void failsWaitersWhenSyncFails() {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        OperationLog log = new OperationLog(objectMapper, true, dir.toString(), 1, true, 5) {
+            @Override
+            void force(MappedByteBuffer target) {
+                if (failing.get()) {
+                    throw new UncheckedIOException(new IOException("нет места на диске"));
+                }
+                super.force(target);
+            }
+        };
+        log.start();
+        try {
+            long position = log.appendLike(1, 1, true);
+            InternalServerException e = assertThrows(InternalServerException.class, () -> log.await(position));
+            assertTrue(e.getMessage().contains("нет места на диске"));
+
+            failing.set(false);
+            log.await(log.appendLike(2, 2, true));
+        } finally {
+            log.stop();
+        }
+        assertEquals(List.of("like 1 1 true", "like 2 2 true"), replay(open(false)));
+    }
+
+    private OperationLog open(boolean fsync) {
+        OperationLog log = new OperationLog(objectMapper, true, dir.toString(), 1, fsync, 5);
+        log.start();
+        return log;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static List<String> replay(OperationLog log) {
+        List<String> replayed = new ArrayList<>();
+        log.replay(new OperationLog.Replay() {
+            @Override
+            public void film(Film film) {
+                replayed.add("film " + film.getId() + " " + film.getName() + " " + film.getReleaseDate());
+            }
+
+            @Override
+            public void user(User user) {
+                replayed.add("user " + user.getId() + " " + user.getLogin());
+            }
+
+            @Override
+            public void like(long filmId, long userId, boolean liked) {
+                replayed.add("like " + filmId + " " + userId + " " + liked);
+            }
+
+            @Override
+            public void friendship(long userId, long friendId, boolean added) {
+                replayed.add("friendship " + userId + " " + friendId + " " + added);
+            }
+        });
+        log.stop();
+        return replayed;
+    }
+}